@@ -0,0 +1,132 @@
+package com.mariuszilinskas.vsp.auth.identity.benchmark;
+
+import com.mariuszilinskas.vsp.auth.identity.model.Password;
+import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository.RefreshTokenDetails;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a hot-path lookup through a JPA entity (persistence context, snapshot, flush at commit) with the
+ * same lookup through {@link CredentialLookupRepository}. Both read from the same pooled in-memory H2 database.
+ * The GC profiler (enabled in build.gradle) reports the allocation per lookup as gc.alloc.rate.norm.
+ *
+ * @author Marius Zilinskas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CredentialLookupBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private final UUID[] userIds = new UUID[ROWS];
+    private final UUID[] tokenIds = new UUID[ROWS];
+
+    private HikariDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private CredentialLookupRepository credentialLookupRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:credential_lookup_benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+
+        var factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan(Password.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        credentialLookupRepository = new CredentialLookupRepository(JdbcClient.create(dataSource));
+
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        Timestamp expiryDate = Timestamp.from(Instant.now().plusSeconds(3600));
+        for (int i = 0; i < ROWS; i++) {
+            userIds[i] = UUID.randomUUID();
+            tokenIds[i] = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO passwords (id, user_id, password_hash, incorrect_entries, last_updated) "
+                    + "VALUES (?, ?, ?, 0, CURRENT_TIMESTAMP)", UUID.randomUUID(), userIds[i], "$2a$10$hash" + i);
+            jdbcTemplate.update("INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES (?, ?, ?)",
+                    tokenIds[i], userIds[i], expiryDate);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    private int randomRow() {
+        return ThreadLocalRandom.current().nextInt(ROWS);
+    }
+
+    // ------------------------- password hash ----------------------
+
+    @Benchmark
+    public Optional<String> passwordHash_jpaEntity() {
+        UUID userId = userIds[randomRow()];
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            Optional<String> passwordHash = entityManager
+                    .createQuery("SELECT p FROM Password p WHERE p.userId = :userId", Password.class)
+                    .setParameter("userId", userId)
+                    .getResultStream()
+                    .findFirst()
+                    .map(Password::getPasswordHash);
+            entityManager.getTransaction().commit();
+            return passwordHash;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<String> passwordHash_jdbcClient() {
+        return credentialLookupRepository.findPasswordHash(userIds[randomRow()]);
+    }
+
+    // ------------------------- refresh token ----------------------
+
+    @Benchmark
+    public Optional<Instant> refreshToken_jpaEntity() {
+        UUID tokenId = tokenIds[randomRow()];
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            Optional<Instant> expiryDate = Optional.ofNullable(entityManager.find(RefreshToken.class, tokenId))
+                    .map(RefreshToken::getExpiryDate);
+            entityManager.getTransaction().commit();
+            return expiryDate;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<Instant> refreshToken_jdbcClient() {
+        return credentialLookupRepository.findRefreshToken(tokenIds[randomRow()])
+                .map(RefreshTokenDetails::expiryDate);
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.mariuszilinskas.vsp.auth.identity.benchmark;
+
+import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Feign;
+import feign.Request;
+import feign.Retryer;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import okhttp3.ConnectionPool;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default {@code HttpURLConnection} Feign client with the pooled OkHttp one (as configured in
+ * {@code OkHttpFeignConfig}) for Auth Details lookups against a local stub of the users service, with and
+ * without injected server latency. The stub speaks HTTP/1.1, so the difference comes from connection reuse
+ * under concurrent callers: {@code HttpURLConnection} keeps at most 5 idle connections per host by default.
+ *
+ * @author Marius Zilinskas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+public class FeignTransportBenchmark {
+
+    private static final byte[] AUTH_DETAILS = ("{\"userId\":\"" + UUID.randomUUID()
+            + "\",\"roles\":[\"USER\"],\"authorities\":[],\"status\":\"ACTIVE\"}").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"0", "2"})
+    private long latencyMillis;
+
+    private final UUID userId = UUID.randomUUID();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ConnectionPool connectionPool;
+    private UserFeignClient defaultClient;
+    private UserFeignClient okHttpClient;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        serverExecutor = Executors.newFixedThreadPool(64);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 256);
+        server.createContext("/user", this::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        connectionPool = new ConnectionPool(25, 5, TimeUnit.MINUTES);
+        var okHttp = new okhttp3.OkHttpClient.Builder().connectionPool(connectionPool).build();
+
+        String url = "http://localhost:" + server.getAddress().getPort();
+        defaultClient = client(new Client.Default(null, null), url);
+        okHttpClient = client(new feign.okhttp.OkHttpClient(okHttp), url);
+    }
+
+    private static UserFeignClient client(Client client, String url) {
+        return Feign.builder()
+                .client(client)
+                .contract(new SpringMvcContract())
+                .encoder(new JacksonEncoder())
+                .decoder(new JacksonDecoder())
+                .retryer(Retryer.NEVER_RETRY)
+                .options(new Request.Options(1, TimeUnit.SECONDS, 3, TimeUnit.SECONDS, true))
+                .target(UserFeignClient.class, url);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, AUTH_DETAILS.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(AUTH_DETAILS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionPool.evictAll();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    // ------------------------------------
+
+    @Benchmark
+    public AuthDetails authDetails_httpUrlConnection() {
+        return defaultClient.getUserAuthDetailsByUserId(userId);
+    }
+
+    @Benchmark
+    public AuthDetails authDetails_okHttp() {
+        return okHttpClient.getUserAuthDetailsByUserId(userId);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.mariuszilinskas.vsp.auth.identity.benchmark;
+
+import com.mariuszilinskas.vsp.auth.identity.service.TokenGenerationService;
+import org.apache.commons.lang.RandomStringUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-thread generator in {@link TokenGenerationService} with {@link UUID#randomUUID()}
+ * and {@link RandomStringUtils}, single-threaded and under contention.
+ *
+ * @author Marius Zilinskas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TokenGenerationBenchmark {
+
+    private final TokenGenerationService tokenGenerationService = new TokenGenerationService();
+
+    // ------------------------- 1 thread ---------------------------
+
+    @Benchmark
+    @Threads(1)
+    public UUID tokenId_generator_1thread() {
+        return tokenGenerationService.generateTokenId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UUID tokenId_randomUUID_1thread() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String resetToken_generator_1thread() {
+        return tokenGenerationService.generateResetToken();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String resetToken_randomStringUtils_1thread() {
+        return RandomStringUtils.randomAlphanumeric(20).toLowerCase();
+    }
+
+    // ------------------------- 8 threads --------------------------
+
+    @Benchmark
+    @Threads(8)
+    public UUID tokenId_generator_8threads() {
+        return tokenGenerationService.generateTokenId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public UUID tokenId_randomUUID_8threads() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String resetToken_generator_8threads() {
+        return tokenGenerationService.generateResetToken();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String resetToken_randomStringUtils_8threads() {
+        return RandomStringUtils.randomAlphanumeric(20).toLowerCase();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object passcodes_generatorBatch_8threads() {
+        return tokenGenerationService.generatePasscodes(100);
+    }
+
+}
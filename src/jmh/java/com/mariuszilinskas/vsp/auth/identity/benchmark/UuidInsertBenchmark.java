@@ -0,0 +1,83 @@
+package com.mariuszilinskas.vsp.auth.identity.benchmark;
+
+import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures batched insert throughput into a credential-shaped table that is already large, keyed by
+ * random (v4) or time-ordered (v7) UUIDs. Random keys land all over the primary-key index, so once it
+ * no longer fits in memory every insert touches a different page; v7 keys append to the right-most one.
+ * <p>
+ * Defaults to in-memory H2. Point it at PostgreSQL for realistic numbers, e.g.
+ * {@code -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/bench -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...}
+ *
+ * @author Marius Zilinskas
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UuidInsertBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL = "INSERT INTO uuid_insert_benchmark (id, user_id, expiry_date) VALUES (?, ?, ?)";
+
+    @Param({"V4", "V7"})
+    private String keyType;
+
+    @Param({"1000000"})
+    private int existingRows;
+
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void createTable() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:uuid_insert_benchmark;DB_CLOSE_DELAY=-1"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", ""));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS uuid_insert_benchmark");
+            statement.execute("CREATE TABLE uuid_insert_benchmark ("
+                    + "id UUID PRIMARY KEY, user_id UUID NOT NULL, expiry_date TIMESTAMP WITH TIME ZONE NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement(INSERT_SQL);
+        for (int i = 0; i < existingRows; i += BATCH_SIZE)
+            insertBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void dropTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE uuid_insert_benchmark");
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch() throws SQLException {
+        Timestamp expiryDate = Timestamp.from(Instant.now());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setObject(1, nextId());
+            insert.setObject(2, UUID.randomUUID());
+            insert.setTimestamp(3, expiryDate);
+            insert.addBatch();
+        }
+        int[] counts = insert.executeBatch();
+        connection.commit();
+        return counts;
+    }
+
+    private UUID nextId() {
+        return "V7".equals(keyType) ? IdentityUtils.generateUuidV7() : UUID.randomUUID();
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of the {@link AuthDetails} fetched from the users service, keyed by email and by
+ * User ID. Emails the users service does not know are cached as well, for a shorter time.
+ * <p>
+ * Entries are dropped when a user-changed event arrives for the User (status or role change, deletion), so a
+ * suspension takes effect straight away; the time to live only bounds staleness if an event is lost. A load
+ * that overlaps an invalidation is not kept. Dropping an email entry, once a User registers with it, is
+ * broadcast to every instance the same way.
+ * <p>
+ * Entries expire after their time to live. A last known copy by User ID is kept apart, up to the stale time to
+ * live and under its own bound, so refreshes can be served from {@link #getStaleByUserId(UUID)} while the users
+ * service is shedding calls without those copies crowding out live entries.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class AuthDetailsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthDetailsCache.class);
+    private static final long TICK_MILLIS = 1000;
+
+    private final RabbitMQProducer rabbitMQProducer;
+    private final ExpiringMap<String, Entry> byEmail = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<UUID, Entry> byUserId = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<UUID, Entry> lastKnownByUserId = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<UUID, String> emailByUserId = new ExpiringMap<>(TICK_MILLIS);
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter emailHits;
+    private final Counter emailMisses;
+    private final Counter userIdHits;
+    private final Counter userIdMisses;
+    private final Counter invalidated;
+    private final Counter staleServed;
+    private final Timer staleness;
+
+    @Value("${app.auth-details-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.auth-details-cache.ttl-millis:60000}")
+    private long ttlMillis;
+
+    @Value("${app.auth-details-cache.stale-ttl-millis:900000}")
+    private long staleTtlMillis;
+
+    @Value("${app.auth-details-cache.unknown-email-ttl-millis:10000}")
+    private long unknownEmailTtlMillis;
+
+    @Value("${app.auth-details-cache.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.auth-details-cache.max-stale-entries:100000}")
+    private int maxStaleEntries;
+
+    public AuthDetailsCache(RabbitMQProducer rabbitMQProducer, MeterRegistry meterRegistry) {
+        this.rabbitMQProducer = rabbitMQProducer;
+        this.emailHits = lookupCounter(meterRegistry, "email", "hit");
+        this.emailMisses = lookupCounter(meterRegistry, "email", "miss");
+        this.userIdHits = lookupCounter(meterRegistry, "user_id", "hit");
+        this.userIdMisses = lookupCounter(meterRegistry, "user_id", "miss");
+        this.invalidated = Counter.builder("identity.auth-details.cache.invalidations")
+                .description("Number of Users whose cached Auth Details were dropped by a user-changed event")
+                .register(meterRegistry);
+        this.staleServed = Counter.builder("identity.auth-details.cache.stale.served")
+                .description("Number of expired Auth Details served while the users service was unavailable")
+                .register(meterRegistry);
+        this.staleness = Timer.builder("identity.auth-details.cache.staleness")
+                .description("Age of the cached Auth Details served on a hit")
+                .register(meterRegistry);
+        Gauge.builder("identity.auth-details.cache.size", this, cache -> cache.byEmail.size() + cache.byUserId.size())
+                .description("Number of Auth Details cached, by email and by User ID")
+                .register(meterRegistry);
+        Gauge.builder("identity.auth-details.cache.stale.size", lastKnownByUserId, ExpiringMap::size)
+                .description("Number of last known Auth Details kept for when the users service is unavailable")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String lookup, String result) {
+        return Counter.builder("identity.auth-details.cache.gets")
+                .description("Number of Auth Details lookups, by key and cache result")
+                .tag("lookup", lookup)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the User's Auth Details from the cache, or from the loader on a miss.
+     *
+     * @param loader returns empty if the users service does not know the email
+     */
+    public Optional<AuthDetails> getByEmail(String email, Function<String, Optional<AuthDetails>> loader) {
+        if (!enabled) return loader.apply(email);
+
+        String key = normalise(email);
+        Entry cached = byEmail.get(key);
+        if (cached != null) {
+            emailHits.increment();
+            staleness.record(System.currentTimeMillis() - cached.cachedAtMillis(), TimeUnit.MILLISECONDS);
+            return Optional.ofNullable(cached.authDetails());
+        }
+
+        emailMisses.increment();
+        long invalidationsBeforeLoad = invalidations.get();
+        Optional<AuthDetails> loaded = loader.apply(email);
+        if (byEmail.size() < maxEntries) {
+            var entry = new Entry(loaded.orElse(null), System.currentTimeMillis());
+            if (loaded.isPresent()) {
+                UUID userId = loaded.get().userId();
+                emailByUserId.put(userId, key, ttlMillis);
+                byEmail.put(key, entry, ttlMillis);
+                cacheByUserId(userId, entry);
+            } else {
+                byEmail.put(key, entry, unknownEmailTtlMillis);
+            }
+
+            // An invalidation since the load began may have come before the puts, so drop what was just cached
+            if (invalidations.get() != invalidationsBeforeLoad) {
+                byEmail.remove(key, entry);
+                loaded.ifPresent(authDetails -> uncacheByUserId(authDetails.userId(), entry));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the User's Auth Details from the cache, or from the loader on a miss. Unknown User IDs are
+     * not cached.
+     */
+    public Optional<AuthDetails> getByUserId(UUID userId, Function<UUID, Optional<AuthDetails>> loader) {
+        if (!enabled) return loader.apply(userId);
+
+        Entry cached = byUserId.get(userId);
+        if (cached != null) {
+            userIdHits.increment();
+            staleness.record(System.currentTimeMillis() - cached.cachedAtMillis(), TimeUnit.MILLISECONDS);
+            return Optional.of(cached.authDetails());
+        }
+
+        userIdMisses.increment();
+        long invalidationsBeforeLoad = invalidations.get();
+        Optional<AuthDetails> loaded = loader.apply(userId);
+        if (loaded.isPresent() && byUserId.size() < maxEntries) {
+            var entry = new Entry(loaded.get(), System.currentTimeMillis());
+            cacheByUserId(userId, entry);
+            if (invalidations.get() != invalidationsBeforeLoad)
+                uncacheByUserId(userId, entry);
+        }
+        return loaded;
+    }
+
+    private void cacheByUserId(UUID userId, Entry entry) {
+        byUserId.put(userId, entry, ttlMillis);
+        if (staleTtlMillis > ttlMillis && lastKnownByUserId.size() < maxStaleEntries)
+            lastKnownByUserId.put(userId, entry, staleTtlMillis);
+    }
+
+    private void uncacheByUserId(UUID userId, Entry entry) {
+        byUserId.remove(userId, entry);
+        lastKnownByUserId.remove(userId, entry);
+    }
+
+    /**
+     * Returns the User's last cached Auth Details even if past their time to live, for use while the users
+     * service is unavailable. Invalidated entries are never returned.
+     */
+    public Optional<AuthDetails> getStaleByUserId(UUID userId) {
+        if (!enabled) return Optional.empty();
+
+        Entry cached = byUserId.get(userId);
+        if (cached == null) cached = lastKnownByUserId.get(userId);
+        if (cached == null) return Optional.empty();
+        staleServed.increment();
+        staleness.record(System.currentTimeMillis() - cached.cachedAtMillis(), TimeUnit.MILLISECONDS);
+        return Optional.of(cached.authDetails());
+    }
+
+    /**
+     * Drops everything cached for the User, by User ID and by the email it was last looked up with.
+     */
+    public void invalidate(UUID userId) {
+        invalidations.incrementAndGet();
+        invalidated.increment();
+        byUserId.remove(userId);
+        lastKnownByUserId.remove(userId);
+        String email = emailByUserId.remove(userId);
+        if (email != null) byEmail.remove(email);
+    }
+
+    /**
+     * Drops the entry for the email, e.g. an unknown-email entry once a User registers with it, here and on
+     * every other instance.
+     */
+    public void invalidateEmail(String email) {
+        evictEmail(email);
+        if (!enabled) return;
+        try {
+            rabbitMQProducer.sendEmailRegisteredMessage(email);
+        } catch (AmqpException ex) {
+            logger.warn("Failed to broadcast Auth Details invalidation, other instances keep theirs until expiry " +
+                    "[email: '{}']", email, ex);
+        }
+    }
+
+    /**
+     * Drops the entry for the email on this instance only, for an invalidation broadcast by any instance.
+     */
+    public void evictEmail(String email) {
+        invalidations.incrementAndGet();
+        byEmail.remove(normalise(email));
+    }
+
+    /**
+     * Emails differing only in case or surrounding whitespace share one entry, so dropping it by User ID covers
+     * every spelling the User has logged in with.
+     */
+    private static String normalise(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        byEmail.expireEntries();
+        byUserId.expireEntries();
+        lastKnownByUserId.expireEntries();
+        emailByUserId.expireEntries();
+    }
+
+    /**
+     * @param authDetails null for an email the users service does not know
+     */
+    private record Entry(AuthDetails authDetails, long cachedAtMillis) {}
+
+}
@@ -0,0 +1,38 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers single-use tokens that have been redeemed until they expire, after which
+ * they are rejected anyway and can be forgotten.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class ConsumedTokenSet {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final ExpiringMap<String, Object> consumedTokens = new ExpiringMap<>(TICK_MILLIS);
+
+    /**
+     * Marks the token as consumed.
+     *
+     * @return true if this call consumed it, false if it had been consumed already
+     */
+    public boolean markConsumed(String tokenId, Instant expiryDate) {
+        var consumed = new Object();
+        long ttlMillis = Math.max(Duration.between(Instant.now(), expiryDate).toMillis(), 0) + TICK_MILLIS;
+        return consumedTokens.computeIfAbsent(tokenId, id -> consumed, ttlMillis) == consumed;
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        consumedTokens.expireEntries();
+    }
+
+}
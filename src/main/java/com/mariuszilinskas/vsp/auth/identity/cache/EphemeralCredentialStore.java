@@ -0,0 +1,124 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.model.Passcode;
+import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
+import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-memory store for short-lived credentials (Passcodes and Reset Tokens).
+ * <p>
+ * With DB fallback off (memory-only mode) the store is the only copy. Entries are kept for a while past
+ * their expiry date so an expired credential is still reported as expired rather than missing. The store
+ * is local to each instance, so this mode assumes a single instance or sticky routing.
+ * <p>
+ * With DB fallback on, the database is the source of truth: another instance may have reissued a Passcode
+ * or consumed a Reset Token, so no credential is served from memory. The store then only remembers the
+ * Reset Token digests the database does not hold, so repeated lookups of unknown or used tokens are
+ * rejected without a query. Tokens are random, so a digest the database does not hold never becomes valid.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class EphemeralCredentialStore {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long EXPIRED_RETENTION_MILLIS = IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS;
+
+    private final ExpiringMap<UUID, Passcode> passcodes = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<String, ResetToken> resetTokens = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<UUID, String> resetTokensByUserId = new ExpiringMap<>(TICK_MILLIS);
+    private final ExpiringMap<String, Boolean> missingResetTokens = new ExpiringMap<>(TICK_MILLIS);
+
+    @Value("${app.ephemeral-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.ephemeral-store.db-fallback:true}")
+    private boolean dbFallback;
+
+    @Value("${app.ephemeral-store.max-missing-reset-tokens:100000}")
+    private int maxMissingResetTokens;
+
+    /**
+     * Whether credentials are kept in memory only, i.e. the database must not be read or written.
+     */
+    public boolean isMemoryOnly() {
+        return enabled && !dbFallback;
+    }
+
+    public Optional<Passcode> findPasscode(UUID userId) {
+        if (!isMemoryOnly()) return Optional.empty();
+        return Optional.ofNullable(passcodes.get(userId));
+    }
+
+    public void storePasscode(Passcode passcode) {
+        if (!isMemoryOnly()) return;
+        Passcode copy = new Passcode(passcode.getUserId());
+        copy.setId(passcode.getId());
+        copy.setPasscode(passcode.getPasscode());
+        copy.setExpiryDate(passcode.getExpiryDate());
+        passcodes.put(copy.getUserId(), copy, getRetentionMillis(copy.getExpiryDate()));
+    }
+
+    public void removePasscode(UUID userId) {
+        passcodes.remove(userId);
+    }
+
+    public Optional<ResetToken> findResetToken(String tokenHash) {
+        if (!isMemoryOnly()) return Optional.empty();
+        return Optional.ofNullable(resetTokens.get(tokenHash));
+    }
+
+    public void storeResetToken(ResetToken resetToken) {
+        if (!isMemoryOnly()) return;
+        ResetToken copy = new ResetToken(resetToken.getUserId());
+        copy.setId(resetToken.getId());
+        copy.setTokenHash(resetToken.getTokenHash());
+        copy.setExpiryDate(resetToken.getExpiryDate());
+
+        long retentionMillis = getRetentionMillis(copy.getExpiryDate());
+        String previousTokenHash = resetTokensByUserId.remove(copy.getUserId());
+        if (previousTokenHash != null) resetTokens.remove(previousTokenHash);
+        resetTokens.put(copy.getTokenHash(), copy, retentionMillis);
+        resetTokensByUserId.put(copy.getUserId(), copy.getTokenHash(), retentionMillis);
+    }
+
+    public void removeUserResetTokens(UUID userId) {
+        String tokenHash = resetTokensByUserId.remove(userId);
+        if (tokenHash != null) resetTokens.remove(tokenHash);
+    }
+
+    /**
+     * Whether the database was found not to hold the Reset Token digest.
+     */
+    public boolean isMissingResetToken(String tokenHash) {
+        return enabled && dbFallback && missingResetTokens.get(tokenHash) != null;
+    }
+
+    public void rememberMissingResetToken(String tokenHash) {
+        // Bounded, as the digests come from whatever tokens are submitted
+        if (!enabled || !dbFallback || missingResetTokens.size() >= maxMissingResetTokens) return;
+        missingResetTokens.put(tokenHash, Boolean.TRUE, EXPIRED_RETENTION_MILLIS);
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        if (!enabled) return;
+        passcodes.expireEntries();
+        resetTokens.expireEntries();
+        resetTokensByUserId.expireEntries();
+        missingResetTokens.expireEntries();
+    }
+
+    private long getRetentionMillis(Instant expiryDate) {
+        return Duration.between(Instant.now(), expiryDate).toMillis() + EXPIRED_RETENTION_MILLIS;
+    }
+
+}
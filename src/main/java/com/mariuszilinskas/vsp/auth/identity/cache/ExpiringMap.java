@@ -0,0 +1,151 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent map whose entries expire after a per-entry time to live. Reads go straight to a
+ * {@link ConcurrentHashMap} and treat an overdue entry as absent; eviction is driven by a
+ * {@link TimingWheel} advanced through {@link #expireEntries()}. Each entry is its own wheel node,
+ * so a put costs one allocation.
+ *
+ * @author Marius Zilinskas
+ */
+public class ExpiringMap<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final TimingWheel wheel;
+    private final LongSupplier clock;
+
+    public ExpiringMap(long tickMillis) {
+        this(tickMillis, System::currentTimeMillis);
+    }
+
+    public ExpiringMap(long tickMillis, LongSupplier clock) {
+        this.clock = clock;
+        this.wheel = new TimingWheel(tickMillis, clock.getAsLong());
+    }
+
+    public V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null) return null;
+        if (isExpired(entry)) {
+            remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(K key, V value, long ttlMillis) {
+        var entry = new Entry<>(key, value, clock.getAsLong() + ttlMillis);
+        Entry<K, V> previous = entries.put(key, entry);
+        wheelLock.lock();
+        try {
+            if (previous != null) wheel.cancel(previous);
+            wheel.schedule(entry, entry.expiresAt);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the live value for the key, or maps it to a newly created value with the given time to live.
+     * Under contention the mapping function may run and its result be discarded.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction, long ttlMillis) {
+        while (true) {
+            Entry<K, V> entry = entries.get(key);
+            if (entry != null && !isExpired(entry)) return entry.value;
+
+            var newEntry = new Entry<K, V>(key, mappingFunction.apply(key), clock.getAsLong() + ttlMillis);
+            boolean inserted = entry == null
+                    ? entries.putIfAbsent(key, newEntry) == null
+                    : entries.replace(key, entry, newEntry);
+            if (!inserted) continue;
+
+            wheelLock.lock();
+            try {
+                if (entry != null) wheel.cancel(entry);
+                wheel.schedule(newEntry, newEntry.expiresAt);
+            } finally {
+                wheelLock.unlock();
+            }
+            return newEntry.value;
+        }
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = entries.remove(key);
+        if (entry == null) return null;
+        cancel(entry);
+        return isExpired(entry) ? null : entry.value;
+    }
+
+    /**
+     * Removes the key only while it is still mapped to the given value.
+     */
+    public boolean remove(K key, V value) {
+        Entry<K, V> entry = entries.get(key);
+        return entry != null && entry.value.equals(value) && remove(key, entry);
+    }
+
+    private boolean remove(K key, Entry<K, V> entry) {
+        if (!entries.remove(key, entry)) return false;
+        cancel(entry);
+        return true;
+    }
+
+    private void cancel(Entry<K, V> entry) {
+        wheelLock.lock();
+        try {
+            wheel.cancel(entry);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.keySet().forEach(this::remove);
+    }
+
+    /**
+     * Evicts every entry whose time to live has passed. Cost is proportional to the number of
+     * elapsed ticks and evicted entries, not to the size of the map.
+     */
+    @SuppressWarnings("unchecked")
+    public void expireEntries() {
+        wheelLock.lock();
+        try {
+            wheel.advance(clock.getAsLong(), node -> {
+                Entry<K, V> entry = (Entry<K, V>) node;
+                entries.remove(entry.key, entry);
+            });
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry<K, V> entry) {
+        return entry.expiresAt <= clock.getAsLong();
+    }
+
+    private static final class Entry<K, V> extends TimingWheel.Node {
+        private final K key;
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.exception.PasscodeAttemptsExceededException;
+import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
+import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits Passcode verification attempts per User and locks verification once the limit is reached.
+ * <p>
+ * A User this instance knows to be locked out is rejected by {@link #checkNotLockedOut(UUID)} from memory, before
+ * the Passcode is read. Otherwise an attempt is taken before the Passcode is compared, as one atomic
+ * increment-and-test, so concurrent verifications cannot slip past the limit, and the lockout is decided from the
+ * attempt number that increment returns. Unless the {@link EphemeralCredentialStore} is the only copy of the
+ * Passcode the count lives on the Passcode row, shared by every instance and started again whenever the Passcode
+ * is reissued, and a lockout is remembered here for {@code app.passcode.lockout-memo-millis} only, so a Passcode
+ * reissued by another instance is accepted again after at most that long. In memory-only mode the count is kept
+ * here and cleared through {@link #reset(UUID)}.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class PasscodeAttemptLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasscodeAttemptLimiter.class);
+    private static final long TICK_MILLIS = 1000;
+
+    private final PasscodeRepository passcodeRepository;
+    private final EphemeralCredentialStore credentialStore;
+    private final ExpiringMap<UUID, AtomicInteger> attempts = new ExpiringMap<>(TICK_MILLIS);
+    private final Counter lockouts;
+    private final Counter rejectedAttempts;
+
+    @Value("${app.passcode.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.passcode.lockout-memo-millis:60000}")
+    private long lockoutMemoMillis;
+
+    public PasscodeAttemptLimiter(
+            PasscodeRepository passcodeRepository,
+            EphemeralCredentialStore credentialStore,
+            MeterRegistry meterRegistry
+    ) {
+        this.passcodeRepository = passcodeRepository;
+        this.credentialStore = credentialStore;
+        this.lockouts = Counter.builder("identity.passcode.lockouts")
+                .description("Number of times a User was locked out of Passcode verification")
+                .register(meterRegistry);
+        this.rejectedAttempts = Counter.builder("identity.passcode.attempts.rejected")
+                .description("Number of Passcode verifications rejected while locked out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Throws if this instance already knows the User has used up their attempts, without touching the database.
+     */
+    public void checkNotLockedOut(UUID userId) {
+        AtomicInteger count = attempts.get(userId);
+        if (count != null && count.get() >= maxAttempts)
+            reject();
+    }
+
+    /**
+     * Takes one attempt for the User's current Passcode, or throws if they have used up their attempts.
+     *
+     * @return the number of the attempt taken, from 1 up to the maximum
+     */
+    public int acquireAttempt(UUID userId) {
+        if (credentialStore.isMemoryOnly()) {
+            int attempt = attempts.computeIfAbsent(
+                    userId, id -> new AtomicInteger(), IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS).incrementAndGet();
+            if (attempt > maxAttempts) reject();
+            return attempt;
+        }
+
+        Optional<Integer> attempt = passcodeRepository.acquireAttempt(userId, maxAttempts);
+        if (attempt.isEmpty()) {
+            rememberLockout(userId);
+            reject();
+        }
+        return attempt.get();
+    }
+
+    private void reject() {
+        rejectedAttempts.increment();
+        throw new PasscodeAttemptsExceededException();
+    }
+
+    /**
+     * Records that the given attempt, as returned by {@link #acquireAttempt(UUID)}, was incorrect; the last one
+     * locks the User out. Each attempt number is handed to one caller only, so the lockout is counted once.
+     */
+    public void recordFailedAttempt(UUID userId, int attempt) {
+        if (attempt != maxAttempts) return;
+
+        logger.warn("Passcode verification locked for User [userId: '{}']", userId);
+        lockouts.increment();
+        if (!credentialStore.isMemoryOnly())
+            rememberLockout(userId);
+    }
+
+    private void rememberLockout(UUID userId) {
+        attempts.put(userId, new AtomicInteger(maxAttempts), lockoutMemoMillis);
+    }
+
+    /**
+     * Clears the in-memory count or remembered lockout. The database count goes with its Passcode row and needs
+     * no reset.
+     */
+    public void reset(UUID userId) {
+        attempts.remove(userId);
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        attempts.expireEntries();
+    }
+
+}
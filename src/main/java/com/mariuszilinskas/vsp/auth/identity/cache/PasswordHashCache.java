@@ -0,0 +1,141 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of Password hashes by User ID, so repeat logins and verifications skip the
+ * database read. Every Password write or delete must call {@link #invalidate(UUID)}; the entry is dropped
+ * straight away and again once the writing transaction completes, and a load that overlaps an invalidation
+ * is not kept, so a stale hash is never cached past the write.
+ * <p>
+ * Each instance keeps its own entries, so an invalidation is also broadcast once the write completes and every
+ * instance drops its copy on receipt. The short time to live bounds staleness if that message is lost.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class PasswordHashCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashCache.class);
+    private static final long TICK_MILLIS = 1000;
+
+    private final RabbitMQProducer rabbitMQProducer;
+    private final ExpiringMap<UUID, String> passwordHashes = new ExpiringMap<>(TICK_MILLIS);
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.password-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.password-cache.ttl-millis:60000}")
+    private long ttlMillis;
+
+    @Value("${app.password-cache.max-entries:100000}")
+    private int maxEntries;
+
+    public PasswordHashCache(RabbitMQProducer rabbitMQProducer, MeterRegistry meterRegistry) {
+        this.rabbitMQProducer = rabbitMQProducer;
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        Gauge.builder("identity.password.cache.size", passwordHashes, ExpiringMap::size)
+                .description("Number of Password hashes cached")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("identity.password.cache.gets")
+                .description("Number of Password hash lookups, by cache result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the User's Password hash from the cache, or from the loader on a miss.
+     */
+    public Optional<String> get(UUID userId, Function<UUID, Optional<String>> loader) {
+        if (!enabled) return loader.apply(userId);
+
+        String cached = passwordHashes.get(userId);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+
+        misses.increment();
+        long invalidationsBeforeLoad = invalidations.get();
+        Optional<String> loaded = loader.apply(userId);
+        loaded.ifPresent(passwordHash -> cache(userId, passwordHash, invalidationsBeforeLoad));
+        return loaded;
+    }
+
+    private void cache(UUID userId, String passwordHash, long invalidationsBeforeLoad) {
+        if (passwordHashes.size() >= maxEntries) return;
+        passwordHashes.put(userId, passwordHash, ttlMillis);
+
+        // An invalidation since the load began may have come before the put, so drop what was just cached
+        if (invalidations.get() != invalidationsBeforeLoad)
+            passwordHashes.remove(userId, passwordHash);
+    }
+
+    /**
+     * Drops the User's cached hash now and, inside a transaction, again after it completes, so a read
+     * of the old row made before the commit cannot stay cached. The other instances are told once the
+     * write has completed, as they could otherwise reload the old row before the commit.
+     */
+    public void invalidate(UUID userId) {
+        evict(userId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            broadcast(userId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict(userId);
+                broadcast(userId);
+            }
+        });
+    }
+
+    private void broadcast(UUID userId) {
+        if (!enabled) return;
+        try {
+            rabbitMQProducer.sendPasswordChangedMessage(userId);
+        } catch (AmqpException ex) {
+            logger.warn("Failed to broadcast Password hash invalidation, other instances keep theirs until expiry " +
+                    "[userId: '{}']", userId, ex);
+        }
+    }
+
+    /**
+     * Drops the User's cached hash on this instance only, for an invalidation broadcast by any instance.
+     */
+    public void evict(UUID userId) {
+        invalidations.incrementAndGet();
+        passwordHashes.remove(userId);
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        passwordHashes.expireEntries();
+    }
+
+}
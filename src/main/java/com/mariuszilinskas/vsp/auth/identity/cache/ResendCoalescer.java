@@ -0,0 +1,93 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collapses repeated resend requests (Passcode and Reset Password emails) for the same User into one.
+ * The first request opens a window; requests inside it are suppressed and the credential already
+ * sent stays valid.
+ * <p>
+ * The window is kept in this instance's memory, so the limit holds per instance, not across the cluster:
+ * requests spread over N instances (through the load balancer, or the shared reset-passcode queue) can still
+ * send up to N emails per subject and window. It curbs bursts of retries, not a determined sender.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class ResendCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResendCoalescer.class);
+    private static final long TICK_MILLIS = 1000;
+
+    private final ExpiringMap<ResendKey, Object> openWindows = new ExpiringMap<>(TICK_MILLIS);
+    private final Map<ResendType, Counter> suppressed = new EnumMap<>(ResendType.class);
+
+    @Value("${app.resend.window-millis:60000}")
+    private long windowMillis;
+
+    public ResendCoalescer(MeterRegistry meterRegistry) {
+        for (ResendType type : ResendType.values()) {
+            suppressed.put(type, Counter.builder("identity.resend.suppressed")
+                    .description("Number of resend requests collapsed into an earlier one")
+                    .tag("type", type.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Opens a resend window for the subject (a User ID or email).
+     *
+     * @return true if no window was open and the caller should send, false if the request is suppressed
+     */
+    public boolean tryAcquire(ResendType type, Object subject) {
+        var key = new ResendKey(type, normalise(subject));
+        var window = new Object();
+        boolean acquired = openWindows.computeIfAbsent(key, k -> window, windowMillis) == window;
+        if (!acquired) {
+            logger.info("Suppressing repeated {} resend [subject: '{}']", type, key.subject());
+            suppressed.get(type).increment();
+        }
+        return acquired;
+    }
+
+    /**
+     * Opens a window without checking it, e.g. after the first credential is sent on sign-up.
+     */
+    public void markSent(ResendType type, Object subject) {
+        openWindows.put(new ResendKey(type, normalise(subject)), new Object(), windowMillis);
+    }
+
+    /**
+     * Closes the window, e.g. when the send it guarded failed and a retry must go through.
+     */
+    public void release(ResendType type, Object subject) {
+        openWindows.remove(new ResendKey(type, normalise(subject)));
+    }
+
+    @Scheduled(fixedDelay = TICK_MILLIS)
+    public void expireEntries() {
+        openWindows.expireEntries();
+    }
+
+    private String normalise(Object subject) {
+        return subject.toString().trim().toLowerCase(Locale.ROOT);
+    }
+
+    public enum ResendType {
+        PASSCODE,
+        RESET_PASSWORD
+    }
+
+    private record ResendKey(ResendType type, String subject) {}
+
+}
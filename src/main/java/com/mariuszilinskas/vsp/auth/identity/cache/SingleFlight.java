@@ -0,0 +1,76 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one: the first caller makes the call, callers arriving
+ * while it is in flight wait for it and share its result or exception. Nothing is kept once the call
+ * completes, so a later caller makes a fresh call.
+ * <p>
+ * Waiters give up after {@code maxWait}, which should match the longest the call itself can take, so a
+ * stuck call holds its waiters no longer than it would have held each of them making their own.
+ *
+ * @author Marius Zilinskas
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalescedCalls;
+    private final Duration maxWait;
+    private final Supplier<? extends RuntimeException> waitTimeout;
+
+    /**
+     * @param coalescedCalls counts the callers that shared another caller's call
+     * @param maxWait        how long a caller waits for another caller's call
+     * @param waitTimeout    creates the exception thrown to a caller that stopped waiting
+     */
+    public SingleFlight(Counter coalescedCalls, Duration maxWait, Supplier<? extends RuntimeException> waitTimeout) {
+        this.coalescedCalls = coalescedCalls;
+        this.maxWait = maxWait;
+        this.waitTimeout = waitTimeout;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        var flight = new CompletableFuture<V>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return await(existing);
+        }
+
+        try {
+            V value = call.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) throw cause;
+            if (ex.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw waitTimeout.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw waitTimeout.get();
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel with O(1) schedule and cancel. Four levels of 64 slots each cover
+ * 64^4 ticks; timers further out than that are parked in the top level and re-placed when it cascades.
+ * Timers are intrusive: the scheduled object is itself the list node, so scheduling allocates nothing.
+ * <p>
+ * Not thread-safe, callers are expected to guard it.
+ *
+ * @author Marius Zilinskas
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Node[][] buckets = new Node[LEVELS][WHEEL_SIZE];
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                Node sentinel = new Node();
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                buckets[level][slot] = sentinel;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules the node to fire on the first tick at or after the given deadline.
+     * A node that is already scheduled is moved.
+     */
+    public void schedule(Node node, long deadlineMillis) {
+        cancel(node);
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        node.deadlineTick = Math.max(deadlineTick, currentTick + 1);
+        place(node);
+        size++;
+    }
+
+    public void cancel(Node node) {
+        if (node.next == null) return;
+        unlink(node);
+        size--;
+    }
+
+    /**
+     * Advances the wheel up to the given time, handing every node whose deadline has passed to the callback.
+     */
+    public void advance(long nowMillis, Consumer<Node> onExpired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            cascade();
+            expireSlot(onExpired);
+        }
+    }
+
+    private void place(Node node) {
+        long delta = Math.min(node.deadlineTick - currentTick, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        long tick = currentTick + delta;
+        int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        link(buckets[level][slot], node);
+    }
+
+    private void cascade() {
+        // When a lower level wraps around, the matching slot one level up is redistributed downwards
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) return;
+
+            int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+            Node sentinel = buckets[level][slot];
+            Node node = sentinel.next;
+            while (node != sentinel) {
+                Node next = node.next;
+                unlink(node);
+                place(node);
+                node = next;
+            }
+        }
+    }
+
+    private void expireSlot(Consumer<Node> onExpired) {
+        Node sentinel = buckets[0][(int) (currentTick & WHEEL_MASK)];
+        Node node = sentinel.next;
+        while (node != sentinel) {
+            Node next = node.next;
+            unlink(node);
+            if (node.deadlineTick <= currentTick) {
+                size--;
+                onExpired.accept(node);
+            } else {
+                place(node);
+            }
+            node = next;
+        }
+    }
+
+    private static void link(Node sentinel, Node node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    private static void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    /**
+     * A timer in the wheel. Extend it to carry a payload without a separate allocation.
+     */
+    public static class Node {
+        private Node prev;
+        private Node next;
+        private long deadlineTick;
+
+        public boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Remembers the User data fetched while serving one request, so the request never fetches the same User
+ * twice. Each HTTP request gets a memo of its own; message handlers open one with {@link #run(Runnable)}.
+ * Outside a memo every lookup goes to the loader. Failed lookups are not remembered.
+ * <p>
+ * A User Account remembered by email is also found by User ID, and its profile serves {@link #getProfile}.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+public class UserAccountMemo extends OncePerRequestFilter {
+
+    private final ThreadLocal<Memo> current = new ThreadLocal<>();
+    private final Counter hits;
+
+    public UserAccountMemo(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("identity.user-account.memo.hits")
+                .description("Number of User lookups served from data already fetched by the same request")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        current.set(new Memo());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            current.remove();
+        }
+    }
+
+    /**
+     * Runs the work with a memo of its own, or within the current one if there is one.
+     */
+    public void run(Runnable work) {
+        if (current.get() != null) {
+            work.run();
+            return;
+        }
+        current.set(new Memo());
+        try {
+            work.run();
+        } finally {
+            current.remove();
+        }
+    }
+
+    public UserAccount getByEmail(String email, Function<String, UserAccount> loader) {
+        Memo memo = current.get();
+        if (memo == null) return loader.apply(email);
+
+        UserAccount account = memo.accountsByEmail.get(email);
+        if (account != null) {
+            hits.increment();
+            return account;
+        }
+        account = loader.apply(email);
+        memo.put(account);
+        memo.accountsByEmail.put(email, account);
+        return account;
+    }
+
+    public UserAccount getByUserId(UUID userId, Function<UUID, UserAccount> loader) {
+        Memo memo = current.get();
+        if (memo == null) return loader.apply(userId);
+
+        UserAccount account = memo.accountsByUserId.get(userId);
+        if (account != null) {
+            hits.increment();
+            return account;
+        }
+        account = loader.apply(userId);
+        memo.put(account);
+        return account;
+    }
+
+    public UserResponse getProfile(UUID userId, Function<UUID, UserResponse> loader) {
+        Memo memo = current.get();
+        if (memo == null) return loader.apply(userId);
+
+        UserAccount account = memo.accountsByUserId.get(userId);
+        UserResponse profile = account != null ? account.profile() : memo.profilesByUserId.get(userId);
+        if (profile != null) {
+            hits.increment();
+            return profile;
+        }
+        profile = loader.apply(userId);
+        memo.profilesByUserId.put(userId, profile);
+        return profile;
+    }
+
+    private static final class Memo {
+        private final Map<String, UserAccount> accountsByEmail = new HashMap<>();
+        private final Map<UUID, UserAccount> accountsByUserId = new HashMap<>();
+        private final Map<UUID, UserResponse> profilesByUserId = new HashMap<>();
+
+        private void put(UserAccount account) {
+            accountsByEmail.put(account.email(), account);
+            accountsByUserId.put(account.userId(), account);
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.mariuszilinskas.vsp.auth.identity.client;
 
 import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
 import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
@@ -11,12 +12,18 @@ import java.util.UUID;
 public interface UserFeignClient {
 
     @GetMapping(value = "/user/auth-details/by-email", consumes = "application/json")
-    AuthDetails getUserAuthDetailsByEmail(@RequestParam String email);
+    AuthDetails getUserAuthDetailsByEmail(@RequestParam("email") String email);
 
     @GetMapping(value = "/user/auth-details/by-userid", consumes = "application/json")
-    AuthDetails getUserAuthDetailsByUserId(@RequestParam UUID userId);
+    AuthDetails getUserAuthDetailsByUserId(@RequestParam("userId") UUID userId);
 
     @GetMapping(value = "/user/{userId}", consumes = "application/json")
     UserResponse getUser(@PathVariable("userId") UUID userId);
 
+    @GetMapping(value = "/user/account/by-email", consumes = "application/json")
+    UserAccount getUserAccountByEmail(@RequestParam("email") String email);
+
+    @GetMapping(value = "/user/account/by-userid", consumes = "application/json")
+    UserAccount getUserAccountByUserId(@RequestParam("userId") UUID userId);
+
 }
@@ -0,0 +1,108 @@
+package com.mariuszilinskas.vsp.auth.identity.client;
+
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
+import feign.FeignException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Guards calls to the users service with a semaphore bulkhead and a circuit breaker, so a degraded users
+ * service cannot tie up every request thread. Calls that are shed fail fast with
+ * {@link UsersServiceUnavailableException}.
+ * <p>
+ * Only server errors and I/O failures (including read timeouts) count against the circuit: a 4xx answer
+ * means the users service is working.
+ *
+ * @author Marius Zilinskas
+ */
+public class UsersServiceGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsersServiceGuard.class);
+    private static final String NAME = "users";
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadFullRejections;
+
+    public UsersServiceGuard(
+            CircuitBreakerConfig circuitBreakerConfig,
+            BulkheadConfig bulkheadConfig,
+            MeterRegistry meterRegistry
+    ) {
+        var circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.from(circuitBreakerConfig)
+                .recordException(UsersServiceGuard::isServiceFailure)
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        var bulkheadRegistry = BulkheadRegistry.of(bulkheadConfig);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(NAME);
+        this.bulkhead = bulkheadRegistry.bulkhead(NAME);
+        this.meterRegistry = meterRegistry;
+        this.circuitOpenRejections = rejectionCounter(meterRegistry, "circuit_open");
+        this.bulkheadFullRejections = rejectionCounter(meterRegistry, "bulkhead_full");
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> recordTransition(event.getStateTransition()));
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("identity.users.calls.rejected")
+                .description("Number of users service calls shed without being made")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static boolean isServiceFailure(Throwable ex) {
+        return ex instanceof FeignException && !(ex instanceof FeignException.FeignClientException);
+    }
+
+    private void recordTransition(CircuitBreaker.StateTransition transition) {
+        logger.warn("Users service circuit breaker moved from {} to {}",
+                transition.getFromState(), transition.getToState());
+        Counter.builder("identity.users.circuit.transitions")
+                .description("Number of users service circuit breaker state changes")
+                .tag("from", transition.getFromState().name().toLowerCase(Locale.ROOT))
+                .tag("to", transition.getToState().name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Makes the call unless the circuit is open or too many calls are already in flight.
+     *
+     * @throws UsersServiceUnavailableException if the call is shed
+     */
+    public <T> T call(Supplier<T> call) {
+        try {
+            return circuitBreaker.executeSupplier(Bulkhead.decorateSupplier(bulkhead, call));
+        } catch (CallNotPermittedException ex) {
+            circuitOpenRejections.increment();
+            throw new UsersServiceUnavailableException();
+        } catch (BulkheadFullException ex) {
+            bulkheadFullRejections.increment();
+            throw new UsersServiceUnavailableException();
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps every Hikari pool (the single default pool, or the pools from {@link DataSourceConfig}) so the
+ * {@link ConnectionHoldTracker} sees how long request threads hold their connections.
+ *
+ * @author Marius Zilinskas
+ */
+@Configuration
+public class ConnectionHoldMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionHoldTrackingPostProcessor(ObjectProvider<ConnectionHoldTracker> tracker) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource)
+                    return new ConnectionHoldTrackingDataSource(dataSource, tracker::getObject);
+                return bean;
+            }
+        };
+    }
+
+}
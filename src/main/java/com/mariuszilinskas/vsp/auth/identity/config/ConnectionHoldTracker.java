@@ -0,0 +1,71 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds up how long each HTTP request holds pooled database connections on its thread and records the
+ * total to {@code identity.request.connection.hold}, tagged with the request's URI pattern. The time of
+ * each individual checkout is already covered by Hikari's {@code hikaricp.connections.usage}.
+ *
+ * @author Marius Zilinskas
+ */
+@Component
+@RequiredArgsConstructor
+public class ConnectionHoldTracker extends OncePerRequestFilter {
+
+    private final ThreadLocal<long[]> requestHoldNanos = new ThreadLocal<>();
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        long[] heldNanos = new long[1];
+        requestHoldNanos.set(heldNanos);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            requestHoldNanos.remove();
+            if (heldNanos[0] > 0)
+                recordRequest(request, heldNanos[0]);
+        }
+    }
+
+    private void recordRequest(HttpServletRequest request, long heldNanos) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Timer.builder("identity.request.connection.hold")
+                .description("Total time an HTTP request held database connections")
+                .tag("method", request.getMethod())
+                .tag("uri", uri != null ? uri.toString() : "UNKNOWN")
+                .register(meterRegistry)
+                .record(heldNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the current thread is serving an HTTP request, so connections it takes should be timed
+     */
+    boolean isTracking() {
+        return requestHoldNanos.get() != null;
+    }
+
+    void recordHold(long nanos) {
+        long[] heldNanos = requestHoldNanos.get();
+        if (heldNanos != null)
+            heldNanos[0] += nanos;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.function.SingletonSupplier;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Connection pool wrapper that reports to the {@link ConnectionHoldTracker} how long each connection taken
+ * by a request thread was held, from checkout to close. Connections taken outside requests are not wrapped.
+ *
+ * @author Marius Zilinskas
+ */
+public class ConnectionHoldTrackingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private final Supplier<ConnectionHoldTracker> tracker;
+
+    public ConnectionHoldTrackingDataSource(DataSource targetDataSource, Supplier<ConnectionHoldTracker> tracker) {
+        super(targetDataSource);
+        this.tracker = SingletonSupplier.of(tracker);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * Closes the wrapped pool on shutdown, as it would have been closed had it not been wrapped.
+     */
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable pool)
+            pool.close();
+    }
+
+    private Connection track(Connection connection) {
+        ConnectionHoldTracker holdTracker = tracker.get();
+        if (!holdTracker.isTracking()) return connection;
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionProxy.class.getClassLoader(),
+                new Class<?>[] {ConnectionProxy.class},
+                new HeldConnection(connection, holdTracker));
+    }
+
+    private static class HeldConnection implements InvocationHandler {
+
+        private final Connection target;
+        private final ConnectionHoldTracker holdTracker;
+        private final long acquiredAt = System.nanoTime();
+        private boolean closed;
+
+        HeldConnection(Connection target, ConnectionHoldTracker holdTracker) {
+            this.target = target;
+            this.holdTracker = holdTracker;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getTargetConnection":
+                    return target;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        holdTracker.recordHold(System.nanoTime() - acquiredAt);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import com.mariuszilinskas.vsp.auth.identity.config.PoolRoutingDataSource.Pool;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Splits the database connections into named pools, replacing Spring Boot's single default pool:
+ * <ul>
+ *     <li>"primary" serves interactive traffic, and anything not routed elsewhere (including Flyway and
+ *     the advisory locks).</li>
+ *     <li>"replica", with {@code app.datasource.replica.enabled}, serves read-only transactions.</li>
+ *     <li>"background", with {@code app.datasource.background.enabled}, serves {@link Workload#BACKGROUND}
+ *     work against the primary database.</li>
+ * </ul>
+ * Each is a Hikari pool with its own sizing and timeouts, so their {@code hikaricp.*} metrics are reported
+ * separately.
+ *
+ * @author Marius Zilinskas
+ */
+@Configuration
+@ConditionalOnExpression("${app.datasource.replica.enabled:false} or ${app.datasource.background.enabled:false}")
+public class DataSourceConfig {
+
+    @Value("${app.datasource.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replica.max-lag-millis:2000}")
+    private long maxLagMillis;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(replicaUrl)
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            MeterRegistry meterRegistry
+    ) {
+        return new ReplicaLagMonitor(new JdbcTemplate(replicaDataSource), maxLagMillis, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.datasource.background.enabled", havingValue = "true")
+    @ConfigurationProperties("app.datasource.background.hikari")
+    public HikariDataSource backgroundDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("background");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource,
+            @Qualifier("backgroundDataSource") ObjectProvider<DataSource> backgroundDataSource,
+            ObjectProvider<ReplicaLagMonitor> replicaLagMonitor,
+            MeterRegistry meterRegistry
+    ) {
+        Map<Pool, DataSource> pools = new EnumMap<>(Pool.class);
+        pools.put(Pool.PRIMARY, primaryDataSource);
+        replicaDataSource.ifAvailable(dataSource -> pools.put(Pool.REPLICA, dataSource));
+        backgroundDataSource.ifAvailable(dataSource -> pools.put(Pool.BACKGROUND, dataSource));
+
+        var routingDataSource = new PoolRoutingDataSource(pools, replicaLagMonitor.getIfAvailable(), meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import feign.Capability;
+import feign.Client;
+import feign.MethodMetadata;
+import feign.Request;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives individual Feign client methods their own read timeout, in place of the client-wide one. The client
+ * is wrapped outermost, around the load balancer, and the connect timeout is left as configured.
+ *
+ * @author Marius Zilinskas
+ */
+public class MethodTimeoutCapability implements Capability {
+
+    private final Map<String, Long> readTimeoutMillisByMethod;
+
+    /**
+     * @param readTimeoutMillisByMethod read timeouts keyed by client method name
+     */
+    public MethodTimeoutCapability(Map<String, Long> readTimeoutMillisByMethod) {
+        this.readTimeoutMillisByMethod = Map.copyOf(readTimeoutMillisByMethod);
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> client.execute(request, optionsFor(request, options));
+    }
+
+    private Request.Options optionsFor(Request request, Request.Options options) {
+        MethodMetadata methodMetadata = request.requestTemplate() == null ? null
+                : request.requestTemplate().methodMetadata();
+        if (methodMetadata == null || methodMetadata.method() == null) return options;
+
+        Long readTimeoutMillis = readTimeoutMillisByMethod.get(methodMetadata.method().getName());
+        if (readTimeoutMillis == null) return options;
+        return new Request.Options(options.connectTimeout(), options.connectTimeoutUnit(),
+                readTimeoutMillis, TimeUnit.MILLISECONDS, options.isFollowRedirects());
+    }
+
+}
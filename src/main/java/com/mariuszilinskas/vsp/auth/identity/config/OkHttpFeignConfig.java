@@ -0,0 +1,57 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled OkHttp transport for the Feign clients, in place of the default {@code HttpURLConnection} one.
+ * Selected with {@code spring.cloud.openfeign.okhttp.enabled}; Spring Cloud OpenFeign then wraps this client
+ * in the load balancer. Connect and read timeouts still come from the Feign options of each call.
+ * <p>
+ * Idle connections are kept alive for reuse, up to the pool limit. HTTP/2 is negotiated over TLS where the
+ * users service offers it, and multiplexes calls over one connection; plain-text calls stay on HTTP/1.1.
+ * Concurrent connections to the users service are bounded by the {@code app.users-client.bulkhead}.
+ *
+ * @author Marius Zilinskas
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.cloud.openfeign.okhttp.enabled", havingValue = "true")
+public class OkHttpFeignConfig {
+
+    @Value("${app.feign.okhttp.max-idle-connections:25}")
+    private int maxIdleConnections;
+
+    @Value("${app.feign.okhttp.keep-alive-millis:300000}")
+    private long keepAliveMillis;
+
+    @Value("${app.feign.okhttp.http2-enabled:true}")
+    private boolean http2Enabled;
+
+    @Bean(destroyMethod = "evictAll")
+    public ConnectionPool feignConnectionPool(MeterRegistry meterRegistry) {
+        var connectionPool = new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS);
+        new OkHttpConnectionPoolMetrics(connectionPool, "okhttp.pool", Tags.of("client", "feign"), maxIdleConnections)
+                .bindTo(meterRegistry);
+        return connectionPool;
+    }
+
+    @Bean
+    public OkHttpClient feignOkHttpClient(ConnectionPool feignConnectionPool) {
+        return new OkHttpClient.Builder()
+                .connectionPool(feignConnectionPool)
+                .protocols(http2Enabled ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .build();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks the connection pool for each connection out of the configured ones:
+ * <ul>
+ *     <li>{@link Workload#BACKGROUND} work (expiry sweeps, bulk data deletion) goes to the background pool,
+ *     so it cannot starve interactive requests of connections.</li>
+ *     <li>Read-only transactions go to the read replica, falling back to the primary while the
+ *     {@link ReplicaLagMonitor} reports the replica unusable.</li>
+ *     <li>Everything else goes to the primary.</li>
+ * </ul>
+ * The transaction's read-only flag is only set after the transaction manager asks for a connection, so this
+ * must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ *
+ * @author Marius Zilinskas
+ */
+public class PoolRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final boolean hasReplica;
+    private final boolean hasBackground;
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final Map<Pool, Counter> routedConnections = new EnumMap<>(Pool.class);
+    private final Counter replicaFallbacks;
+
+    /**
+     * @param pools the pools to route between, PRIMARY is required
+     * @param replicaLagMonitor the replica's lag monitor, required only with a REPLICA pool
+     */
+    public PoolRoutingDataSource(
+            Map<Pool, DataSource> pools,
+            ReplicaLagMonitor replicaLagMonitor,
+            MeterRegistry meterRegistry
+    ) {
+        if (!pools.containsKey(Pool.PRIMARY))
+            throw new IllegalArgumentException("A PRIMARY pool is required");
+
+        this.hasReplica = pools.containsKey(Pool.REPLICA);
+        this.hasBackground = pools.containsKey(Pool.BACKGROUND);
+        this.replicaLagMonitor = replicaLagMonitor;
+        setTargetDataSources(Map.copyOf(pools));
+        setDefaultTargetDataSource(pools.get(Pool.PRIMARY));
+        for (Pool pool : pools.keySet()) {
+            routedConnections.put(pool, Counter.builder("identity.datasource.connections.routed")
+                    .description("Number of connections handed out, per pool")
+                    .tag("pool", pool.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.replicaFallbacks = !hasReplica ? null : Counter.builder("identity.datasource.replica.fallbacks")
+                .description("Number of read-only connections sent to the primary because the replica was unusable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Pool pool = selectPool();
+        routedConnections.get(pool).increment();
+        return pool;
+    }
+
+    private Pool selectPool() {
+        if (hasBackground && Workload.current() == Workload.BACKGROUND)
+            return Pool.BACKGROUND;
+        if (!hasReplica || !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+            return Pool.PRIMARY;
+        if (replicaLagMonitor.isReplicaUsable())
+            return Pool.REPLICA;
+
+        replicaFallbacks.increment();
+        return Pool.PRIMARY;
+    }
+
+    enum Pool {
+        PRIMARY,
+        REPLICA,
+        BACKGROUND
+    }
+
+}
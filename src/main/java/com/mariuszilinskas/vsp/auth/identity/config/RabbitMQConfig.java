@@ -33,6 +33,18 @@ public class RabbitMQConfig {
     @Value("${rabbitmq.routing-keys.delete-user-data}")
     private String deleteUserDataRoutingKey;
 
+    @Value("${rabbitmq.queues.user-changed-projection}")
+    private String userChangedProjectionQueue;
+
+    @Value("${rabbitmq.routing-keys.user-changed}")
+    private String userChangedRoutingKey;
+
+    @Value("${rabbitmq.routing-keys.password-changed}")
+    private String passwordChangedRoutingKey;
+
+    @Value("${rabbitmq.routing-keys.email-registered}")
+    private String emailRegisteredRoutingKey;
+
     @Bean
     public DirectExchange exchange() {
         return new DirectExchange(exchange);
@@ -74,6 +86,58 @@ public class RabbitMQConfig {
                 .with(deleteUserDataRoutingKey);
     }
 
+    @Bean
+    public Queue userChangedQueue() {
+        // Every instance caches Auth Details, so each needs its own copy of the event
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding userChangedBinding() {
+        return BindingBuilder.bind(userChangedQueue())
+                .to(exchange())
+                .with(userChangedRoutingKey);
+    }
+
+    @Bean
+    public Queue userChangedProjectionQueue() {
+        // The User projection is shared by every instance, so one of them syncs it per event
+        return new Queue(userChangedProjectionQueue, true);
+    }
+
+    @Bean
+    public Binding userChangedProjectionBinding() {
+        return BindingBuilder.bind(userChangedProjectionQueue())
+                .to(exchange())
+                .with(userChangedRoutingKey);
+    }
+
+    @Bean
+    public Queue passwordChangedQueue() {
+        // Every instance caches Password hashes, so each needs its own copy of the event
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding passwordChangedBinding() {
+        return BindingBuilder.bind(passwordChangedQueue())
+                .to(exchange())
+                .with(passwordChangedRoutingKey);
+    }
+
+    @Bean
+    public Queue emailRegisteredQueue() {
+        // Every instance caches unknown emails, so each needs its own copy of the event
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding emailRegisteredBinding() {
+        return BindingBuilder.bind(emailRegisteredQueue())
+                .to(exchange())
+                .with(emailRegisteredRoutingKey);
+    }
+
     @Bean
     public AmqpTemplate amqpTemplate(ConnectionFactory connectionFactory) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
@@ -0,0 +1,66 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Polls the read replica for its replication lag and decides whether read-only work may be sent to it.
+ * The replica counts as unusable until the first check succeeds, while it lags more than the allowed
+ * maximum, and while it cannot be reached.
+ *
+ * @author Marius Zilinskas
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // A caught-up replica replays nothing, so only measure the lag while WAL is still waiting to be replayed
+    static final String LAG_MILLIS_SQL = """
+            SELECT CAST(CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END AS BIGINT)""";
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLagMillis;
+    private volatile double lagSeconds = Double.NaN;
+    private volatile boolean replicaUsable;
+
+    public ReplicaLagMonitor(JdbcTemplate replicaJdbcTemplate, long maxLagMillis, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = replicaJdbcTemplate;
+        this.maxLagMillis = maxLagMillis;
+        Gauge.builder("identity.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the read replica, NaN while it cannot be reached")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-millis:1000}")
+    public void checkLag() {
+        boolean usable;
+        try {
+            Long lagMillis = replicaJdbcTemplate.queryForObject(LAG_MILLIS_SQL, Long.class);
+            long lag = lagMillis == null ? 0 : lagMillis;
+            lagSeconds = lag / 1000.0;
+            usable = lag <= maxLagMillis;
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to check read replica lag: {}", ex.getMessage());
+            lagSeconds = Double.NaN;
+            usable = false;
+        }
+
+        if (usable != replicaUsable)
+            logger.info("Read replica {} [lagSeconds: {}]", usable ? "in use" : "bypassed", lagSeconds);
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+}
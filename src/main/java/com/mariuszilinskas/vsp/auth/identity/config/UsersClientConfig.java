@@ -0,0 +1,79 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
+import feign.Capability;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Timeouts, bulkhead and circuit breaker for the users service. The client-wide connect and read timeouts
+ * are set under {@code spring.cloud.openfeign.client.config.users}; the Auth Details lookups on the
+ * /login and /token path get a shorter read timeout of their own.
+ *
+ * @author Marius Zilinskas
+ */
+@Configuration
+public class UsersClientConfig {
+
+    @Value("${app.users-client.read-timeout-millis.auth-details:1000}")
+    private long authDetailsReadTimeoutMillis;
+
+    @Value("${app.users-client.read-timeout-millis.user:3000}")
+    private long userReadTimeoutMillis;
+
+    @Value("${app.users-client.bulkhead.max-concurrent-calls:25}")
+    private int maxConcurrentCalls;
+
+    @Value("${app.users-client.bulkhead.max-wait-millis:0}")
+    private long maxWaitMillis;
+
+    @Value("${app.users-client.circuit-breaker.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+
+    @Value("${app.users-client.circuit-breaker.sliding-window-size:20}")
+    private int slidingWindowSize;
+
+    @Value("${app.users-client.circuit-breaker.minimum-number-of-calls:10}")
+    private int minimumNumberOfCalls;
+
+    @Value("${app.users-client.circuit-breaker.wait-in-open-millis:10000}")
+    private long waitInOpenMillis;
+
+    @Value("${app.users-client.circuit-breaker.permitted-calls-in-half-open:3}")
+    private int permittedCallsInHalfOpen;
+
+    @Bean
+    public Capability usersClientMethodTimeouts() {
+        return new MethodTimeoutCapability(Map.of(
+                "getUserAuthDetailsByEmail", authDetailsReadTimeoutMillis,
+                "getUserAuthDetailsByUserId", authDetailsReadTimeoutMillis,
+                "getUser", userReadTimeoutMillis,
+                "getUserAccountByEmail", userReadTimeoutMillis,
+                "getUserAccountByUserId", userReadTimeoutMillis
+        ));
+    }
+
+    @Bean
+    public UsersServiceGuard usersServiceGuard(MeterRegistry meterRegistry) {
+        var circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(Duration.ofMillis(waitInOpenMillis))
+                .permittedNumberOfCallsInHalfOpenState(permittedCallsInHalfOpen)
+                .build();
+        var bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ofMillis(maxWaitMillis))
+                .build();
+        return new UsersServiceGuard(circuitBreakerConfig, bulkheadConfig, meterRegistry);
+    }
+
+}
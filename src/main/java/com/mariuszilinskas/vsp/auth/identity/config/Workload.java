@@ -0,0 +1,46 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import java.util.function.Supplier;
+
+/**
+ * The kind of work the current thread is doing, used by {@link PoolRoutingDataSource} to pick a connection
+ * pool. Threads run as {@link #INTERACTIVE} unless the calling component wraps its work in
+ * {@link #BACKGROUND}, e.g. {@code Workload.BACKGROUND.run(() -> ...)}.
+ *
+ * @author Marius Zilinskas
+ */
+public enum Workload {
+
+    INTERACTIVE,
+    BACKGROUND;
+
+    private static final ThreadLocal<Workload> current = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static Workload current() {
+        return current.get();
+    }
+
+    /**
+     * Runs the task as this kind of work, restoring the previous kind afterwards.
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls the task as this kind of work, restoring the previous kind afterwards.
+     */
+    public <T> T call(Supplier<T> task) {
+        Workload previous = current.get();
+        current.set(this);
+        try {
+            return task.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+}
@@ -1,9 +1,14 @@
 package com.mariuszilinskas.vsp.auth.identity.consumer;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.UserAccountMemo;
+import com.mariuszilinskas.vsp.auth.identity.config.Workload;
 import com.mariuszilinskas.vsp.auth.identity.dto.CredentialsRequest;
 import com.mariuszilinskas.vsp.auth.identity.service.DataDeletionService;
 import com.mariuszilinskas.vsp.auth.identity.service.PasscodeService;
 import com.mariuszilinskas.vsp.auth.identity.service.PasswordService;
+import com.mariuszilinskas.vsp.auth.identity.service.UserProjectionService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,25 +25,58 @@ public class RabbitMQConsumer {
     private final PasscodeService passcodeService;
     private final PasswordService passwordService;
     private final DataDeletionService dataDeletionService;
+    private final AuthDetailsCache authDetailsCache;
+    private final UserProjectionService userProjectionService;
+    private final UserAccountMemo userAccountMemo;
+    private final PasswordHashCache passwordHashCache;
 
 
     @RabbitListener(queues = "${rabbitmq.queues.create-credentials}")
     public void consumeCreateCredentialsMessage(CredentialsRequest request) {
         logger.info("Received request to create credentials for User [userId: {}]", request.userId());
+        authDetailsCache.invalidateEmail(request.email());
         passwordService.createNewPassword(request);
+        userProjectionService.seed(request);
         passcodeService.createPasscode(request.userId(), request.firstName(), request.email());
+        // The seeded projection already serves the new User, so the users service call waits for the Passcode
+        userProjectionService.sync(request.userId());
     }
 
     @RabbitListener(queues = "${rabbitmq.queues.reset-passcode}")
     public void consumeResetPasscodeMessage(UUID userId) {
         logger.info("Received request to create passcode for User [userId: {}]", userId);
-        passcodeService.resetPasscode(userId);
+        userAccountMemo.run(() -> passcodeService.resetPasscode(userId));
     }
 
     @RabbitListener(queues = "${rabbitmq.queues.delete-user-data}")
     public void consumeDeleteUserDataMessage(UUID userId) {
         logger.info("Received request to delete user data for User [userId: {}]", userId);
-        dataDeletionService.deleteUserAuthData(userId);
+        // Bulk deletions take their connections from the background pool, away from login traffic
+        Workload.BACKGROUND.run(() -> dataDeletionService.deleteUserAuthData(userId));
+    }
+
+    @RabbitListener(queues = "#{userChangedQueue.name}")
+    public void consumeUserChangedMessage(UUID userId) {
+        logger.info("Received user changed event for User [userId: {}]", userId);
+        authDetailsCache.invalidate(userId);
+    }
+
+    @RabbitListener(queues = "${rabbitmq.queues.user-changed-projection}")
+    public void consumeUserChangedProjectionMessage(UUID userId) {
+        logger.info("Received user changed event, syncing User projection [userId: {}]", userId);
+        userProjectionService.sync(userId);
+    }
+
+    @RabbitListener(queues = "#{passwordChangedQueue.name}")
+    public void consumePasswordChangedMessage(UUID userId) {
+        logger.info("Received password changed event for User [userId: {}]", userId);
+        passwordHashCache.evict(userId);
+    }
+
+    @RabbitListener(queues = "#{emailRegisteredQueue.name}")
+    public void consumeEmailRegisteredMessage(String email) {
+        logger.info("Received email registered event [email: {}]", email);
+        authDetailsCache.evictEmail(email);
     }
 
 }
@@ -0,0 +1,35 @@
+package com.mariuszilinskas.vsp.auth.identity.controller;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.ProjectionResyncResponse;
+import com.mariuszilinskas.vsp.auth.identity.service.UserProjectionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+/**
+ * This class provides REST APIs for resyncing the local projection of user data from the users service.
+ * A resync covers one page of Users at a time; call it again with the returned last User ID until none is
+ * returned.
+ *
+ * @author Marius Zilinskas
+ */
+@RestController
+@RequestMapping("/projection")
+@RequiredArgsConstructor
+public class UserProjectionController {
+
+    private final UserProjectionService userProjectionService;
+
+    @PostMapping("/resync")
+    public ResponseEntity<ProjectionResyncResponse> resync(
+            @RequestParam(required = false) UUID after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        ProjectionResyncResponse response = userProjectionService.resync(after, limit);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+}
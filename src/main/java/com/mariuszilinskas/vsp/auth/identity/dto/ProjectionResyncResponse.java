@@ -0,0 +1,11 @@
+package com.mariuszilinskas.vsp.auth.identity.dto;
+
+import java.util.UUID;
+
+/**
+ * @param lastUserId pass as {@code after} to resync the next page; null once every User has been resynced
+ */
+public record ProjectionResyncResponse(
+        int usersResynced,
+        UUID lastUserId
+) {}
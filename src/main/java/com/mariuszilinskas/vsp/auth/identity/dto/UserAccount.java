@@ -0,0 +1,36 @@
+package com.mariuszilinskas.vsp.auth.identity.dto;
+
+import com.mariuszilinskas.vsp.auth.identity.enums.UserAuthority;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A User's Auth Details and profile fields, fetched from the users service in one call.
+ */
+public record UserAccount(
+        UUID userId,
+        List<UserRole> roles,
+        List<UserAuthority> authorities,
+        UserStatus status,
+        String firstName,
+        String lastName,
+        String email
+) {
+
+    public static UserAccount of(AuthDetails authDetails, UserResponse user) {
+        return new UserAccount(authDetails.userId(), authDetails.roles(), authDetails.authorities(),
+                authDetails.status(), user.firstName(), user.lastName(), user.email());
+    }
+
+    public AuthDetails authDetails() {
+        return new AuthDetails(userId, roles, authorities, status);
+    }
+
+    public UserResponse profile() {
+        return new UserResponse(firstName, lastName, email);
+    }
+
+}
@@ -0,0 +1,5 @@
+package com.mariuszilinskas.vsp.auth.identity.enums;
+
+public enum ResetTokenMode {
+    STORED, SIGNED
+}
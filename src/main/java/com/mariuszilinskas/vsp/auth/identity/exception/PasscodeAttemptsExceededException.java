@@ -0,0 +1,9 @@
+package com.mariuszilinskas.vsp.auth.identity.exception;
+
+public class PasscodeAttemptsExceededException extends RuntimeException {
+
+    public PasscodeAttemptsExceededException() {
+        super("Too many incorrect passcode attempts. Request a new passcode.");
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.mariuszilinskas.vsp.auth.identity.exception;
+
+/**
+ * This class represents a custom exception to be thrown when a call to the
+ * users service is rejected because the service is degraded
+ *
+ * @author Marius Zilinskas
+ */
+public class UsersServiceUnavailableException extends RuntimeException {
+
+    public UsersServiceUnavailableException() {
+        super("The users service is unavailable. Try again later.");
+    }
+
+}
@@ -94,6 +94,11 @@ public class AppExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(PasscodeAttemptsExceededException.class)
+    public ResponseEntity<ErrorResponse> handlePasscodeAttemptsExceededException(PasscodeAttemptsExceededException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @ExceptionHandler(PasscodeValidationException.class)
     public ResponseEntity<ErrorResponse> handlePasscodeValidationException(PasscodeValidationException ex) {
         return buildErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
@@ -119,6 +124,11 @@ public class AppExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(UsersServiceUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleUsersServiceUnavailableException(UsersServiceUnavailableException ex) {
+        return buildErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     // -----------------------------------------------------------
 
     /**
@@ -18,11 +18,14 @@ import java.util.UUID;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "passcodes")
+@Table(name = "passcodes", indexes = {
+        @Index(name = "uk_passcodes_user_id", columnList = "user_id", unique = true),
+        @Index(name = "idx_passcodes_expiry_date", columnList = "expiry_date")
+})
 public class Passcode {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     @Column(updatable = false, nullable = false)
     private UUID id;
 
@@ -18,11 +18,13 @@ import java.util.UUID;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "passwords")
+@Table(name = "passwords", indexes = {
+        @Index(name = "uk_passwords_user_id", columnList = "user_id", unique = true)
+})
 public class Password {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     @Column(updatable = false, nullable = false)
     private UUID id;
 
@@ -18,20 +18,24 @@ import java.util.UUID;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "reset_tokens")
+@Table(name = "reset_tokens", indexes = {
+        @Index(name = "uk_reset_tokens_user_id", columnList = "user_id", unique = true),
+        @Index(name = "idx_reset_tokens_expiry_date", columnList = "expiry_date")
+})
 public class ResetToken {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @GeneratedUuidV7
     @Column(updatable = false, nullable = false)
     private UUID id;
 
     @Column(name = "user_id", nullable = false)
     private UUID userId;
 
+    /** SHA-256 digest of the token sent to the user, the plaintext token is never stored */
     @JsonIgnore
-    @Column(nullable = false)
-    private String token;
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
 
     @Column(name = "expiry_date", nullable = false)
     private Instant expiryDate;
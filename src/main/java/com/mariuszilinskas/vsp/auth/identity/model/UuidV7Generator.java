@@ -0,0 +1,34 @@
+package com.mariuszilinskas.vsp.auth.identity.model;
+
+import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate identifier generator for time-ordered (version 7) UUIDs, so new rows are appended to the
+ * primary-key index rather than scattered across it like random (version 4) UUIDs.
+ *
+ * @author Marius Zilinskas
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    @Override
+    public Object generate(
+            SharedSessionContractImplementor session,
+            Object owner,
+            Object currentValue,
+            EventType eventType
+    ) {
+        return IdentityUtils.generateUuidV7();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+}
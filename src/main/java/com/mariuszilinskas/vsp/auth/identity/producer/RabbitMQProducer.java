@@ -28,6 +28,12 @@ public class RabbitMQProducer {
     @Value("${rabbitmq.routing-keys.platform-emails}")
     private String platformEmailsRoutingKey;
 
+    @Value("${rabbitmq.routing-keys.password-changed}")
+    private String passwordChangedRoutingKey;
+
+    @Value("${rabbitmq.routing-keys.email-registered}")
+    private String emailRegisteredRoutingKey;
+
     public void sendVerifyAccountMessage(UUID userId) {
         logger.info("Sending Verify Account message: [userId: {}]", userId);
         rabbitTemplate.convertAndSend(exchange, verifyAccountRoutingKey, userId);
@@ -48,4 +54,14 @@ public class RabbitMQProducer {
         rabbitTemplate.convertAndSend(exchange, platformEmailsRoutingKey, request);
     }
 
+    public void sendPasswordChangedMessage(UUID userId) {
+        logger.info("Sending Password Changed message: [userId: {}]", userId);
+        rabbitTemplate.convertAndSend(exchange, passwordChangedRoutingKey, userId);
+    }
+
+    public void sendEmailRegisteredMessage(String email) {
+        logger.info("Sending Email Registered message: [email: {}]", email);
+        rabbitTemplate.convertAndSend(exchange, emailRegisteredRoutingKey, email);
+    }
+
 }
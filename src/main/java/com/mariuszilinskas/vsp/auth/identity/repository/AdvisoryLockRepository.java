@@ -0,0 +1,54 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Repository for PostgreSQL advisory locks, used to elect a single instance to run a cluster-wide job.
+ *
+ * @author Marius Zilinskas
+ */
+@Repository
+@RequiredArgsConstructor
+public class AdvisoryLockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Runs the task while holding the session-level advisory lock for the name. The lock lives on a
+     * connection of its own for the duration of the task, so the task's work can run in separate,
+     * short transactions.
+     *
+     * @return false, without running the task, if another session holds the lock
+     */
+    public boolean runWithLock(String lockName, Runnable task) {
+        long key = lockName.hashCode();
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!callLockFunction(connection, "SELECT pg_try_advisory_lock(?)", key)) return false;
+            try {
+                task.run();
+            } finally {
+                callLockFunction(connection, "SELECT pg_advisory_unlock(?)", key);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    private boolean callLockFunction(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository for the hottest credential lookups. They read only the columns the caller needs, straight
+ * into records, without creating managed entities (no persistence context, snapshots or flush). Statements
+ * are parameterised, so the JDBC driver prepares them once per connection and reuses them.
+ * <p>
+ * The lookups join a surrounding transaction if there is one; otherwise they run read-only, which lets the
+ * read replica serve them.
+ *
+ * @author Marius Zilinskas
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+public class CredentialLookupRepository {
+
+    private static final String FIND_PASSWORD_HASH_SQL = "SELECT password_hash FROM passwords WHERE user_id = ?";
+    private static final String FIND_REFRESH_TOKEN_SQL = "SELECT user_id, expiry_date FROM refresh_tokens WHERE id = ?";
+
+    private static final RowMapper<RefreshTokenDetails> REFRESH_TOKEN_MAPPER = (resultSet, rowNum) ->
+            new RefreshTokenDetails(
+                    resultSet.getObject(1, UUID.class),
+                    resultSet.getObject(2, OffsetDateTime.class).toInstant());
+
+    private final JdbcClient jdbcClient;
+
+    public Optional<String> findPasswordHash(UUID userId) {
+        return jdbcClient.sql(FIND_PASSWORD_HASH_SQL)
+                .param(userId)
+                .query(String.class)
+                .optional();
+    }
+
+    public Optional<RefreshTokenDetails> findRefreshToken(UUID tokenId) {
+        return jdbcClient.sql(FIND_REFRESH_TOKEN_SQL)
+                .param(tokenId)
+                .query(REFRESH_TOKEN_MAPPER)
+                .optional();
+    }
+
+    public record RefreshTokenDetails(UUID userId, Instant expiryDate) {}
+
+}
@@ -2,7 +2,11 @@ package com.mariuszilinskas.vsp.auth.identity.repository;
 
 import com.mariuszilinskas.vsp.auth.identity.model.Passcode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Optional;
@@ -18,8 +22,62 @@ public interface PasscodeRepository extends JpaRepository<Passcode, UUID> {
 
     Optional<Passcode> findByUserId(UUID userId);
 
-    void deleteByUserId(UUID userId);
+    /**
+     * Inserts the User's Passcode or, if the User already has one, replaces it and starts its attempt count again.
+     * Runs in a transaction of its own when the caller has none, so the Passcode flows need not hold a connection
+     * across their remote calls.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO passcodes (id, user_id, passcode, expiry_date)
+            VALUES (:id, :userId, :passcode, :expiryDate)
+            ON CONFLICT (user_id) DO UPDATE
+            SET passcode = EXCLUDED.passcode,
+                expiry_date = EXCLUDED.expiry_date,
+                attempts = 0
+            """, nativeQuery = true)
+    int upsertPasscode(
+            @Param("id") UUID id,
+            @Param("userId") UUID userId,
+            @Param("passcode") String passcode,
+            @Param("expiryDate") Instant expiryDate
+    );
 
-    void deleteAllByExpiryDateBefore(Instant expiryDate);
+    /**
+     * Takes one verification attempt from the User's Passcode. The increment and the limit check are one statement,
+     * so concurrent verifications on any instance cannot use more than {@code maxAttempts} between them, and each
+     * attempt number is returned to one caller only.
+     *
+     * @return the number of the attempt taken, or empty if none are left or the User has no Passcode
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE passcodes
+            SET attempts = attempts + 1
+            WHERE user_id = :userId AND attempts < :maxAttempts
+            RETURNING attempts
+            """, nativeQuery = true)
+    Optional<Integer> acquireAttempt(@Param("userId") UUID userId, @Param("maxAttempts") int maxAttempts);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Passcode p WHERE p.userId = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Deletes at most {@code limit} rows that expired before the given date.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM passcodes
+            WHERE expiry_date < :expiryDate
+              AND id IN (SELECT id FROM passcodes WHERE expiry_date < :expiryDate LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpiredChunk(@Param("expiryDate") Instant expiryDate, @Param("limit") int limit);
+
+    @Query("SELECT MIN(p.expiryDate) FROM Passcode p")
+    Optional<Instant> findOldestExpiryDate();
 
 }
@@ -2,8 +2,13 @@ package com.mariuszilinskas.vsp.auth.identity.repository;
 
 import com.mariuszilinskas.vsp.auth.identity.model.Password;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,6 +22,29 @@ public interface PasswordRepository extends JpaRepository<Password, UUID> {
 
     Optional<Password> findByUserId(UUID userId);
 
-    void deleteByUserId(UUID userId);
+    /**
+     * Inserts the User's Password or, if the User already has one, replaces its hash. Resets incorrect entries.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO passwords (id, user_id, password_hash, incorrect_entries, last_updated)
+            VALUES (:id, :userId, :passwordHash, 0, :lastUpdated)
+            ON CONFLICT (user_id) DO UPDATE
+            SET password_hash = EXCLUDED.password_hash,
+                incorrect_entries = 0,
+                last_updated = EXCLUDED.last_updated
+            """, nativeQuery = true)
+    int upsertPassword(
+            @Param("id") UUID id,
+            @Param("userId") UUID userId,
+            @Param("passwordHash") String passwordHash,
+            @Param("lastUpdated") ZonedDateTime lastUpdated
+    );
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Password p WHERE p.userId = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
 
 }
@@ -0,0 +1,252 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Opt-in group commit for Refresh Token inserts. Inserts from concurrent requests are collected
+ * over a short window and written as one multi-row insert, so one commit serves a whole batch.
+ * Each caller blocks until the batch holding its token has been committed.
+ * <p>
+ * Inserts are committed in the writer thread's own transaction, never in the caller's. If the batch
+ * statement fails, its rows are retried one by one, so a bad row fails only its own caller.
+ *
+ * @author Marius Zilinskas
+ */
+@Repository
+public class RefreshTokenGroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenGroupCommitter.class);
+    private static final String INSERT_SQL = "INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES ";
+    private static final String VALUES_ROW = "(?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM refresh_tokens WHERE id IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSizes;
+    private final Timer waitTimes;
+    private final BlockingQueue<PendingInsert> pendingInserts = new LinkedBlockingQueue<>();
+    private volatile Thread writerThread;
+
+    @Value("${app.refresh-tokens.group-commit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.refresh-tokens.group-commit.window-millis:5}")
+    private long windowMillis;
+
+    @Value("${app.refresh-tokens.group-commit.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${app.refresh-tokens.group-commit.timeout-millis:2000}")
+    private long timeoutMillis;
+
+    public RefreshTokenGroupCommitter(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSizes = DistributionSummary.builder("identity.refresh.token.batch.size")
+                .description("Number of Refresh Tokens written per group commit")
+                .register(meterRegistry);
+        this.waitTimes = Timer.builder("identity.refresh.token.batch.wait")
+                .description("Time a Refresh Token insert waits for its group commit")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a Refresh Token insert and waits until its batch has been committed.
+     * <p>
+     * An insert that times out is cancelled: the writer skips it if it is still queued, and deletes the row
+     * again if its batch was already being committed, so no token the caller never received stays valid.
+     */
+    public void insert(UUID tokenId, UUID userId, Instant expiryDate) {
+        var pendingInsert = new PendingInsert(tokenId, userId, expiryDate, System.nanoTime(), new CompletableFuture<>());
+        pendingInserts.add(pendingInsert);
+        try {
+            pendingInsert.committed().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw failure(ex);
+        } catch (TimeoutException ex) {
+            if (!pendingInsert.committed().cancel(false)) {
+                // Completed in the meantime, so the outcome is known after all
+                awaitCompleted(pendingInsert);
+                return;
+            }
+            pendingInserts.remove(pendingInsert);
+            throw new IllegalStateException("Timed out waiting for Refresh Token group commit", ex);
+        } catch (InterruptedException ex) {
+            pendingInsert.committed().cancel(false);
+            pendingInserts.remove(pendingInsert);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Refresh Token group commit", ex);
+        }
+    }
+
+    private static void awaitCompleted(PendingInsert pendingInsert) {
+        try {
+            pendingInsert.committed().join();
+        } catch (CompletionException ex) {
+            throw failure(ex);
+        }
+    }
+
+    private static RuntimeException failure(Exception ex) {
+        if (ex.getCause() instanceof RuntimeException cause) return cause;
+        return new IllegalStateException("Refresh Token group commit failed", ex.getCause());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        writerThread = Thread.ofPlatform()
+                .name("refresh-token-group-commit")
+                .daemon(true)
+                .start(this::writeBatches);
+        logger.info("Refresh Token group commit started [window: {}ms, maxBatchSize: {}]", windowMillis, maxBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = writerThread;
+        if (thread == null) return;
+        writerThread = null;
+        thread.interrupt();
+
+        List<PendingInsert> remaining = new ArrayList<>();
+        pendingInserts.drainTo(remaining);
+        remaining.forEach(pending -> pending.committed()
+                .completeExceptionally(new IllegalStateException("Refresh Token group commit stopped")));
+    }
+
+    private void writeBatches() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (writerThread != null) {
+            try {
+                collectBatch(batch);
+                commitBatch(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.committed().completeExceptionally(ex));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<PendingInsert> batch) throws InterruptedException {
+        batch.add(pendingInserts.take());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+
+            PendingInsert next = pendingInserts.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    private void commitBatch(List<PendingInsert> batch) {
+        // Inserts whose callers gave up waiting are not written at all
+        batch.removeIf(pending -> pending.committed().isDone());
+        if (batch.isEmpty()) return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertRows(batch));
+        } catch (RuntimeException ex) {
+            logger.error("Refresh Token group commit failed [batchSize: {}]: {}", batch.size(), ex.getMessage());
+            if (batch.size() == 1) {
+                batch.get(0).committed().completeExceptionally(ex);
+            } else {
+                batch.forEach(this::commitAlone);
+            }
+            return;
+        }
+
+        batchSizes.record(batch.size());
+        completeCommitted(batch);
+    }
+
+    /**
+     * Retries one row of a failed batch in a transaction of its own, so only the offending row fails.
+     */
+    private void commitAlone(PendingInsert pending) {
+        if (pending.committed().isDone()) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertRows(List.of(pending)));
+        } catch (RuntimeException ex) {
+            logger.error("Refresh Token insert failed [id: '{}']: {}", pending.tokenId(), ex.getMessage());
+            pending.committed().completeExceptionally(ex);
+            return;
+        }
+        batchSizes.record(1);
+        completeCommitted(List.of(pending));
+    }
+
+    private void insertRows(List<PendingInsert> rows) {
+        String sql = INSERT_SQL + String.join(", ", Collections.nCopies(rows.size(), VALUES_ROW));
+        Object[] args = new Object[rows.size() * 3];
+        for (int i = 0; i < rows.size(); i++) {
+            PendingInsert pending = rows.get(i);
+            args[i * 3] = pending.tokenId();
+            args[i * 3 + 1] = pending.userId();
+            args[i * 3 + 2] = OffsetDateTime.ofInstant(pending.expiryDate(), ZoneOffset.UTC);
+        }
+        jdbcTemplate.update(sql, args);
+    }
+
+    private void completeCommitted(List<PendingInsert> rows) {
+        long committedAt = System.nanoTime();
+        List<UUID> abandoned = new ArrayList<>();
+        for (PendingInsert pending : rows) {
+            waitTimes.record(committedAt - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+            // Fails if the caller timed out while the batch was being committed
+            if (!pending.committed().complete(null)) abandoned.add(pending.tokenId());
+        }
+        if (abandoned.isEmpty()) return;
+
+        logger.warn("Deleting {} Refresh Tokens committed after their callers timed out", abandoned.size());
+        try {
+            jdbcTemplate.update(DELETE_SQL + String.join(", ", Collections.nCopies(abandoned.size(), "?")) + ")",
+                    abandoned.toArray());
+        } catch (RuntimeException ex) {
+            logger.error("Failed to delete abandoned Refresh Tokens {}: {}", abandoned, ex.getMessage());
+        }
+    }
+
+    private record PendingInsert(
+            UUID tokenId,
+            UUID userId,
+            Instant expiryDate,
+            long enqueuedAt,
+            CompletableFuture<Void> committed
+    ) {}
+
+}
@@ -2,7 +2,11 @@ package com.mariuszilinskas.vsp.auth.identity.repository;
 
 import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Optional;
@@ -18,8 +22,60 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
 
     Optional<RefreshToken> findByIdAndUserId(UUID id, UUID userId);
 
-    void deleteByUserId(UUID userId);
+    /**
+     * Inserts a new Refresh Token. Token IDs are freshly generated, so no lookup is needed first. Runs in a
+     * transaction of its own when the caller has none.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO refresh_tokens (id, user_id, expiry_date)
+            VALUES (:id, :userId, :expiryDate)
+            """, nativeQuery = true)
+    int insertToken(
+            @Param("id") UUID id,
+            @Param("userId") UUID userId,
+            @Param("expiryDate") Instant expiryDate
+    );
 
-    void deleteAllByExpiryDateBefore(Instant expiryDate);
+    /**
+     * Re-keys a live Refresh Token in place, in a single statement.
+     *
+     * @return the number of tokens rotated, 0 if no live token matched
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE refresh_tokens
+            SET id = :newTokenId, expiry_date = :expiryDate
+            WHERE id = :tokenId AND user_id = :userId AND expiry_date > :now
+            """, nativeQuery = true)
+    int rotateToken(
+            @Param("tokenId") UUID tokenId,
+            @Param("newTokenId") UUID newTokenId,
+            @Param("userId") UUID userId,
+            @Param("expiryDate") Instant expiryDate,
+            @Param("now") Instant now
+    );
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.userId = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Deletes at most {@code limit} rows that expired before the given date.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM refresh_tokens
+            WHERE expiry_date < :expiryDate
+              AND id IN (SELECT id FROM refresh_tokens WHERE expiry_date < :expiryDate LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpiredChunk(@Param("expiryDate") Instant expiryDate, @Param("limit") int limit);
+
+    @Query("SELECT MIN(r.expiryDate) FROM RefreshToken r")
+    Optional<Instant> findOldestExpiryDate();
 
 }
@@ -2,7 +2,11 @@ package com.mariuszilinskas.vsp.auth.identity.repository;
 
 import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
@@ -17,12 +21,47 @@ import java.util.UUID;
 @Repository
 public interface ResetTokenRepository extends JpaRepository<ResetToken, UUID> {
 
-    Optional<ResetToken> findByToken(String token);
+    Optional<ResetToken> findByTokenHash(String tokenHash);
 
     Optional<ResetToken> findByUserId(UUID userId);
 
-    void deleteByUserId(UUID userId);
+    /**
+     * Inserts the User's Reset Token or, if the User already has one, replaces it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO reset_tokens (id, user_id, token_hash, expiry_date)
+            VALUES (:id, :userId, :tokenHash, :expiryDate)
+            ON CONFLICT (user_id) DO UPDATE
+            SET token_hash = EXCLUDED.token_hash,
+                expiry_date = EXCLUDED.expiry_date
+            """, nativeQuery = true)
+    int upsertResetToken(
+            @Param("id") UUID id,
+            @Param("userId") UUID userId,
+            @Param("tokenHash") String tokenHash,
+            @Param("expiryDate") Instant expiryDate
+    );
 
-    void deleteAllByExpiryDateBefore(Instant expiryDate);
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ResetToken r WHERE r.userId = :userId")
+    int deleteByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Deletes at most {@code limit} rows that expired before the given date.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM reset_tokens
+            WHERE expiry_date < :expiryDate
+              AND id IN (SELECT id FROM reset_tokens WHERE expiry_date < :expiryDate LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpiredChunk(@Param("expiryDate") Instant expiryDate, @Param("limit") int limit);
+
+    @Query("SELECT MIN(r.expiryDate) FROM ResetToken r")
+    Optional<Instant> findOldestExpiryDate();
 
 }
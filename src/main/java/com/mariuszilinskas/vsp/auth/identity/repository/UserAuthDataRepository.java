@@ -0,0 +1,92 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.UUID;
+
+/**
+ * Repository for operations that span all User credential tables.
+ *
+ * @author Marius Zilinskas
+ */
+@Repository
+public class UserAuthDataRepository {
+
+    // Data-modifying CTEs (PostgreSQL only): all the deletes run in one statement and one round trip. Other
+    // databases, such as the 'ci' profile's H2, run one DELETE per table in the same transaction instead.
+    private static final String DELETE_USER_AUTH_DATA_SQL = """
+            WITH deleted_passcodes AS (
+                DELETE FROM passcodes WHERE user_id = :userId RETURNING 1
+            ), deleted_passwords AS (
+                DELETE FROM passwords WHERE user_id = :userId RETURNING 1
+            ), deleted_reset_tokens AS (
+                DELETE FROM reset_tokens WHERE user_id = :userId RETURNING 1
+            ), deleted_refresh_tokens AS (
+                DELETE FROM refresh_tokens WHERE user_id = :userId RETURNING 1
+            ), deleted_user_auth_projection AS (
+                DELETE FROM user_auth_projection WHERE user_id = :userId RETURNING 1
+            )
+            SELECT (SELECT count(*) FROM deleted_passcodes) AS passcodes,
+                   (SELECT count(*) FROM deleted_passwords) AS passwords,
+                   (SELECT count(*) FROM deleted_reset_tokens) AS reset_tokens,
+                   (SELECT count(*) FROM deleted_refresh_tokens) AS refresh_tokens
+            """;
+
+    private final JdbcClient jdbcClient;
+    private final DataSource dataSource;
+    private volatile Boolean postgres;
+
+    public UserAuthDataRepository(JdbcClient jdbcClient, DataSource dataSource) {
+        this.jdbcClient = jdbcClient;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Deletes every Passcode, Password, Reset Token and Refresh Token of the User, and the User's projection row.
+     *
+     * @return the number of rows deleted from each table
+     */
+    @Transactional
+    public DeletedAuthData deleteUserAuthData(UUID userId) {
+        if (isPostgres())
+            return jdbcClient.sql(DELETE_USER_AUTH_DATA_SQL)
+                    .param("userId", userId)
+                    .query(DeletedAuthData.class)
+                    .single();
+
+        DeletedAuthData deleted = new DeletedAuthData(
+                deleteFrom("passcodes", userId),
+                deleteFrom("passwords", userId),
+                deleteFrom("reset_tokens", userId),
+                deleteFrom("refresh_tokens", userId));
+        deleteFrom("user_auth_projection", userId);
+        return deleted;
+    }
+
+    private long deleteFrom(String table, UUID userId) {
+        return jdbcClient.sql("DELETE FROM " + table + " WHERE user_id = :userId")
+                .param("userId", userId)
+                .update();
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            try {
+                postgres = "PostgreSQL".equals(
+                        JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+            } catch (MetaDataAccessException ex) {
+                throw new IllegalStateException("Failed to determine the database product", ex);
+            }
+        }
+        return postgres;
+    }
+
+    public record DeletedAuthData(long passcodes, long passwords, long resetTokens, long refreshTokens) {}
+
+}
@@ -0,0 +1,194 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import com.mariuszilinskas.vsp.auth.identity.enums.UserAuthority;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Repository for the local projection of users service data ({@code user_auth_projection}). Lookups read
+ * straight into records, like {@link CredentialLookupRepository}. Writes update first and insert if there is
+ * no row; the insert does nothing if a concurrent write got there first, so it cannot abort the transaction.
+ * <p>
+ * An email belongs to one User at a time: a write that moves an email to another User drops the row still
+ * holding it.
+ *
+ * @author Marius Zilinskas
+ */
+@Repository
+@RequiredArgsConstructor
+@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+public class UserProjectionRepository {
+
+    private static final String COLUMNS =
+            "user_id, email, first_name, last_name, status, roles, authorities, synced_at";
+    private static final String FIND_BY_USER_ID_SQL =
+            "SELECT " + COLUMNS + " FROM user_auth_projection WHERE user_id = ?";
+    private static final String FIND_BY_EMAIL_SQL =
+            "SELECT " + COLUMNS + " FROM user_auth_projection WHERE email = ?";
+    private static final String DELETE_EMAIL_HOLDER_SQL =
+            "DELETE FROM user_auth_projection WHERE email = ? AND user_id <> ?";
+    private static final String SEED_UPDATE_SQL =
+            "UPDATE user_auth_projection SET email = ?, first_name = ? WHERE user_id = ?";
+    private static final String SEED_INSERT_SQL =
+            "INSERT INTO user_auth_projection (user_id, email, first_name) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String SAVE_UPDATE_SQL = """
+            UPDATE user_auth_projection
+            SET email = ?, first_name = ?, last_name = ?, status = ?, roles = ?, authorities = ?, synced_at = ?
+            WHERE user_id = ? AND (synced_at IS NULL OR synced_at <= ?)
+            """;
+    private static final String SAVE_INSERT_SQL = "INSERT INTO user_auth_projection (" + COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String MARK_UNSYNCED_SQL =
+            "UPDATE user_auth_projection SET synced_at = NULL WHERE user_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM user_auth_projection WHERE user_id = ?";
+    private static final String FIND_CREDENTIAL_USER_IDS_SQL =
+            "SELECT user_id FROM passwords WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    private static final RowMapper<UserProjection> PROJECTION_MAPPER = (resultSet, rowNum) ->
+            new UserProjection(
+                    resultSet.getObject(1, UUID.class),
+                    resultSet.getString(2),
+                    resultSet.getString(3),
+                    resultSet.getString(4),
+                    resultSet.getString(5) == null ? null : UserStatus.valueOf(resultSet.getString(5)),
+                    decode(resultSet.getString(6), UserRole::valueOf),
+                    decode(resultSet.getString(7), UserAuthority::valueOf),
+                    toInstant(resultSet, 8));
+
+    private final JdbcClient jdbcClient;
+
+    public Optional<UserProjection> findByUserId(UUID userId) {
+        return jdbcClient.sql(FIND_BY_USER_ID_SQL)
+                .param(userId)
+                .query(PROJECTION_MAPPER)
+                .optional();
+    }
+
+    public Optional<UserProjection> findByEmail(String email) {
+        return jdbcClient.sql(FIND_BY_EMAIL_SQL)
+                .param(email)
+                .query(PROJECTION_MAPPER)
+                .optional();
+    }
+
+    /**
+     * Records the User's email and first name, keeping whatever else the row already holds.
+     */
+    @Transactional
+    public void seed(UUID userId, String email, String firstName) {
+        deleteEmailHolder(email, userId);
+        int updated = jdbcClient.sql(SEED_UPDATE_SQL).params(email, firstName, userId).update();
+        // A row inserted concurrently came from a sync, which holds fresher data than the seed
+        if (updated == 0) jdbcClient.sql(SEED_INSERT_SQL).params(userId, email, firstName).update();
+    }
+
+    /**
+     * Writes the synced row unless the row already holds data synced after this one.
+     *
+     * @return false if a later sync won
+     */
+    @Transactional
+    public boolean save(UserProjection projection) {
+        deleteEmailHolder(projection.email(), projection.userId());
+        Timestamp syncedAt = Timestamp.from(projection.syncedAt());
+        int updated = jdbcClient.sql(SAVE_UPDATE_SQL)
+                .params(projection.email(), projection.firstName(), projection.lastName(),
+                        name(projection.status()), encode(projection.roles()), encode(projection.authorities()),
+                        syncedAt, projection.userId(), syncedAt)
+                .update();
+        if (updated > 0) return true;
+
+        int inserted = jdbcClient.sql(SAVE_INSERT_SQL)
+                .params(projection.userId(), projection.email(), projection.firstName(), projection.lastName(),
+                        name(projection.status()), encode(projection.roles()),
+                        encode(projection.authorities()), syncedAt)
+                .update();
+        return inserted > 0;
+    }
+
+    /**
+     * Stops the row from being served until it is synced again.
+     */
+    @Transactional
+    public void markUnsynced(UUID userId) {
+        jdbcClient.sql(MARK_UNSYNCED_SQL).param(userId).update();
+    }
+
+    @Transactional
+    public void delete(UUID userId) {
+        jdbcClient.sql(DELETE_SQL).param(userId).update();
+    }
+
+    /**
+     * Returns the next page of Users that have credentials, in User ID order, for resyncs.
+     *
+     * @param afterUserId the last User ID of the previous page, or null for the first page
+     */
+    public List<UUID> findCredentialUserIds(UUID afterUserId, int limit) {
+        return jdbcClient.sql(FIND_CREDENTIAL_USER_IDS_SQL)
+                .params(afterUserId == null ? MIN_UUID : afterUserId, limit)
+                .query(UUID.class)
+                .list();
+    }
+
+    private void deleteEmailHolder(String email, UUID userId) {
+        jdbcClient.sql(DELETE_EMAIL_HOLDER_SQL).params(email, userId).update();
+    }
+
+    private static String name(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+
+    private static String encode(List<? extends Enum<?>> values) {
+        return values.stream().map(Enum::name).collect(Collectors.joining(","));
+    }
+
+    private static <E extends Enum<E>> List<E> decode(String values, Function<String, E> valueOf) {
+        if (values == null || values.isEmpty()) return List.of();
+        return Arrays.stream(values.split(",")).map(valueOf).toList();
+    }
+
+    private static Instant toInstant(ResultSet resultSet, int column) throws SQLException {
+        OffsetDateTime value = resultSet.getObject(column, OffsetDateTime.class);
+        return value == null ? null : value.toInstant();
+    }
+
+    /**
+     * @param syncedAt when the synced data was read from the users service, or null for a row only seeded
+     */
+    public record UserProjection(
+            UUID userId,
+            String email,
+            String firstName,
+            String lastName,
+            UserStatus status,
+            List<UserRole> roles,
+            List<UserAuthority> authorities,
+            Instant syncedAt
+    ) {
+        public boolean isSynced() {
+            return syncedAt != null;
+        }
+    }
+
+}
@@ -5,7 +5,6 @@ import com.mariuszilinskas.vsp.auth.identity.exception.*;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +15,9 @@ import java.util.function.Supplier;
 
 /**
  * Service implementation for managing User authentication.
+ * <p>
+ * The flows here are deliberately not transactional: the Users service is called before any database
+ * work, and each write runs in its own short transaction, so a slow remote call never holds a connection.
  *
  * @author Marius Zilinskas
  */
@@ -28,9 +30,9 @@ public class AuthServiceImpl implements AuthService {
     private final PasswordService passwordService;
     private final RefreshTokenService refreshTokenService;
     private final UserService userService;
+    private final TokenGenerationService tokenGenerationService;
 
     @Override
-    @Transactional
     public void authenticateUser(LoginRequest request, HttpServletResponse response) {
         logger.info("Authenticating User [email: {}]", request.email());
 
@@ -42,7 +44,6 @@ public class AuthServiceImpl implements AuthService {
     }
 
     @Override
-    @Transactional
     public void refreshTokens(HttpServletRequest request, HttpServletResponse response) {
         logger.info("Refreshing auth tokens");
         String refreshToken = jwtService.extractRefreshToken(request);
@@ -52,16 +53,16 @@ public class AuthServiceImpl implements AuthService {
             throw new SessionExpiredException();
         }
 
-        jwtService.validateRefreshToken(refreshToken);
+        // Parsing verifies the signature and expiry, the stored token is checked when it is rotated
         UUID userId = jwtService.extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME);
+        UUID tokenId = jwtService.extractRefreshTokenId(refreshToken);
 
         AuthDetails authDetails = fetchAuthDetails(() -> userService.getUserAuthDetailsWithId(userId));
         IdentityUtils.checkUserSuspended(authDetails.status());
 
-        UUID tokenId = jwtService.extractRefreshTokenId(refreshToken);
-        generateAndSetAuthTokens(response, authDetails);
-
-        refreshTokenService.deleteRefreshToken(tokenId);
+        UUID newTokenId = tokenGenerationService.generateTokenId();
+        refreshTokenService.rotateRefreshToken(tokenId, newTokenId, userId);
+        jwtService.setAuthCookies(response, authDetails, newTokenId);
     }
 
     private AuthDetails fetchAuthDetails(Supplier<AuthDetails> supplier) {
@@ -73,7 +74,7 @@ public class AuthServiceImpl implements AuthService {
     }
 
     private void generateAndSetAuthTokens(HttpServletResponse response, AuthDetails authDetails) {
-        UUID tokenId = UUID.randomUUID();
+        UUID tokenId = tokenGenerationService.generateTokenId();
         refreshTokenService.createNewRefreshToken(tokenId, authDetails.userId());
         jwtService.setAuthCookies(response, authDetails, tokenId);
     }
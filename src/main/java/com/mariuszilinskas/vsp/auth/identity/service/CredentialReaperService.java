@@ -0,0 +1,7 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+public interface CredentialReaperService {
+
+    void reapExpiredCredentials();
+
+}
@@ -0,0 +1,166 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import com.mariuszilinskas.vsp.auth.identity.config.Workload;
+import com.mariuszilinskas.vsp.auth.identity.repository.AdvisoryLockRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.ResetTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Service implementation for reaping expired Passcodes, Reset Tokens and Refresh Tokens.
+ * <p>
+ * Each table is swept by one instance at a time, elected through a PostgreSQL advisory lock. Rows are
+ * deleted in bounded chunks, each in a short transaction of its own, with a pause in between so the
+ * sweep does not hold locks or starve regular traffic. Sweeps run as {@link Workload#BACKGROUND} work, so
+ * they take their connections from the background pool when one is configured.
+ *
+ * @author Marius Zilinskas
+ */
+@Service
+public class CredentialReaperServiceImpl implements CredentialReaperService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialReaperServiceImpl.class);
+    private static final String LOCK_PREFIX = "identity.reaper.";
+
+    private final AdvisoryLockRepository advisoryLockRepository;
+    private final List<Sweep> sweeps;
+
+    @Value("${app.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reaper.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.reaper.max-chunks:500}")
+    private int maxChunks;
+
+    @Value("${app.reaper.pause-millis:100}")
+    private long pauseMillis;
+
+    public CredentialReaperServiceImpl(
+            PasscodeService passcodeService,
+            ResetTokenService resetTokenService,
+            RefreshTokenService refreshTokenService,
+            RefreshTokenPartitionService refreshTokenPartitionService,
+            PasscodeRepository passcodeRepository,
+            ResetTokenRepository resetTokenRepository,
+            RefreshTokenRepository refreshTokenRepository,
+            AdvisoryLockRepository advisoryLockRepository,
+            MeterRegistry meterRegistry
+    ) {
+        this.advisoryLockRepository = advisoryLockRepository;
+        this.sweeps = List.of(
+                new Sweep("passcodes", () -> {}, passcodeService::deleteExpiredPasscodes,
+                        passcodeRepository::findOldestExpiryDate, meterRegistry),
+                new Sweep("reset_tokens", () -> {}, resetTokenService::deleteExpiredResetTokens,
+                        resetTokenRepository::findOldestExpiryDate, meterRegistry),
+                // Whole expired partitions are dropped first, leaving only today's expired rows to delete
+                new Sweep("refresh_tokens", refreshTokenPartitionService::dropExpiredPartitions,
+                        refreshTokenService::deleteExpiredRefreshTokens,
+                        refreshTokenRepository::findOldestExpiryDate, meterRegistry)
+        );
+    }
+
+    @Override
+    @Scheduled(cron = "${app.reaper.cron:0 */5 * * * *}")
+    public void reapExpiredCredentials() {
+        if (!enabled) return;
+        Workload.BACKGROUND.run(this::runSweeps);
+    }
+
+    private void runSweeps() {
+        for (Sweep sweep : sweeps) {
+            try {
+                if (!advisoryLockRepository.runWithLock(LOCK_PREFIX + sweep.table, () -> runSweep(sweep)))
+                    logger.debug("Skipping expired {} sweep, another instance is running it", sweep.table);
+            } catch (RuntimeException ex) {
+                logger.error("Failed to sweep expired {}: {}", sweep.table, ex.getMessage());
+            }
+        }
+    }
+
+    private void runSweep(Sweep sweep) {
+        long startNanos = System.nanoTime();
+        sweep.beforeChunks.run();
+
+        long deleted = 0;
+        for (int chunk = 0; chunk < maxChunks; chunk++) {
+            int chunkDeleted = sweep.deleteChunk.applyAsInt(chunkSize);
+            deleted += chunkDeleted;
+            if (chunkDeleted < chunkSize || !pause()) break;
+        }
+
+        sweep.rowsDeleted.increment(deleted);
+        sweep.duration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        sweep.lagSeconds.set(sweep.oldestExpiryDate.get()
+                .map(oldest -> Math.max(0, Duration.between(oldest, Instant.now()).toSeconds()))
+                .orElse(0L));
+
+        logger.info("Deleted {} expired {} [lagSeconds: {}]", deleted, sweep.table, sweep.lagSeconds.get());
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static final class Sweep {
+        private final String table;
+        private final Runnable beforeChunks;
+        private final IntUnaryOperator deleteChunk;
+        private final Supplier<Optional<Instant>> oldestExpiryDate;
+        private final Counter rowsDeleted;
+        private final Timer duration;
+        private final AtomicLong lagSeconds = new AtomicLong();
+
+        private Sweep(
+                String table,
+                Runnable beforeChunks,
+                IntUnaryOperator deleteChunk,
+                Supplier<Optional<Instant>> oldestExpiryDate,
+                MeterRegistry meterRegistry
+        ) {
+            this.table = table;
+            this.beforeChunks = beforeChunks;
+            this.deleteChunk = deleteChunk;
+            this.oldestExpiryDate = oldestExpiryDate;
+            this.rowsDeleted = Counter.builder("identity.reaper.rows.deleted")
+                    .description("Number of expired rows deleted by the reaper")
+                    .tag("table", table)
+                    .register(meterRegistry);
+            this.duration = Timer.builder("identity.reaper.sweep.duration")
+                    .description("Time taken by one expired row sweep")
+                    .tag("table", table)
+                    .register(meterRegistry);
+            Gauge.builder("identity.reaper.lag", lagSeconds, AtomicLong::get)
+                    .description("Age of the oldest expired row left after the last sweep")
+                    .tag("table", table)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+}
@@ -1,10 +1,19 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasscodeAttemptLimiter;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository.DeletedAuthData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.UUID;
 
@@ -14,24 +23,81 @@ import java.util.UUID;
  * @author Marius Zilinskas
  */
 @Service
-@RequiredArgsConstructor
 public class DataDeletionServiceImpl implements DataDeletionService {
 
     private static final Logger logger = LoggerFactory.getLogger(DataDeletionServiceImpl.class);
-    private final PasscodeService passcodeService;
-    private final PasswordService passwordService;
-    private final ResetTokenService resetTokenService;
-    private final RefreshTokenService refreshTokenService;
+    private final UserAuthDataRepository userAuthDataRepository;
+    private final EphemeralCredentialStore credentialStore;
+    private final PasscodeAttemptLimiter passcodeAttemptLimiter;
+    private final PasswordHashCache passwordHashCache;
+    private final AuthDetailsCache authDetailsCache;
+    private final Counter deletedPasscodes;
+    private final Counter deletedPasswords;
+    private final Counter deletedResetTokens;
+    private final Counter deletedRefreshTokens;
+
+    public DataDeletionServiceImpl(
+            UserAuthDataRepository userAuthDataRepository,
+            EphemeralCredentialStore credentialStore,
+            PasscodeAttemptLimiter passcodeAttemptLimiter,
+            PasswordHashCache passwordHashCache,
+            AuthDetailsCache authDetailsCache,
+            MeterRegistry meterRegistry
+    ) {
+        this.userAuthDataRepository = userAuthDataRepository;
+        this.credentialStore = credentialStore;
+        this.passcodeAttemptLimiter = passcodeAttemptLimiter;
+        this.passwordHashCache = passwordHashCache;
+        this.authDetailsCache = authDetailsCache;
+        this.deletedPasscodes = deletedRowsCounter(meterRegistry, "passcodes");
+        this.deletedPasswords = deletedRowsCounter(meterRegistry, "passwords");
+        this.deletedResetTokens = deletedRowsCounter(meterRegistry, "reset_tokens");
+        this.deletedRefreshTokens = deletedRowsCounter(meterRegistry, "refresh_tokens");
+    }
+
+    private static Counter deletedRowsCounter(MeterRegistry meterRegistry, String table) {
+        return Counter.builder("identity.user.data.deleted.rows")
+                .description("Number of rows removed by User Auth Data deletion")
+                .tag("table", table)
+                .register(meterRegistry);
+    }
 
     @Override
     @Transactional
     public void deleteUserAuthData(UUID userId) {
         logger.info("Deleting all Auth Data for User [userId: '{}']", userId);
 
-        passcodeService.deleteUserPasscodes(userId);
-        passwordService.deleteUserPasswords(userId);
-        resetTokenService.deleteUserResetTokens(userId);
-        refreshTokenService.deleteUserRefreshTokens(userId);
+        DeletedAuthData deleted = userAuthDataRepository.deleteUserAuthData(userId);
+        // Kept until the rows are gone for good, so a failed deletion leaves memory and database in step
+        afterCommit(() -> {
+            credentialStore.removePasscode(userId);
+            credentialStore.removeUserResetTokens(userId);
+            passcodeAttemptLimiter.reset(userId);
+        });
+        passwordHashCache.invalidate(userId);
+        authDetailsCache.invalidate(userId);
+        deletedPasscodes.increment(deleted.passcodes());
+        deletedPasswords.increment(deleted.passwords());
+        deletedResetTokens.increment(deleted.resetTokens());
+        deletedRefreshTokens.increment(deleted.refreshTokens());
+
+        logger.info("Deleted Auth Data for User [userId: '{}', passcodes: {}, passwords: {}, resetTokens: {}, " +
+                        "refreshTokens: {}]", userId, deleted.passcodes(), deleted.passwords(),
+                deleted.resetTokens(), deleted.refreshTokens());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
 }
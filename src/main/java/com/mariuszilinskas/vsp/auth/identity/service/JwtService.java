@@ -22,8 +22,6 @@ public interface JwtService {
 
     void validateAccessToken(String token);
 
-    void validateRefreshToken(String token);
-
     UUID extractUserIdFromToken(String token, String tokenName);
 
     UUID extractRefreshTokenId(String token);
@@ -3,7 +3,6 @@ package com.mariuszilinskas.vsp.auth.identity.service;
 import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
 import com.mariuszilinskas.vsp.auth.identity.exception.JwtTokenGenerationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.JwtTokenValidationException;
-import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
@@ -14,7 +13,6 @@ import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,7 +20,6 @@ import org.springframework.http.ResponseCookie;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
-import java.time.Instant;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -33,7 +30,6 @@ import java.util.stream.Collectors;
  * @author Marius Zilinskas
  */
 @Service
-@RequiredArgsConstructor
 public class JwtServiceImpl implements JwtService {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtServiceImpl.class);
@@ -47,8 +43,6 @@ public class JwtServiceImpl implements JwtService {
     @Value("${app.refreshTokenSecret}")
     private String refreshTokenSecret;
 
-    private final RefreshTokenService refreshTokenService;
-
     @Override
     public String generateAccessToken(AuthDetails authDetails) {
         try {
@@ -163,34 +157,12 @@ public class JwtServiceImpl implements JwtService {
         checkTokenExpiration(token, IdentityUtils.ACCESS_TOKEN_NAME);
     }
 
-    @Override
-    public void validateRefreshToken(String token) {
-        checkTokenExpiration(token, IdentityUtils.REFRESH_TOKEN_NAME);
-        checkValidRefreshTokenExists(token);
-    }
-
     protected void checkTokenExpiration(String token, String tokenName) {
         Date expiration = extractClaim(token, Claims::getExpiration, tokenName);
         if (expiration.before(new Date()))
             throw new JwtTokenValidationException();
     }
 
-    private void checkValidRefreshTokenExists(String token) {
-        UUID tokenId = extractRefreshTokenId(token);
-        RefreshToken refreshToken = refreshTokenService.getRefreshToken(tokenId);
-
-        if (refreshToken == null) {
-            UUID userId = extractUserIdFromToken(token, IdentityUtils.REFRESH_TOKEN_NAME);
-            refreshTokenService.deleteUserRefreshTokens(userId);
-            throw new JwtTokenValidationException();
-        }
-
-        else if (refreshToken.getExpiryDate().isBefore(Instant.now())) {
-            refreshTokenService.deleteRefreshToken(tokenId);
-            throw new JwtTokenValidationException();
-        }
-    }
-
     @Override
     public UUID extractUserIdFromToken(String token, String tokenName) {
         return UUID.fromString(extractClaim(token, Claims::getSubject, tokenName));
@@ -14,6 +14,6 @@ public interface PasscodeService {
 
     void deleteUserPasscodes(UUID userId);
 
-    void deleteExpiredPasscodes();
+    int deleteExpiredPasscodes(int limit);
 
 }
@@ -1,13 +1,15 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasscodeAttemptLimiter;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer.ResendType;
 import com.mariuszilinskas.vsp.auth.identity.dto.*;
 import com.mariuszilinskas.vsp.auth.identity.exception.*;
 import com.mariuszilinskas.vsp.auth.identity.model.Passcode;
 import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
-import feign.FeignException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -15,10 +17,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Service implementation for managing User Passcodes.
+ * <p>
+ * Verification and (re)issuing are not transactional as a whole: the Users service is called first, the
+ * Passcode write commits in its own transaction, and messages are published only after that.
  *
  * @author Marius Zilinskas
  */
@@ -27,30 +33,37 @@ import java.util.UUID;
 public class PasscodeServiceImpl implements PasscodeService {
 
     private static final Logger logger = LoggerFactory.getLogger(PasscodeServiceImpl.class);
-    private final UserFeignClient userFeignClient;
+    private final UserService userService;
     private final PasscodeRepository passcodeRepository;
     private final TokenGenerationService tokenGenerationService;
     private final RabbitMQProducer rabbitMQProducer;
+    private final EphemeralCredentialStore credentialStore;
+    private final PasscodeAttemptLimiter passcodeAttemptLimiter;
+    private final ResendCoalescer resendCoalescer;
 
     @Override
-    @Transactional
     public void verifyPasscode(UUID userId, VerifyPasscodeRequest request) {
         logger.info("Verifying Passcode for User [userId: '{}']", userId);
 
+        passcodeAttemptLimiter.checkNotLockedOut(userId);
         Passcode passcode = findPasscodeByUserId(userId);
         if (isPasscodeExpired(passcode))
             throw new PasscodeExpiredException();
 
-        if (!isPasscodeCorrect(passcode, request.passcode()))
+        // Taken before comparing, so concurrent guesses on any instance share the same limit
+        int attempt = passcodeAttemptLimiter.acquireAttempt(userId);
+        if (!isPasscodeCorrect(passcode, request.passcode())) {
+            passcodeAttemptLimiter.recordFailedAttempt(userId, attempt);
             throw new PasscodeValidationException();
+        }
 
-        UserResponse user = getUserInfo(userId);
+        UserResponse user = userService.getUser(userId);
 
-        rabbitMQProducer.sendVerifyAccountMessage(userId);
-        var emailRequest = new WelcomeEmailRequest("welcome", user.firstName(), user.email());
+        // The delete commits on its own before anything is published
+        removePasscode(userId);
 
-        deleteUserPasscodes(userId);
-        rabbitMQProducer.sendWelcomeEmailMessage(emailRequest);
+        rabbitMQProducer.sendVerifyAccountMessage(userId);
+        rabbitMQProducer.sendWelcomeEmailMessage(new WelcomeEmailRequest("welcome", user.firstName(), user.email()));
     }
 
     private boolean isPasscodeExpired(Passcode passcode) {
@@ -62,7 +75,6 @@ public class PasscodeServiceImpl implements PasscodeService {
     }
 
     @Override
-    @Transactional
     public void createPasscode(UUID userId, String firstName, String email) {
         logger.info("Creating Passcode for User [userId: '{}']", userId);
 
@@ -70,60 +82,71 @@ public class PasscodeServiceImpl implements PasscodeService {
 
         var emailRequest = new VerificationEmailRequest("verify", firstName, email, passcode);
         rabbitMQProducer.sendVerificationEmailMessage(emailRequest);
+        resendCoalescer.markSent(ResendType.PASSCODE, userId);
     }
 
     @Override
-    @Transactional
     public void resetPasscode(UUID userId) {
         logger.info("Resetting Passcode for User [userId: '{}']", userId);
 
-        UserResponse response = getUserInfo(userId);
-        String passcode = createNewPasscode(userId);
+        // A repeated request inside the resend window keeps the Passcode already sent
+        if (!resendCoalescer.tryAcquire(ResendType.PASSCODE, userId)) return;
 
-        var emailRequest = new VerificationEmailRequest("verify", response.firstName(), response.email(), passcode);
-        rabbitMQProducer.sendVerificationEmailMessage(emailRequest);
+        try {
+            UserResponse response = userService.getUser(userId);
+            String passcode = createNewPasscode(userId);
+
+            var emailRequest = new VerificationEmailRequest("verify", response.firstName(), response.email(), passcode);
+            rabbitMQProducer.sendVerificationEmailMessage(emailRequest);
+        } catch (RuntimeException ex) {
+            resendCoalescer.release(ResendType.PASSCODE, userId);
+            throw ex;
+        }
     }
 
     private String createNewPasscode(UUID userId) {
-        Passcode passcode = findOrCreatePasscode(userId);
+        Passcode passcode = new Passcode(userId);
+        passcode.setId(IdentityUtils.generateUuidV7());
         passcode.setPasscode(tokenGenerationService.generatePasscode());
         passcode.setExpiryDate(Instant.now().plusMillis(IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS));
-        passcodeRepository.save(passcode);
+        if (!credentialStore.isMemoryOnly())
+            passcodeRepository.upsertPasscode(
+                    passcode.getId(), userId, passcode.getPasscode(), passcode.getExpiryDate());
+        credentialStore.storePasscode(passcode);
+        passcodeAttemptLimiter.reset(userId);
         return passcode.getPasscode();
     }
 
-    private Passcode findOrCreatePasscode(UUID userId) {
-        return passcodeRepository.findByUserId(userId)
-                .orElse(new Passcode(userId));
-    }
-
     private Passcode findPasscodeByUserId(UUID userId) {
-        return passcodeRepository.findByUserId(userId)
-                .orElseThrow(() -> new ResourceNotFoundException(Passcode.class, "userId", userId));
-    }
-
-    private UserResponse getUserInfo(UUID userId) {
-        try {
-            return userFeignClient.getUser(userId);
-        } catch (FeignException ex) {
-            logger.error("Feign Exception when getting User info: User ID '{}', Status {}, Body {}",
-                    userId, ex.status(), ex.contentUTF8());
-            throw new UserRetrievalException();
-        }
+        // Unless memory is the only copy the database decides, as another instance may have reissued the Passcode
+        Optional<Passcode> passcode = credentialStore.isMemoryOnly()
+                ? credentialStore.findPasscode(userId)
+                : passcodeRepository.findByUserId(userId);
+        return passcode.orElseThrow(() -> new ResourceNotFoundException(Passcode.class, "userId", userId));
     }
 
     @Override
     @Transactional
     public void deleteUserPasscodes(UUID userId) {
         logger.info("Deleting Passcodes for User [userId: '{}']", userId);
-        passcodeRepository.deleteByUserId(userId);
+        removePasscode(userId);
+    }
+
+    /**
+     * The repository delete is transactional itself, so this needs no transaction from the caller.
+     */
+    private void removePasscode(UUID userId) {
+        if (!credentialStore.isMemoryOnly())
+            passcodeRepository.deleteByUserId(userId);
+        credentialStore.removePasscode(userId);
+        passcodeAttemptLimiter.reset(userId);
     }
 
     @Override
     @Transactional
-    public void deleteExpiredPasscodes() {
-        logger.info("Deleting Expired Passcodes");
-        passcodeRepository.deleteAllByExpiryDateBefore(Instant.now());
+    public int deleteExpiredPasscodes(int limit) {
+        if (credentialStore.isMemoryOnly()) return 0;
+        return passcodeRepository.deleteExpiredChunk(Instant.now(), limit);
     }
 
 }
@@ -1,14 +1,15 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer.ResendType;
 import com.mariuszilinskas.vsp.auth.identity.dto.*;
 import com.mariuszilinskas.vsp.auth.identity.exception.*;
 import com.mariuszilinskas.vsp.auth.identity.model.Password;
-import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
 import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasswordRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
-import feign.FeignException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -16,7 +17,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.UUID;
 
 /**
@@ -31,10 +32,12 @@ public class PasswordServiceImpl implements PasswordService {
     private static final Logger logger = LoggerFactory.getLogger(PasswordServiceImpl.class);
     private final UserService userService;
     private final PasswordRepository passwordRepository;
+    private final CredentialLookupRepository credentialLookupRepository;
     private final ResetTokenService resetTokenService;
     private final BCryptPasswordEncoder passwordEncoder;
     private final RabbitMQProducer rabbitMQProducer;
-    private final UserFeignClient userFeignClient;
+    private final ResendCoalescer resendCoalescer;
+    private final PasswordHashCache passwordHashCache;
 
     @Override
     @Transactional
@@ -46,98 +49,73 @@ public class PasswordServiceImpl implements PasswordService {
     @Override
     public void verifyPassword(VerifyPasswordRequest request) {
         logger.info("Verifying Password for User [userId: '{}']", request.userId());
-        Password storedPassword = getPasswordByUserId(request.userId());
-        validatePassword(request.password(), storedPassword);
+        String passwordHash = getPasswordHash(request.userId());
+        validatePassword(request.password(), passwordHash);
     }
 
     @Override
-    @Transactional
     public void forgotPassword(ForgotPasswordRequest request) {
         logger.info("Setting Password Reset Token for User [email: '{}']", request.email());
 
-        AuthDetails authDetails = userService.getUserAuthDetailsWithEmail(request.email());
-        IdentityUtils.checkUserSuspended(authDetails.status());
-
-        UserResponse response = getUserInfo(authDetails.userId());
-        String token = resetTokenService.createResetToken(authDetails.userId());
-
-        var emailRequest = new ResetPasswordEmailRequest("reset", response.firstName(), response.email(), token);
-        rabbitMQProducer.sendResetPasswordEmailMessage(emailRequest);
-    }
+        // A repeated request inside the resend window keeps the Reset Token already sent
+        if (!resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, request.email())) return;
 
-    private UserResponse getUserInfo(UUID userId) {
         try {
-            return userFeignClient.getUser(userId);
-        } catch (FeignException ex) {
-            logger.error("Feign Exception when getting User info: User ID '{}', Status {}, Body {}",
-                    userId, ex.status(), ex.contentUTF8());
-            throw new UserRetrievalException();
+            // Auth Details and profile come back from the users service together
+            UserAccount account = userService.getUserAccountWithEmail(request.email());
+            IdentityUtils.checkUserSuspended(account.status());
+
+            // The remote call is done, the Reset Token is written (and committed) in its own transaction
+            String token = resetTokenService.createResetToken(account.userId());
+
+            var emailRequest = new ResetPasswordEmailRequest("reset", account.firstName(), account.email(), token);
+            rabbitMQProducer.sendResetPasswordEmailMessage(emailRequest);
+        } catch (UsersServiceUnavailableException | UserRetrievalException ex) {
+            // Only a users service failure frees the window: an unknown or suspended User gets the same answer again
+            resendCoalescer.release(ResendType.RESET_PASSWORD, request.email());
+            throw ex;
         }
     }
 
     @Override
     @Transactional
     public void resetPassword(ResetPasswordRequest request) {
-        ResetToken resetToken = resetTokenService.findResetToken(request.resetToken());
-        logger.info("Resetting New Password for User [userId: '{}']", resetToken.getUserId());
-
-        validateResetToken(resetToken, request.resetToken());
-        createEncryptedPassword(resetToken.getUserId(), request.password());
-    }
-
-    private void validateResetToken(ResetToken resetToken, String givenResetToken) {
-        if (isResetTokenExpired(resetToken) || !isResetTokenCorrect(resetToken, givenResetToken)) {
-            throw new ResetTokenValidationException();
-        }
-    }
-
-    private boolean isResetTokenCorrect(ResetToken resetToken, String givenResetToken) {
-        return resetToken.getToken().equals(givenResetToken);
-    }
-
-    private boolean isResetTokenExpired(ResetToken resetToken) {
-        return resetToken.getExpiryDate().isBefore(Instant.now());
+        UUID userId = resetTokenService.consumeResetToken(request.resetToken());
+        logger.info("Resetting New Password for User [userId: '{}']", userId);
+        createEncryptedPassword(userId, request.password());
     }
 
     private void createEncryptedPassword(UUID userId, String newPassword) {
-        Password password = getOrCreateHashedPassword(userId);
-        setHashedPassword(password, newPassword);
-    }
-
-    private Password getOrCreateHashedPassword(UUID userId) {
-        return passwordRepository.findByUserId(userId)
-                .orElse(new Password(userId));
+        String passwordHash = passwordEncoder.encode(newPassword);
+        passwordRepository.upsertPassword(IdentityUtils.generateUuidV7(), userId, passwordHash, ZonedDateTime.now());
+        passwordHashCache.invalidate(userId);
     }
 
     @Override
     @Transactional
     public void updatePassword(UUID userId, UpdatePasswordRequest request) {
         logger.info("Updating Password for User [userId: '{}']", userId);
-        Password password = getPasswordByUserId(userId);
-        validatePassword(request.currentPassword(), password);
-        setHashedPassword(password, request.newPassword());
+        String passwordHash = getPasswordHash(userId);
+        validatePassword(request.currentPassword(), passwordHash);
+        createEncryptedPassword(userId, request.newPassword());
     }
 
-    private Password getPasswordByUserId(UUID userId) {
-        return passwordRepository.findByUserId(userId)
+    private String getPasswordHash(UUID userId) {
+        return passwordHashCache.get(userId, credentialLookupRepository::findPasswordHash)
                 .orElseThrow(() -> new ResourceNotFoundException(Password.class, "userId", userId));
     }
 
-    private void validatePassword(String providedPassword, Password storedPassword) {
-        if (!passwordEncoder.matches(providedPassword, storedPassword.getPasswordHash()))
+    private void validatePassword(String providedPassword, String passwordHash) {
+        if (!passwordEncoder.matches(providedPassword, passwordHash))
             throw new CredentialsValidationException();
     }
 
-    private void setHashedPassword(Password password, String newPassword) {
-        password.setPasswordHash(passwordEncoder.encode(newPassword));
-        passwordRepository.save(password);
-    }
-
     @Override
     @Transactional
     public void deleteUserPasswords(UUID userId) {
         logger.info("Deleting Passwords for User [userId: '{}']", userId);
         passwordRepository.deleteByUserId(userId);
+        passwordHashCache.invalidate(userId);
     }
 
 }
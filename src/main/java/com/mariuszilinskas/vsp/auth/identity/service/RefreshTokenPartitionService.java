@@ -0,0 +1,9 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+public interface RefreshTokenPartitionService {
+
+    void createFuturePartitions();
+
+    int dropExpiredPartitions();
+
+}
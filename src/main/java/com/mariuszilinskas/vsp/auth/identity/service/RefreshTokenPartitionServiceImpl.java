@@ -0,0 +1,129 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service implementation for managing daily partitions of the Refresh Tokens table.
+ * Only active when the table is range-partitioned by expiry date (see the 'partitioned' profile).
+ *
+ * @author Marius Zilinskas
+ */
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenPartitionServiceImpl implements RefreshTokenPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenPartitionServiceImpl.class);
+    private static final String PARTITION_PREFIX = "refresh_tokens_p";
+    private static final DateTimeFormatter PARTITION_DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String FIND_PARTITIONS_SQL = """
+            SELECT child.relname
+            FROM pg_inherits
+            JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+            JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+            WHERE parent.relname = 'refresh_tokens'
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.refresh-tokens.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.refresh-tokens.partitioning.days-ahead:9}")
+    private int daysAhead;
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.refresh-tokens.partitioning.cron:0 0 * * * *}")
+    public void createFuturePartitions() {
+        if (!enabled) return;
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        Set<LocalDate> existingPartitions = findPartitionDates();
+
+        for (int i = 0; i <= daysAhead; i++) {
+            LocalDate day = today.plusDays(i);
+            if (!existingPartitions.contains(day))
+                createPartition(day);
+        }
+    }
+
+    private void createPartition(LocalDate day) {
+        String partitionName = getPartitionName(day);
+        logger.info("Creating Refresh Token partition [name: '{}']", partitionName);
+        try {
+            jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF refresh_tokens FOR VALUES FROM ('%s') TO ('%s')",
+                    partitionName, toUtcTimestamp(day), toUtcTimestamp(day.plusDays(1))));
+        } catch (DataAccessException ex) {
+            // Another instance may have created the same partition concurrently
+            logger.warn("Failed to create Refresh Token partition [name: '{}']: {}", partitionName, ex.getMessage());
+        }
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public int dropExpiredPartitions() {
+        if (!enabled) return 0;
+
+        // A partition for day D holds tokens expiring within [D, D + 1), so it is fully expired once D < today
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        List<LocalDate> expiredPartitions = findPartitionDates().stream()
+                .filter(day -> day.isBefore(today))
+                .sorted()
+                .toList();
+
+        expiredPartitions.forEach(this::dropPartition);
+        return expiredPartitions.size();
+    }
+
+    private void dropPartition(LocalDate day) {
+        String partitionName = getPartitionName(day);
+        logger.info("Dropping expired Refresh Token partition [name: '{}']", partitionName);
+        jdbcTemplate.execute(String.format("ALTER TABLE refresh_tokens DETACH PARTITION %s", partitionName));
+        jdbcTemplate.execute(String.format("DROP TABLE %s", partitionName));
+    }
+
+    private Set<LocalDate> findPartitionDates() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS_SQL, String.class).stream()
+                .map(this::parsePartitionDate)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    private LocalDate parsePartitionDate(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX)) return null;
+        try {
+            return LocalDate.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_DATE_FORMAT);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    private String getPartitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_DATE_FORMAT);
+    }
+
+    private String toUtcTimestamp(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant().toString();
+    }
+
+}
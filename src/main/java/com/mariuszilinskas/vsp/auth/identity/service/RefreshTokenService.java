@@ -1,6 +1,6 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository.RefreshTokenDetails;
 
 import java.util.UUID;
 
@@ -8,12 +8,14 @@ public interface RefreshTokenService {
 
     void createNewRefreshToken(UUID tokenId, UUID userId);
 
-    RefreshToken getRefreshToken(UUID tokenId);
+    void rotateRefreshToken(UUID tokenId, UUID newTokenId, UUID userId);
+
+    RefreshTokenDetails getRefreshToken(UUID tokenId);
 
     void deleteRefreshToken(UUID tokenId);
 
     void deleteUserRefreshTokens(UUID userId);
 
-    void deleteExpiredRefreshTokens();
+    int deleteExpiredRefreshTokens(int limit);
 
 }
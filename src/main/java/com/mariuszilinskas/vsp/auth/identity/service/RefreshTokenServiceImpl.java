@@ -1,7 +1,11 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.exception.JwtTokenValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.ResourceNotFoundException;
 import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository.RefreshTokenDetails;
+import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenGroupCommitter;
 import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import jakarta.transaction.Transactional;
@@ -24,23 +28,52 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
 
     private static final Logger logger = LoggerFactory.getLogger(RefreshTokenServiceImpl.class);
     private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenGroupCommitter refreshTokenGroupCommitter;
+    private final CredentialLookupRepository credentialLookupRepository;
 
+    /**
+     * Not transactional: a group-committed token is written in the committer's own transaction, and a single
+     * insert runs in one of its own.
+     */
     @Override
-    @Transactional
     public void createNewRefreshToken(UUID tokenId, UUID userId) {
-        RefreshToken refreshToken = findOrCreateRefreshToken(tokenId, userId);
-        refreshToken.setExpiryDate(Instant.now().plusMillis(IdentityUtils.REFRESH_TOKEN_EXPIRATION_MILLIS));
-        refreshTokenRepository.save(refreshToken);
+        Instant expiryDate = Instant.now().plusMillis(IdentityUtils.REFRESH_TOKEN_EXPIRATION_MILLIS);
+        if (refreshTokenGroupCommitter.isEnabled()) {
+            refreshTokenGroupCommitter.insert(tokenId, userId, expiryDate);
+            return;
+        }
+
+        refreshTokenRepository.insertToken(tokenId, userId, expiryDate);
+    }
+
+    @Override
+    @Transactional(dontRollbackOn = JwtTokenValidationException.class)
+    public void rotateRefreshToken(UUID tokenId, UUID newTokenId, UUID userId) {
+        Instant now = Instant.now();
+        Instant expiryDate = now.plusMillis(IdentityUtils.REFRESH_TOKEN_EXPIRATION_MILLIS);
+
+        if (refreshTokenRepository.rotateToken(tokenId, newTokenId, userId, expiryDate, now) == 0)
+            revokeUnrotatableToken(tokenId, userId);
+
+        logger.info("Refresh token [id: '{}'] has been rotated to [id: '{}']", tokenId, newTokenId);
     }
 
-    private RefreshToken findOrCreateRefreshToken(UUID tokenId, UUID userId) {
-        return refreshTokenRepository.findByIdAndUserId(tokenId, userId)
-                .orElse(new RefreshToken(tokenId, userId));
+    private void revokeUnrotatableToken(UUID tokenId, UUID userId) {
+        if (refreshTokenRepository.existsById(tokenId)) {
+            // The token has expired
+            refreshTokenRepository.deleteById(tokenId);
+        } else {
+            // The token was already rotated or revoked, so it may have been stolen
+            logger.warn("Refresh token [id: '{}'] reused, revoking all Refresh Tokens for User [userId: '{}']",
+                    tokenId, userId);
+            refreshTokenRepository.deleteByUserId(userId);
+        }
+        throw new JwtTokenValidationException();
     }
 
     @Override
-    public RefreshToken getRefreshToken(UUID tokenId) {
-        return refreshTokenRepository.findById(tokenId)
+    public RefreshTokenDetails getRefreshToken(UUID tokenId) {
+        return credentialLookupRepository.findRefreshToken(tokenId)
                 .orElseThrow(() -> new ResourceNotFoundException(RefreshToken.class, "id", tokenId));
     }
 
@@ -60,9 +93,8 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
 
     @Override
     @Transactional
-    public void deleteExpiredRefreshTokens() {
-        logger.info("Deleting Expired Refresh Tokens");
-        refreshTokenRepository.deleteAllByExpiryDateBefore(Instant.now());
+    public int deleteExpiredRefreshTokens(int limit) {
+        return refreshTokenRepository.deleteExpiredChunk(Instant.now(), limit);
     }
 
 }
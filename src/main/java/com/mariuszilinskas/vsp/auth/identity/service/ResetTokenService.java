@@ -10,8 +10,10 @@ public interface ResetTokenService {
 
     ResetToken findResetToken(String token);
 
+    UUID consumeResetToken(String token);
+
     void deleteUserResetTokens(UUID userid);
 
-    void deleteExpiredResetTokens();
+    int deleteExpiredResetTokens(int limit);
 
 }
@@ -1,20 +1,44 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.ConsumedTokenSet;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.enums.ResetTokenMode;
+import com.mariuszilinskas.vsp.auth.identity.exception.ResetTokenValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.ResourceNotFoundException;
 import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.ResetTokenRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.DecodingException;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.WeakKeyException;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.time.Instant;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * Service implementation for managing User Password Reset Tokens.
+ * <p>
+ * In STORED mode a random token is issued and its digest kept in the database. In SIGNED mode the token
+ * is an HMAC-signed (userId, expiry, password fingerprint) blob that needs no storage: changing the
+ * password invalidates it, and a local consumed-set stops it being redeemed twice in the meantime.
+ * <p>
+ * SIGNED mode saves the Reset Token write and lookup, not every database read: the fingerprint is checked
+ * against the current password hash, so each verification still reads one row through uk_passwords_user_id.
+ * That read is what lets a password change revoke outstanding tokens without any token state.
  *
  * @author Marius Zilinskas
  */
@@ -23,45 +47,181 @@ import java.util.UUID;
 public class ResetTokenServiceImpl implements ResetTokenService {
 
     private static final Logger logger = LoggerFactory.getLogger(ResetTokenServiceImpl.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte SIGNED_TOKEN_VERSION = 1;
+    private static final int FINGERPRINT_LENGTH = 8;
+    private static final int PAYLOAD_LENGTH = 1 + 16 + 8 + FINGERPRINT_LENGTH; // version, userId, expiry, fingerprint
+    private static final int SIGNATURE_LENGTH = 32;
+
     private final ResetTokenRepository resetTokenRepository;
+    private final CredentialLookupRepository credentialLookupRepository;
     private final TokenGenerationService tokenGenerationService;
+    private final EphemeralCredentialStore credentialStore;
+    private final ConsumedTokenSet consumedTokenSet;
+
+    @Value("${app.reset-token.mode:STORED}")
+    private ResetTokenMode mode;
+
+    @Value("${app.resetTokenSecret:}")
+    private String resetTokenSecret;
+
+    private SecretKey signingKey;
+
+    /**
+     * Decodes the signing key up front, so a missing or too short secret fails at startup rather than on the
+     * first Reset Token.
+     */
+    @PostConstruct
+    public void validateConfiguration() {
+        if (mode != ResetTokenMode.SIGNED) return;
+        if (resetTokenSecret.isBlank())
+            throw new IllegalStateException("app.resetTokenSecret is required when app.reset-token.mode is SIGNED");
+
+        try {
+            signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(resetTokenSecret));
+        } catch (DecodingException | WeakKeyException ex) {
+            throw new IllegalStateException(
+                    "app.resetTokenSecret must be a Base64 encoded key of at least 256 bits", ex);
+        }
+    }
 
     @Override
     @Transactional
     public String createResetToken(UUID userId) {
         logger.info("Creating Reset Token for User [userId: '{}']", userId);
-        ResetToken resetToken = findOrCreateResetToken(userId);
-        resetToken.setToken(tokenGenerationService.generateResetToken());
+        if (mode == ResetTokenMode.SIGNED)
+            return createSignedResetToken(userId);
+
+        String token = tokenGenerationService.generateResetToken();
+        ResetToken resetToken = new ResetToken(userId);
+        resetToken.setId(IdentityUtils.generateUuidV7());
+        resetToken.setTokenHash(IdentityUtils.hashToken(token));
         resetToken.setExpiryDate(Instant.now().plusMillis(IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS));
-        resetTokenRepository.save(resetToken);
-        return resetToken.getToken();
+        if (!credentialStore.isMemoryOnly())
+            resetTokenRepository.upsertResetToken(
+                    resetToken.getId(), userId, resetToken.getTokenHash(), resetToken.getExpiryDate());
+        credentialStore.storeResetToken(resetToken);
+        return token;
     }
 
-    private ResetToken findOrCreateResetToken(UUID userId) {
-        return resetTokenRepository.findByUserId(userId)
-                .orElse(new ResetToken(userId));
+    private String createSignedResetToken(UUID userId) {
+        Instant expiryDate = Instant.now().plusMillis(IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS);
+        ByteBuffer token = ByteBuffer.allocate(PAYLOAD_LENGTH + SIGNATURE_LENGTH)
+                .put(SIGNED_TOKEN_VERSION)
+                .putLong(userId.getMostSignificantBits())
+                .putLong(userId.getLeastSignificantBits())
+                .putLong(expiryDate.getEpochSecond())
+                .put(getPasswordFingerprint(userId));
+        token.put(sign(token.array()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
     }
 
     @Override
     @Transactional
     public ResetToken findResetToken(String token) {
-        logger.info("Getting Reset Token [token: '{}']", token);
-        return resetTokenRepository.findByToken(token)
+        String tokenHash = IdentityUtils.hashToken(token);
+        logger.info("Getting Reset Token [tokenHash: '{}']", tokenHash);
+        return findResetTokenByHash(tokenHash)
                 .orElseThrow(() -> new ResourceNotFoundException(ResetToken.class, "token", token));
     }
 
+    private Optional<ResetToken> findResetTokenByHash(String tokenHash) {
+        if (credentialStore.isMemoryOnly())
+            return credentialStore.findResetToken(tokenHash);
+
+        // The database decides, as another instance may have consumed or replaced the token
+        if (credentialStore.isMissingResetToken(tokenHash)) return Optional.empty();
+        Optional<ResetToken> resetToken = resetTokenRepository.findByTokenHash(tokenHash);
+        if (resetToken.isEmpty()) credentialStore.rememberMissingResetToken(tokenHash);
+        return resetToken;
+    }
+
+    @Override
+    @Transactional
+    public UUID consumeResetToken(String token) {
+        if (mode == ResetTokenMode.SIGNED)
+            return consumeSignedResetToken(token);
+
+        ResetToken resetToken = findResetToken(token);
+        if (isExpired(resetToken.getExpiryDate()))
+            throw new ResetTokenValidationException();
+
+        deleteUserResetTokens(resetToken.getUserId());
+        return resetToken.getUserId();
+    }
+
+    private UUID consumeSignedResetToken(String token) {
+        byte[] bytes = decodeSignedResetToken(token);
+        byte[] signature = Arrays.copyOfRange(bytes, PAYLOAD_LENGTH, bytes.length);
+        if (!MessageDigest.isEqual(sign(bytes), signature))
+            throw new ResetTokenValidationException();
+
+        ByteBuffer payload = ByteBuffer.wrap(bytes, 1, PAYLOAD_LENGTH - 1);
+        UUID userId = new UUID(payload.getLong(), payload.getLong());
+        Instant expiryDate = Instant.ofEpochSecond(payload.getLong());
+        byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+        payload.get(fingerprint);
+        logger.info("Consuming signed Reset Token for User [userId: '{}']", userId);
+
+        // A changed fingerprint means the password was reset or updated since the token was issued
+        if (isExpired(expiryDate) || !MessageDigest.isEqual(fingerprint, getPasswordFingerprint(userId)))
+            throw new ResetTokenValidationException();
+
+        if (!consumedTokenSet.markConsumed(Base64.getEncoder().encodeToString(signature), expiryDate))
+            throw new ResetTokenValidationException();
+
+        return userId;
+    }
+
+    private byte[] decodeSignedResetToken(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException ex) {
+            throw new ResetTokenValidationException();
+        }
+        if (bytes.length != PAYLOAD_LENGTH + SIGNATURE_LENGTH || bytes[0] != SIGNED_TOKEN_VERSION)
+            throw new ResetTokenValidationException();
+        return bytes;
+    }
+
+    private byte[] sign(byte[] token) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            mac.update(token, 0, PAYLOAD_LENGTH);
+            return mac.doFinal();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Failed to sign Reset Token", ex);
+        }
+    }
+
+    /**
+     * Reads the current password hash on every call; see the class comment for why it is not cached.
+     */
+    private byte[] getPasswordFingerprint(UUID userId) {
+        String passwordHash = credentialLookupRepository.findPasswordHash(userId).orElse("");
+        return HexFormat.of().parseHex(IdentityUtils.hashToken(passwordHash), 0, FINGERPRINT_LENGTH * 2);
+    }
+
+    private boolean isExpired(Instant expiryDate) {
+        return expiryDate.isBefore(Instant.now());
+    }
+
     @Override
     @Transactional
     public void deleteUserResetTokens(UUID userId) {
         logger.info("Deleting Reset Tokens for User [userId: '{}']", userId);
-        resetTokenRepository.deleteByUserId(userId);
+        credentialStore.removeUserResetTokens(userId);
+        if (!credentialStore.isMemoryOnly())
+            resetTokenRepository.deleteByUserId(userId);
     }
 
     @Override
     @Transactional
-    public void deleteExpiredResetTokens() {
-        logger.info("Deleting Expired Reset Tokens");
-        resetTokenRepository.deleteAllByExpiryDateBefore(Instant.now());
+    public int deleteExpiredResetTokens(int limit) {
+        if (credentialStore.isMemoryOnly()) return 0;
+        return resetTokenRepository.deleteExpiredChunk(Instant.now(), limit);
     }
 
 }
@@ -1,23 +1,125 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import org.apache.commons.lang.RandomStringUtils;
+import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static java.security.DrbgParameters.Capability.RESEED_ONLY;
+
 /**
  * Service implementation for Token generations.
+ * <p>
+ * Every thread owns a DRBG instance seeded from the platform entropy source and draws from a
+ * buffer of its output, so concurrent callers never contend on a shared generator.
  *
  * @author Marius Zilinskas
  */
 @Service
 public class TokenGenerationService {
 
+    private static final String PASSCODE_CHARS = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789"; // Excludes 0, O, I and 1
+    private static final String RESET_TOKEN_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int PASSCODE_LENGTH = 6;
+    private static final int RESET_TOKEN_LENGTH = 20;
+    private static final int BUFFER_SIZE = 512;
+
+    private final ThreadLocal<EntropyBuffer> entropy = ThreadLocal.withInitial(EntropyBuffer::new);
+
     public String generatePasscode() {
-        String allowedChars = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789"; // Excludes 0, O, I and 1
-        return RandomStringUtils.random(6, allowedChars).toUpperCase();
+        return randomString(entropy.get(), PASSCODE_CHARS, PASSCODE_LENGTH);
     }
 
     public String generateResetToken() {
-        return RandomStringUtils.randomAlphanumeric(20).toLowerCase();
+        return randomString(entropy.get(), RESET_TOKEN_CHARS, RESET_TOKEN_LENGTH);
+    }
+
+    /**
+     * Generates a time-ordered (version 7) UUID whose random bits come from the per-thread generator.
+     */
+    public UUID generateTokenId() {
+        return timeOrderedUuid(entropy.get());
+    }
+
+    public List<String> generatePasscodes(int count) {
+        EntropyBuffer buffer = entropy.get();
+        List<String> passcodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            passcodes.add(randomString(buffer, PASSCODE_CHARS, PASSCODE_LENGTH));
+        return passcodes;
+    }
+
+    public List<String> generateResetTokens(int count) {
+        EntropyBuffer buffer = entropy.get();
+        List<String> resetTokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            resetTokens.add(randomString(buffer, RESET_TOKEN_CHARS, RESET_TOKEN_LENGTH));
+        return resetTokens;
+    }
+
+    public List<UUID> generateTokenIds(int count) {
+        EntropyBuffer buffer = entropy.get();
+        List<UUID> tokenIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            tokenIds.add(timeOrderedUuid(buffer));
+        return tokenIds;
+    }
+
+    private static String randomString(EntropyBuffer buffer, String alphabet, int length) {
+        // Rejection sampling: bytes at or above the largest multiple of the alphabet size are skipped, so every
+        // character is equally likely
+        int limit = 256 - (256 % alphabet.length());
+        char[] chars = new char[length];
+        int i = 0;
+        while (i < length) {
+            int value = buffer.nextByte();
+            if (value < limit)
+                chars[i++] = alphabet.charAt(value % alphabet.length());
+        }
+        return new String(chars);
+    }
+
+    private static UUID timeOrderedUuid(EntropyBuffer buffer) {
+        return IdentityUtils.uuidV7(System.currentTimeMillis(), buffer.nextLong(), buffer.nextLong());
+    }
+
+    private static SecureRandom newSecureRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(256, RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException ex) {
+            return new SecureRandom();
+        }
+    }
+
+    private static final class EntropyBuffer {
+        private final SecureRandom secureRandom = newSecureRandom();
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+        private EntropyBuffer() {
+            bytes.position(BUFFER_SIZE);
+        }
+
+        private int nextByte() {
+            if (!bytes.hasRemaining()) refill();
+            return bytes.get() & 0xFF;
+        }
+
+        private long nextLong() {
+            if (bytes.remaining() < Long.BYTES) refill();
+            return bytes.getLong();
+        }
+
+        private void refill() {
+            secureRandom.nextBytes(bytes.array());
+            bytes.clear();
+        }
     }
 
 }
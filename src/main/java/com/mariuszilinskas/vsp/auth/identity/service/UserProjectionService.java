@@ -0,0 +1,30 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.CredentialsRequest;
+import com.mariuszilinskas.vsp.auth.identity.dto.ProjectionResyncResponse;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface UserProjectionService {
+
+    Optional<AuthDetails> findAuthDetailsByEmail(String email);
+
+    Optional<AuthDetails> findAuthDetailsByUserId(UUID userId);
+
+    Optional<UserResponse> findUser(UUID userId);
+
+    Optional<UserAccount> findUserAccountByEmail(String email);
+
+    Optional<UserAccount> findUserAccountByUserId(UUID userId);
+
+    void seed(CredentialsRequest request);
+
+    void sync(UUID userId);
+
+    ProjectionResyncResponse resync(UUID afterUserId, int limit);
+
+}
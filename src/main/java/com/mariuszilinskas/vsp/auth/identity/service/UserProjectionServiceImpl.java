@@ -0,0 +1,223 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
+import com.mariuszilinskas.vsp.auth.identity.config.Workload;
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.CredentialsRequest;
+import com.mariuszilinskas.vsp.auth.identity.dto.ProjectionResyncResponse;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository.UserProjection;
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service implementation for the local projection of users service data, which lets login, refresh,
+ * forgot-password and passcode flows run without calling the users service.
+ * <p>
+ * Rows are seeded from create-credentials and synced from the users service on every user-changed event, taken
+ * from a durable queue shared by all instances so each event is synced once. A status or role change reaches the
+ * projection as it reaches the {@code AuthDetailsCache}. A row whose
+ * sync fails is marked unsynced, and lookups for it fall back to the users service until the next sync or
+ * resync. While the projection is disabled it is not read, and user-changed events only mark rows unsynced,
+ * so nothing changed in the meantime is served once it is enabled again.
+ *
+ * @author Marius Zilinskas
+ */
+@Service
+public class UserProjectionServiceImpl implements UserProjectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProjectionServiceImpl.class);
+    private final UserProjectionRepository userProjectionRepository;
+    private final UserFeignClient userFeignClient;
+    private final UsersServiceGuard usersServiceGuard;
+    private final Counter emailHits;
+    private final Counter emailMisses;
+    private final Counter userIdHits;
+    private final Counter userIdMisses;
+    private final Counter synced;
+    private final Counter deleted;
+    private final Counter failed;
+
+    @Value("${app.user-projection.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.user-projection.resync.max-page-size:1000}")
+    private int maxResyncPageSize;
+
+    @Value("${app.users-client.combined-fetch.enabled:false}")
+    private boolean combinedFetchEnabled;
+
+    public UserProjectionServiceImpl(
+            UserProjectionRepository userProjectionRepository,
+            UserFeignClient userFeignClient,
+            UsersServiceGuard usersServiceGuard,
+            MeterRegistry meterRegistry
+    ) {
+        this.userProjectionRepository = userProjectionRepository;
+        this.userFeignClient = userFeignClient;
+        this.usersServiceGuard = usersServiceGuard;
+        this.emailHits = lookupCounter(meterRegistry, "email", "hit");
+        this.emailMisses = lookupCounter(meterRegistry, "email", "miss");
+        this.userIdHits = lookupCounter(meterRegistry, "user_id", "hit");
+        this.userIdMisses = lookupCounter(meterRegistry, "user_id", "miss");
+        this.synced = syncCounter(meterRegistry, "synced");
+        this.deleted = syncCounter(meterRegistry, "deleted");
+        this.failed = syncCounter(meterRegistry, "failed");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String lookup, String result) {
+        return Counter.builder("identity.user-projection.gets")
+                .description("Number of User projection lookups, by key and result")
+                .tag("lookup", lookup)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter syncCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("identity.user-projection.syncs")
+                .description("Number of User projection syncs from the users service, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<AuthDetails> findAuthDetailsByEmail(String email) {
+        if (!enabled) return Optional.empty();
+        return count(userProjectionRepository.findByEmail(email), emailHits, emailMisses)
+                .map(UserProjectionServiceImpl::toAuthDetails);
+    }
+
+    @Override
+    public Optional<AuthDetails> findAuthDetailsByUserId(UUID userId) {
+        if (!enabled) return Optional.empty();
+        return count(userProjectionRepository.findByUserId(userId), userIdHits, userIdMisses)
+                .map(UserProjectionServiceImpl::toAuthDetails);
+    }
+
+    @Override
+    public Optional<UserResponse> findUser(UUID userId) {
+        if (!enabled) return Optional.empty();
+        return count(userProjectionRepository.findByUserId(userId), userIdHits, userIdMisses)
+                .map(projection -> new UserResponse(projection.firstName(), projection.lastName(), projection.email()));
+    }
+
+    @Override
+    public Optional<UserAccount> findUserAccountByEmail(String email) {
+        if (!enabled) return Optional.empty();
+        return count(userProjectionRepository.findByEmail(email), emailHits, emailMisses)
+                .map(UserProjectionServiceImpl::toUserAccount);
+    }
+
+    @Override
+    public Optional<UserAccount> findUserAccountByUserId(UUID userId) {
+        if (!enabled) return Optional.empty();
+        return count(userProjectionRepository.findByUserId(userId), userIdHits, userIdMisses)
+                .map(UserProjectionServiceImpl::toUserAccount);
+    }
+
+    private static Optional<UserProjection> count(Optional<UserProjection> projection, Counter hits, Counter misses) {
+        Optional<UserProjection> current = projection.filter(UserProjection::isSynced);
+        (current.isPresent() ? hits : misses).increment();
+        return current;
+    }
+
+    private static AuthDetails toAuthDetails(UserProjection projection) {
+        return new AuthDetails(projection.userId(), projection.roles(), projection.authorities(), projection.status());
+    }
+
+    private static UserAccount toUserAccount(UserProjection projection) {
+        return new UserAccount(projection.userId(), projection.roles(), projection.authorities(), projection.status(),
+                projection.firstName(), projection.lastName(), projection.email());
+    }
+
+    @Override
+    public void seed(CredentialsRequest request) {
+        logger.info("Seeding User projection [userId: '{}']", request.userId());
+        userProjectionRepository.seed(request.userId(), request.email(), request.firstName());
+    }
+
+    @Override
+    public void sync(UUID userId) {
+        if (!enabled) {
+            userProjectionRepository.markUnsynced(userId);
+            return;
+        }
+
+        logger.info("Syncing User projection [userId: '{}']", userId);
+        // Never throws, so a user-changed event the database cannot take is not redelivered for ever
+        try {
+            syncFromUsersService(userId);
+        } catch (FeignException | UsersServiceUnavailableException | DataAccessException ex) {
+            logger.warn("Failed to sync User projection, marking it unsynced [userId: '{}']: {}",
+                    userId, ex.getMessage());
+            failed.increment();
+            markUnsynced(userId);
+        }
+    }
+
+    private void syncFromUsersService(UUID userId) {
+        Instant fetchedAt = Instant.now();
+        try {
+            UserAccount account = fetchUserAccount(userId);
+            userProjectionRepository.save(new UserProjection(userId, account.email(), account.firstName(),
+                    account.lastName(), account.status(),
+                    Objects.requireNonNullElse(account.roles(), List.of()),
+                    Objects.requireNonNullElse(account.authorities(), List.of()),
+                    fetchedAt));
+            synced.increment();
+        } catch (FeignException.NotFound ex) {
+            logger.info("User no longer exists, deleting User projection [userId: '{}']", userId);
+            userProjectionRepository.delete(userId);
+            deleted.increment();
+        }
+    }
+
+    private void markUnsynced(UUID userId) {
+        try {
+            userProjectionRepository.markUnsynced(userId);
+        } catch (DataAccessException ex) {
+            logger.error("Failed to mark User projection unsynced, it is served until the next sync or resync " +
+                    "[userId: '{}']: {}", userId, ex.getMessage());
+        }
+    }
+
+    private UserAccount fetchUserAccount(UUID userId) {
+        if (combinedFetchEnabled)
+            return usersServiceGuard.call(() -> userFeignClient.getUserAccountByUserId(userId));
+
+        AuthDetails authDetails = usersServiceGuard.call(() -> userFeignClient.getUserAuthDetailsByUserId(userId));
+        return UserAccount.of(authDetails, usersServiceGuard.call(() -> userFeignClient.getUser(userId)));
+    }
+
+    @Override
+    public ProjectionResyncResponse resync(UUID afterUserId, int limit) {
+        // Resyncs read the passwords table page by page, so keep them off the interactive pool
+        return Workload.BACKGROUND.call(() -> {
+            int pageSize = Math.max(1, Math.min(limit, maxResyncPageSize));
+            List<UUID> userIds = userProjectionRepository.findCredentialUserIds(afterUserId, pageSize);
+            userIds.forEach(this::sync);
+
+            // A short page is the last one
+            UUID lastUserId = userIds.size() < pageSize ? null : userIds.get(userIds.size() - 1);
+            logger.info("Resynced User projection page [users: {}, lastUserId: '{}']", userIds.size(), lastUserId);
+            return new ProjectionResyncResponse(userIds.size(), lastUserId);
+        });
+    }
+
+}
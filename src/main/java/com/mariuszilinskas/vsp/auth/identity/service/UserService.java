@@ -1,6 +1,8 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
 import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
 
 import java.util.UUID;
 
@@ -10,4 +12,10 @@ public interface UserService {
 
     AuthDetails getUserAuthDetailsWithId(UUID userId);
 
+    UserResponse getUser(UUID userId);
+
+    UserAccount getUserAccountWithEmail(String email);
+
+    UserAccount getUserAccountWithId(UUID userId);
+
 }
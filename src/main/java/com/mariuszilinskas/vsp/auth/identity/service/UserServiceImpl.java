@@ -1,46 +1,212 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.SingleFlight;
+import com.mariuszilinskas.vsp.auth.identity.cache.UserAccountMemo;
 import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
 import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
 import com.mariuszilinskas.vsp.auth.identity.exception.CredentialsValidationException;
+import com.mariuszilinskas.vsp.auth.identity.exception.UserRetrievalException;
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
 import feign.FeignException;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
 
 /**
- * Implementation of UserService interface.
+ * Implementation of UserService interface. Auth Details are served from the {@link AuthDetailsCache}
+ * where possible, and unknown emails are remembered for a short while.
+ * <p>
+ * Concurrent calls to the users service for the same email or User ID (refresh storms from one User's
+ * devices, login retries) are coalesced into one, whose result all the callers share. Calls go through the
+ * {@link UsersServiceGuard}; while it sheds them, refreshes are served the last cached Auth Details.
+ * <p>
+ * When the local projection is enabled and holds a synced row for the User, it is read first and the users
+ * service is not called at all.
+ * <p>
+ * User Accounts (Auth Details and profile together) come from one combined users service call once
+ * {@code app.users-client.combined-fetch.enabled} is set, and from the two separate calls until then. What a
+ * request has fetched is kept in the {@link UserAccountMemo}, so no request fetches the same User twice.
  *
  * @author Marius Zilinskas
  */
 @Service
-@RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
     private final UserFeignClient userFeignClient;
+    private final UsersServiceGuard usersServiceGuard;
+    private final AuthDetailsCache authDetailsCache;
+    private final UserProjectionService userProjectionService;
+    private final UserAccountMemo userAccountMemo;
+    private final SingleFlight<String, Optional<AuthDetails>> authDetailsByEmailCalls;
+    private final SingleFlight<UUID, Optional<AuthDetails>> authDetailsByUserIdCalls;
+    private final SingleFlight<UUID, UserResponse> userCalls;
+    private final SingleFlight<String, Optional<UserAccount>> userAccountByEmailCalls;
+    private final SingleFlight<UUID, UserAccount> userAccountByUserIdCalls;
+
+    @Value("${app.users-client.combined-fetch.enabled:false}")
+    private boolean combinedFetchEnabled;
+
+    public UserServiceImpl(
+            UserFeignClient userFeignClient,
+            UsersServiceGuard usersServiceGuard,
+            AuthDetailsCache authDetailsCache,
+            UserProjectionService userProjectionService,
+            UserAccountMemo userAccountMemo,
+            MeterRegistry meterRegistry,
+            @Value("${spring.cloud.openfeign.client.config.users.connect-timeout:1000}") long connectTimeoutMillis,
+            @Value("${app.users-client.read-timeout-millis.auth-details:1000}") long authDetailsReadTimeoutMillis,
+            @Value("${app.users-client.read-timeout-millis.user:3000}") long userReadTimeoutMillis
+    ) {
+        this.userFeignClient = userFeignClient;
+        this.usersServiceGuard = usersServiceGuard;
+        this.authDetailsCache = authDetailsCache;
+        this.userProjectionService = userProjectionService;
+        this.userAccountMemo = userAccountMemo;
+
+        // A coalesced caller waits no longer than the call it shares can take (see UsersClientConfig)
+        Duration authDetailsMaxWait = Duration.ofMillis(connectTimeoutMillis + authDetailsReadTimeoutMillis);
+        Duration userMaxWait = Duration.ofMillis(connectTimeoutMillis + userReadTimeoutMillis);
+        this.authDetailsByEmailCalls = singleFlight(meterRegistry, "auth_details_by_email", authDetailsMaxWait);
+        this.authDetailsByUserIdCalls = singleFlight(meterRegistry, "auth_details_by_user_id", authDetailsMaxWait);
+        this.userCalls = singleFlight(meterRegistry, "user", userMaxWait);
+        this.userAccountByEmailCalls = singleFlight(meterRegistry, "user_account_by_email", userMaxWait);
+        this.userAccountByUserIdCalls = singleFlight(meterRegistry, "user_account_by_user_id", userMaxWait);
+    }
+
+    private static <K, V> SingleFlight<K, V> singleFlight(MeterRegistry meterRegistry, String call, Duration maxWait) {
+        var coalescedCalls = Counter.builder("identity.users.calls.coalesced")
+                .description("Number of users service calls that shared a concurrent identical call")
+                .tag("call", call)
+                .register(meterRegistry);
+        return new SingleFlight<>(coalescedCalls, maxWait, UsersServiceUnavailableException::new);
+    }
 
     @Override
     public AuthDetails getUserAuthDetailsWithEmail(String email) {
-        return getUserAuthDetails(() -> userFeignClient.getUserAuthDetailsByEmail(email), email);
+        Optional<AuthDetails> projected = userProjectionService.findAuthDetailsByEmail(email);
+        if (projected.isPresent()) return projected.get();
+
+        return authDetailsCache.getByEmail(email, key -> authDetailsByEmailCalls.execute(key, () ->
+                        fetchUserAuthDetails(() -> userFeignClient.getUserAuthDetailsByEmail(key), key)))
+                .orElseThrow(CredentialsValidationException::new);
     }
 
     @Override
     public AuthDetails getUserAuthDetailsWithId(UUID userId) {
-        return getUserAuthDetails(() -> userFeignClient.getUserAuthDetailsByUserId(userId), userId.toString());
+        Optional<AuthDetails> projected = userProjectionService.findAuthDetailsByUserId(userId);
+        if (projected.isPresent()) return projected.get();
+
+        try {
+            return authDetailsCache.getByUserId(userId, key -> authDetailsByUserIdCalls.execute(key, () ->
+                            fetchUserAuthDetails(() -> userFeignClient.getUserAuthDetailsByUserId(key), key)))
+                    .orElseThrow(CredentialsValidationException::new);
+        } catch (UsersServiceUnavailableException ex) {
+            logger.warn("Users service unavailable, using last known Auth Details [userId: '{}']", userId);
+            return authDetailsCache.getStaleByUserId(userId).orElseThrow(() -> ex);
+        }
     }
 
-    private AuthDetails getUserAuthDetails(Supplier<AuthDetails> supplier, String identifier) {
+    /**
+     * @return empty if the users service does not know the User
+     * @throws UserRetrievalException if the users service failed, so callers can tell it from an unknown User
+     */
+    private Optional<AuthDetails> fetchUserAuthDetails(Supplier<AuthDetails> supplier, Object identifier) {
         logger.info("Getting User Auth Details for User [identifier: '{}']", identifier);
         try {
-            return supplier.get();
-        } catch (FeignException ex) {
+            return Optional.of(usersServiceGuard.call(supplier));
+        } catch (FeignException.NotFound ex) {
+            return Optional.empty();
+        } catch (FeignException.FeignClientException ex) {
             throw new CredentialsValidationException();
+        } catch (FeignException ex) {
+            logger.error("Feign Exception when getting User Auth Details: Identifier '{}', Status {}",
+                    identifier, ex.status());
+            throw new UserRetrievalException();
         }
     }
 
+    @Override
+    public UserResponse getUser(UUID userId) {
+        // With the combined call the whole User Account costs the same, and later lookups by the request reuse it
+        if (combinedFetchEnabled) return getUserAccountWithId(userId).profile();
+        return userAccountMemo.getProfile(userId, this::loadUser);
+    }
+
+    private UserResponse loadUser(UUID userId) {
+        Optional<UserResponse> projected = userProjectionService.findUser(userId);
+        if (projected.isPresent()) return projected.get();
+
+        return userCalls.execute(userId, () -> {
+            try {
+                return usersServiceGuard.call(() -> userFeignClient.getUser(userId));
+            } catch (FeignException ex) {
+                logger.error("Feign Exception when getting User info: User ID '{}', Status {}, Body {}",
+                        userId, ex.status(), ex.contentUTF8());
+                throw new UserRetrievalException();
+            }
+        });
+    }
+
+    @Override
+    public UserAccount getUserAccountWithEmail(String email) {
+        return userAccountMemo.getByEmail(email, key -> userProjectionService.findUserAccountByEmail(key)
+                .orElseGet(() -> fetchUserAccountWithEmail(key)));
+    }
+
+    private UserAccount fetchUserAccountWithEmail(String email) {
+        if (!combinedFetchEnabled) {
+            AuthDetails authDetails = getUserAuthDetailsWithEmail(email);
+            return UserAccount.of(authDetails, getUser(authDetails.userId()));
+        }
+
+        return userAccountByEmailCalls.execute(email, () -> {
+            logger.info("Getting User Account for User [email: '{}']", email);
+            try {
+                return Optional.of(usersServiceGuard.call(() -> userFeignClient.getUserAccountByEmail(email)));
+            } catch (FeignException.NotFound ex) {
+                return Optional.empty();
+            } catch (FeignException.FeignClientException ex) {
+                throw new CredentialsValidationException();
+            } catch (FeignException ex) {
+                logger.error("Feign Exception when getting User Account: Email '{}', Status {}", email, ex.status());
+                throw new UserRetrievalException();
+            }
+        }).orElseThrow(CredentialsValidationException::new);
+    }
+
+    @Override
+    public UserAccount getUserAccountWithId(UUID userId) {
+        return userAccountMemo.getByUserId(userId, key -> userProjectionService.findUserAccountByUserId(key)
+                .orElseGet(() -> fetchUserAccountWithId(key)));
+    }
+
+    private UserAccount fetchUserAccountWithId(UUID userId) {
+        if (!combinedFetchEnabled)
+            return UserAccount.of(getUserAuthDetailsWithId(userId), getUser(userId));
+
+        return userAccountByUserIdCalls.execute(userId, () -> {
+            logger.info("Getting User Account for User [userId: '{}']", userId);
+            try {
+                return usersServiceGuard.call(() -> userFeignClient.getUserAccountByUserId(userId));
+            } catch (FeignException ex) {
+                logger.error("Feign Exception when getting User Account: User ID '{}', Status {}, Body {}",
+                        userId, ex.status(), ex.contentUTF8());
+                throw new UserRetrievalException();
+            }
+        });
+    }
+
 }
@@ -3,7 +3,13 @@ package com.mariuszilinskas.vsp.auth.identity.util;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
 import com.mariuszilinskas.vsp.auth.identity.exception.UserStatusAccessException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 public abstract class IdentityUtils {
 
@@ -31,4 +37,34 @@ public abstract class IdentityUtils {
         }
     }
 
+    /**
+     * Returns the lowercase hex SHA-256 digest of the token, as stored in place of the token itself.
+     */
+    public static String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Generates a time-ordered (version 7) UUID for a database key. Keys generated later sort later, so
+     * inserts land on the right-hand edge of the primary-key index instead of on random pages.
+     */
+    public static UUID generateUuidV7() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return uuidV7(System.currentTimeMillis(), random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Builds an RFC 9562 version 7 UUID: the 48-bit Unix millisecond timestamp, then 74 of the given random bits.
+     */
+    public static UUID uuidV7(long epochMillis, long randomHigh, long randomLow) {
+        long mostSigBits = (epochMillis << 16) | 0x7000L | (randomHigh & 0x0FFFL); // version 7
+        long leastSigBits = (randomLow & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
 }
@@ -0,0 +1,42 @@
+-- H2 counterpart of db/migration/postgresql/V2__credential_schema_and_indexes.sql, used by the 'ci' profile.
+-- Keep the two in step: the same tables, unique constraints and index names.
+
+CREATE TABLE passwords (
+    id                UUID                        NOT NULL PRIMARY KEY,
+    user_id           UUID                        NOT NULL,
+    password_hash     VARCHAR(255)                NOT NULL,
+    incorrect_entries INTEGER                     NOT NULL DEFAULT 0,
+    last_updated      TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE passcodes (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    passcode    VARCHAR(255)                NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE reset_tokens (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    token_hash  VARCHAR(64)                 NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE refresh_tokens (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE UNIQUE INDEX uk_passwords_user_id ON passwords (user_id);
+
+CREATE UNIQUE INDEX uk_passcodes_user_id ON passcodes (user_id);
+CREATE INDEX idx_passcodes_expiry_date ON passcodes (expiry_date);
+
+CREATE UNIQUE INDEX uk_reset_tokens_token_hash ON reset_tokens (token_hash);
+CREATE UNIQUE INDEX uk_reset_tokens_user_id ON reset_tokens (user_id);
+CREATE INDEX idx_reset_tokens_expiry_date ON reset_tokens (expiry_date);
+
+CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens (user_id);
+CREATE INDEX idx_refresh_tokens_expiry_date ON refresh_tokens (expiry_date);
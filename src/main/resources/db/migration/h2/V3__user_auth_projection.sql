@@ -0,0 +1,15 @@
+-- H2 counterpart of db/migration/postgresql/V3__user_auth_projection.sql, used by the 'ci' profile.
+-- Keep the two in step: the same tables, unique constraints and index names.
+
+CREATE TABLE user_auth_projection (
+    user_id     UUID                        NOT NULL PRIMARY KEY,
+    email       VARCHAR(255)                NOT NULL,
+    first_name  VARCHAR(255)                NOT NULL,
+    last_name   VARCHAR(255),
+    status      VARCHAR(32),
+    roles       VARCHAR(255),
+    authorities VARCHAR(1024),
+    synced_at   TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE UNIQUE INDEX uk_user_auth_projection_email ON user_auth_projection (email);
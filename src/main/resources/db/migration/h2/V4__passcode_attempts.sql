@@ -0,0 +1,3 @@
+-- H2 counterpart of db/migration/postgresql/V4__passcode_attempts.sql, used by the 'ci' profile.
+
+ALTER TABLE passcodes ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
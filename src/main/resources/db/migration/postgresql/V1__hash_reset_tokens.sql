@@ -0,0 +1,24 @@
+-- Replaces the plaintext reset_tokens.token column with a uniquely indexed SHA-256 digest (token_hash),
+-- so a password reset is a single index probe. Live tokens are backfilled and keep working; expired
+-- tokens are dropped. On a fresh database the table does not exist yet and this is a no-op.
+
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'reset_tokens' AND column_name = 'token'
+    ) THEN
+        RETURN;
+    END IF;
+
+    DELETE FROM reset_tokens WHERE expiry_date < now();
+
+    ALTER TABLE reset_tokens ADD COLUMN IF NOT EXISTS token_hash VARCHAR(64);
+    UPDATE reset_tokens
+    SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex')
+    WHERE token_hash IS NULL;
+
+    ALTER TABLE reset_tokens ALTER COLUMN token_hash SET NOT NULL;
+    ALTER TABLE reset_tokens ADD CONSTRAINT uk_reset_tokens_token_hash UNIQUE (token_hash);
+    ALTER TABLE reset_tokens DROP COLUMN token;
+END $$;
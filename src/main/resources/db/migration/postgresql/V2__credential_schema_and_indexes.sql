@@ -0,0 +1,69 @@
+-- Defines the credential schema and the indexes behind every repository query. Tables that Hibernate
+-- already created are kept; duplicate per-user rows are collapsed to the newest one before the per-user
+-- unique indexes are built.
+--
+--   passwords       findByUserId / deleteByUserId                -> uk_passwords_user_id
+--   passcodes       findByUserId / deleteByUserId                -> uk_passcodes_user_id
+--                   deleteAllByExpiryDateBefore                  -> idx_passcodes_expiry_date
+--   reset_tokens    findByTokenHash                              -> uk_reset_tokens_token_hash
+--                   findByUserId / deleteByUserId                -> uk_reset_tokens_user_id
+--                   deleteAllByExpiryDateBefore                  -> idx_reset_tokens_expiry_date
+--   refresh_tokens  findByIdAndUserId / rotateToken              -> primary key
+--                   deleteByUserId                               -> idx_refresh_tokens_user_id
+--                   deleteAllByExpiryDateBefore                  -> idx_refresh_tokens_expiry_date
+
+CREATE TABLE IF NOT EXISTS passwords (
+    id                UUID                        NOT NULL PRIMARY KEY,
+    user_id           UUID                        NOT NULL,
+    password_hash     VARCHAR(255)                NOT NULL,
+    incorrect_entries INTEGER                     NOT NULL DEFAULT 0,
+    last_updated      TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS passcodes (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    passcode    VARCHAR(255)                NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS reset_tokens (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    token_hash  VARCHAR(64)                 NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Partitioned schemas (db/partitioning) already have this table
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    id          UUID                        NOT NULL PRIMARY KEY,
+    user_id     UUID                        NOT NULL,
+    expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+DELETE FROM passwords p
+USING passwords newer
+WHERE p.user_id = newer.user_id
+  AND (p.last_updated, p.id) < (newer.last_updated, newer.id);
+
+DELETE FROM passcodes p
+USING passcodes newer
+WHERE p.user_id = newer.user_id
+  AND (p.expiry_date, p.id) < (newer.expiry_date, newer.id);
+
+DELETE FROM reset_tokens t
+USING reset_tokens newer
+WHERE t.user_id = newer.user_id
+  AND (t.expiry_date, t.id) < (newer.expiry_date, newer.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_passwords_user_id ON passwords (user_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_passcodes_user_id ON passcodes (user_id);
+CREATE INDEX IF NOT EXISTS idx_passcodes_expiry_date ON passcodes (expiry_date);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_reset_tokens_token_hash ON reset_tokens (token_hash);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_reset_tokens_user_id ON reset_tokens (user_id);
+CREATE INDEX IF NOT EXISTS idx_reset_tokens_expiry_date ON reset_tokens (expiry_date);
+
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_user_id ON refresh_tokens (user_id);
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_expiry_date ON refresh_tokens (expiry_date);
@@ -0,0 +1,19 @@
+-- Local read model of the users service data that login, refresh, forgot-password and passcode flows need.
+-- Rows are seeded from create-credentials (user_id, email, first_name) and filled in from the users service
+-- on user-changed events and resyncs; synced_at is NULL until then, and such rows are not served.
+--
+--   user_auth_projection  findByUserId / save / markUnsynced / delete  -> primary key
+--                         findByEmail                                  -> uk_user_auth_projection_email
+
+CREATE TABLE IF NOT EXISTS user_auth_projection (
+    user_id     UUID                        NOT NULL PRIMARY KEY,
+    email       VARCHAR(255)                NOT NULL,
+    first_name  VARCHAR(255)                NOT NULL,
+    last_name   VARCHAR(255),
+    status      VARCHAR(32),
+    roles       VARCHAR(255),  -- comma-separated UserRole names
+    authorities VARCHAR(1024), -- comma-separated UserAuthority names
+    synced_at   TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_user_auth_projection_email ON user_auth_projection (email);
@@ -0,0 +1,7 @@
+-- Verification attempts are counted on the Passcode row, so every instance draws from the same budget.
+-- PasscodeRepository.acquireAttempt takes one with a single conditional UPDATE; reissuing the Passcode
+-- (upsertPasscode) starts the count again from zero.
+--
+--   passcodes  acquireAttempt / findAttempts  -> uk_passcodes_user_id
+
+ALTER TABLE passcodes ADD COLUMN IF NOT EXISTS attempts INTEGER NOT NULL DEFAULT 0;
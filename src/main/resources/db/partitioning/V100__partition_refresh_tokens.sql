@@ -0,0 +1,55 @@
+-- Converts refresh_tokens into a table range-partitioned by expiry_date, with one partition per UTC day.
+-- Only applied by the 'partitioned' profile. Future partitions are created by RefreshTokenPartitionService,
+-- and expired ones are detached and dropped instead of being deleted row by row.
+
+DO $$
+DECLARE
+    today DATE := (now() AT TIME ZONE 'UTC')::DATE;
+    day DATE;
+BEGIN
+    IF EXISTS (
+        SELECT 1 FROM pg_partitioned_table pt
+        JOIN pg_class c ON c.oid = pt.partrelid
+        WHERE c.relname = 'refresh_tokens'
+    ) THEN
+        RETURN;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'refresh_tokens' AND relkind = 'r') THEN
+        ALTER TABLE refresh_tokens RENAME TO refresh_tokens_legacy;
+        ALTER INDEX IF EXISTS refresh_tokens_pkey RENAME TO refresh_tokens_legacy_pkey;
+        ALTER INDEX IF EXISTS idx_refresh_tokens_user_id RENAME TO idx_refresh_tokens_legacy_user_id;
+        ALTER INDEX IF EXISTS idx_refresh_tokens_expiry_date RENAME TO idx_refresh_tokens_legacy_expiry_date;
+    END IF;
+
+    -- The partition key has to be part of the primary key
+    CREATE TABLE refresh_tokens (
+        id          UUID                        NOT NULL,
+        user_id     UUID                        NOT NULL,
+        expiry_date TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+        PRIMARY KEY (id, expiry_date)
+    ) PARTITION BY RANGE (expiry_date);
+
+    CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens (user_id);
+
+    -- Refresh tokens live for 7 days, so cover today plus the following 8 days
+    FOR i IN 0..8 LOOP
+        day := today + i;
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF refresh_tokens FOR VALUES FROM (%L) TO (%L)',
+            'refresh_tokens_p' || to_char(day, 'YYYYMMDD'),
+            day::TIMESTAMP AT TIME ZONE 'UTC',
+            (day + 1)::TIMESTAMP AT TIME ZONE 'UTC'
+        );
+    END LOOP;
+
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'refresh_tokens_legacy') THEN
+        INSERT INTO refresh_tokens (id, user_id, expiry_date)
+        SELECT id, user_id, expiry_date
+        FROM refresh_tokens_legacy
+        WHERE expiry_date >= today::TIMESTAMP AT TIME ZONE 'UTC'
+          AND expiry_date < (today + 9)::TIMESTAMP AT TIME ZONE 'UTC';
+
+        DROP TABLE refresh_tokens_legacy;
+    END IF;
+END $$;
@@ -1,6 +1,15 @@
 package com.mariuszilinskas.vsp.auth.identity;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.ConsumedTokenSet;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasscodeAttemptLimiter;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer;
+import com.mariuszilinskas.vsp.auth.identity.cache.UserAccountMemo;
 import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
+import com.mariuszilinskas.vsp.auth.identity.config.ConnectionHoldTracker;
 import com.mariuszilinskas.vsp.auth.identity.config.FeignConfig;
 import com.mariuszilinskas.vsp.auth.identity.config.RabbitMQConfig;
 import com.mariuszilinskas.vsp.auth.identity.consumer.RabbitMQConsumer;
@@ -8,11 +17,16 @@ import com.mariuszilinskas.vsp.auth.identity.controller.AuthController;
 import com.mariuszilinskas.vsp.auth.identity.controller.PasscodeController;
 import com.mariuszilinskas.vsp.auth.identity.controller.PasswordController;
 import com.mariuszilinskas.vsp.auth.identity.controller.DataDeletionController;
+import com.mariuszilinskas.vsp.auth.identity.controller.UserProjectionController;
 import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import com.mariuszilinskas.vsp.auth.identity.repository.AdvisoryLockRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasswordRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.ResetTokenRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository;
 import com.mariuszilinskas.vsp.auth.identity.service.*;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +46,9 @@ class IdentityServiceApplicationTests {
     @Autowired
     private AuthServiceImpl authService;
 
+    @Autowired
+    private CredentialReaperServiceImpl credentialReaperService;
+
     @Autowired
     private DataDeletionServiceImpl dataDeletionService;
 
@@ -47,6 +64,9 @@ class IdentityServiceApplicationTests {
     @Autowired
     private RefreshTokenServiceImpl refreshTokenService;
 
+    @Autowired
+    private RefreshTokenPartitionServiceImpl refreshTokenPartitionService;
+
     @Autowired
     private ResetTokenServiceImpl resetTokenService;
 
@@ -56,8 +76,17 @@ class IdentityServiceApplicationTests {
     @Autowired
     private UserServiceImpl userService;
 
+    @Autowired
+    private UserProjectionServiceImpl userProjectionService;
+
     // ---------------------- Repositories --------------------------
 
+    @Autowired
+    private AdvisoryLockRepository advisoryLockRepository;
+
+    @Autowired
+    private CredentialLookupRepository credentialLookupRepository;
+
     @Autowired
     private PasscodeRepository passcodeRepository;
 
@@ -70,6 +99,12 @@ class IdentityServiceApplicationTests {
     @Autowired
     private ResetTokenRepository resetTokenRepository;
 
+    @Autowired
+    private UserAuthDataRepository userAuthDataRepository;
+
+    @Autowired
+    private UserProjectionRepository userProjectionRepository;
+
     // ----------------------- Controllers --------------------------
 
     @Autowired
@@ -84,6 +119,9 @@ class IdentityServiceApplicationTests {
     @Autowired
     private PasswordController passwordController;
 
+    @Autowired
+    private UserProjectionController userProjectionController;
+
     // ------------------------- Other ------------------------------
 
     @Autowired
@@ -104,6 +142,33 @@ class IdentityServiceApplicationTests {
     @Autowired
     private RabbitMQConsumer rabbitMQConsumer;
 
+    @Autowired
+    private EphemeralCredentialStore ephemeralCredentialStore;
+
+    @Autowired
+    private PasscodeAttemptLimiter passcodeAttemptLimiter;
+
+    @Autowired
+    private ResendCoalescer resendCoalescer;
+
+    @Autowired
+    private ConsumedTokenSet consumedTokenSet;
+
+    @Autowired
+    private ConnectionHoldTracker connectionHoldTracker;
+
+    @Autowired
+    private PasswordHashCache passwordHashCache;
+
+    @Autowired
+    private AuthDetailsCache authDetailsCache;
+
+    @Autowired
+    private UsersServiceGuard usersServiceGuard;
+
+    @Autowired
+    private UserAccountMemo userAccountMemo;
+
     // --------------------------------------------------------------
 
     @Test
@@ -117,6 +182,11 @@ class IdentityServiceApplicationTests {
         assertNotNull(authService, "Auth Service should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void credentialReaperServiceBeanLoads() {
+        assertNotNull(credentialReaperService, "Credential Reaper Service should have been auto-wired by Spring Context");
+    }
+
     @Test
     void dataDeletionServiceBeanLoads() {
         assertNotNull(dataDeletionService, "Data Deletion Service should have been auto-wired by Spring Context");
@@ -142,6 +212,11 @@ class IdentityServiceApplicationTests {
         assertNotNull(refreshTokenService, "Refresh Token Service should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void refreshTokenPartitionServiceBeanLoads() {
+        assertNotNull(refreshTokenPartitionService, "Refresh Token Partition Service should have been auto-wired by Spring Context");
+    }
+
     @Test
     void resetTokenServiceBeanLoads() {
         assertNotNull(resetTokenService, "Reset Token Service should have been auto-wired by Spring Context");
@@ -157,8 +232,23 @@ class IdentityServiceApplicationTests {
         assertNotNull(userService, "User Service should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void userProjectionServiceBeanLoads() {
+        assertNotNull(userProjectionService, "User Projection Service should have been auto-wired by Spring Context");
+    }
+
     // ---------------------- Repositories --------------------------
 
+    @Test
+    void advisoryLockRepositoryBeanLoads() {
+        assertNotNull(advisoryLockRepository, "Advisory Lock Repository should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void credentialLookupRepositoryBeanLoads() {
+        assertNotNull(credentialLookupRepository, "Credential Lookup Repository should have been auto-wired by Spring Context");
+    }
+
     @Test
     void passcodeRepositoryBeanLoads() {
         assertNotNull(passcodeRepository, "Passcode Repository should have been auto-wired by Spring Context");
@@ -179,6 +269,16 @@ class IdentityServiceApplicationTests {
         assertNotNull(resetTokenRepository, "Reset Token Repository should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void userAuthDataRepositoryBeanLoads() {
+        assertNotNull(userAuthDataRepository, "User Auth Data Repository should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void userProjectionRepositoryBeanLoads() {
+        assertNotNull(userProjectionRepository, "User Projection Repository should have been auto-wired by Spring Context");
+    }
+
     // ----------------------- Controllers --------------------------
 
     @Test
@@ -201,6 +301,11 @@ class IdentityServiceApplicationTests {
         assertNotNull(passwordController, "Password Controller should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void userProjectionControllerBeanLoads() {
+        assertNotNull(userProjectionController, "User Projection Controller should have been auto-wired by Spring Context");
+    }
+
     // ------------------------- Other ------------------------------
 
     @Test
@@ -233,4 +338,49 @@ class IdentityServiceApplicationTests {
         assertNotNull(rabbitMQConsumer, "RabbitMQ Consumer should have been auto-wired by Spring Context");
     }
 
+    @Test
+    void ephemeralCredentialStoreBeanLoads() {
+        assertNotNull(ephemeralCredentialStore, "Ephemeral Credential Store should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void passcodeAttemptLimiterBeanLoads() {
+        assertNotNull(passcodeAttemptLimiter, "Passcode Attempt Limiter should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void resendCoalescerBeanLoads() {
+        assertNotNull(resendCoalescer, "Resend Coalescer should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void consumedTokenSetBeanLoads() {
+        assertNotNull(consumedTokenSet, "Consumed Token Set should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void connectionHoldTrackerBeanLoads() {
+        assertNotNull(connectionHoldTracker, "Connection Hold Tracker should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void passwordHashCacheBeanLoads() {
+        assertNotNull(passwordHashCache, "Password Hash Cache should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void authDetailsCacheBeanLoads() {
+        assertNotNull(authDetailsCache, "Auth Details Cache should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void usersServiceGuardBeanLoads() {
+        assertNotNull(usersServiceGuard, "Users Service Guard should have been auto-wired by Spring Context");
+    }
+
+    @Test
+    void userAccountMemoBeanLoads() {
+        assertNotNull(userAccountMemo, "User Account Memo should have been auto-wired by Spring Context");
+    }
+
 }
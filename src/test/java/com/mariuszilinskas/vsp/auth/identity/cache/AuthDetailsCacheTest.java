@@ -0,0 +1,281 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AuthDetailsCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RabbitMQProducer rabbitMQProducer = mock(RabbitMQProducer.class);
+    private final AuthDetailsCache authDetailsCache = new AuthDetailsCache(rabbitMQProducer, meterRegistry);
+    private final UUID userId = UUID.randomUUID();
+    private final String email = "user@email.com";
+    private final AuthDetails active = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
+    private final AuthDetails suspended = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.SUSPENDED);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateField(authDetailsCache, "enabled", true);
+        setPrivateField(authDetailsCache, "ttlMillis", 60_000L);
+        setPrivateField(authDetailsCache, "staleTtlMillis", 60_000L);
+        setPrivateField(authDetailsCache, "unknownEmailTtlMillis", 60_000L);
+        setPrivateField(authDetailsCache, "maxEntries", 10);
+        setPrivateField(authDetailsCache, "maxStaleEntries", 10);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private Optional<AuthDetails> load(AuthDetails authDetails) {
+        loads.incrementAndGet();
+        return Optional.ofNullable(authDetails);
+    }
+
+    private double gets(String lookup, String result) {
+        return meterRegistry.counter("identity.auth-details.cache.gets", "lookup", lookup, "result", result).count();
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testGetByEmail_RepeatLookupIsServedFromCache() {
+        // Act
+        authDetailsCache.getByEmail(email, key -> load(active));
+        Optional<AuthDetails> result = authDetailsCache.getByEmail(email, key -> load(suspended));
+
+        // Assert
+        assertEquals(Optional.of(active), result);
+        assertEquals(1, loads.get());
+        assertEquals(1, gets("email", "hit"));
+        assertEquals(1, gets("email", "miss"));
+        assertEquals(1, meterRegistry.get("identity.auth-details.cache.staleness").timer().count());
+    }
+
+    @Test
+    void testGetByEmail_AlsoCachesByUserId() {
+        // Arrange
+        authDetailsCache.getByEmail(email, key -> load(active));
+
+        // Act
+        Optional<AuthDetails> result = authDetailsCache.getByUserId(userId, key -> load(suspended));
+
+        // Assert
+        assertEquals(Optional.of(active), result);
+        assertEquals(1, gets("user_id", "hit"));
+    }
+
+    @Test
+    void testGetByEmail_UnknownEmailIsCached() {
+        // Act
+        authDetailsCache.getByEmail(email, key -> load(null));
+        Optional<AuthDetails> result = authDetailsCache.getByEmail(email, key -> load(active));
+
+        // Assert
+        assertTrue(result.isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testInvalidateEmail_DropsUnknownEmail() {
+        // Arrange
+        authDetailsCache.getByEmail(email, key -> load(null));
+
+        // Act
+        authDetailsCache.invalidateEmail(email);
+        Optional<AuthDetails> result = authDetailsCache.getByEmail(email, key -> load(active));
+
+        // Assert
+        assertEquals(Optional.of(active), result);
+    }
+
+    @Test
+    void testInvalidateEmail_BroadcastsInvalidation() {
+        // Act
+        authDetailsCache.invalidateEmail(email);
+
+        // Assert
+        verify(rabbitMQProducer, times(1)).sendEmailRegisteredMessage(email);
+    }
+
+    @Test
+    void testInvalidateEmail_BroadcastFailureStillEvictsLocally() {
+        // Arrange
+        authDetailsCache.getByEmail(email, key -> load(null));
+        doThrow(new AmqpException("Broker unavailable")).when(rabbitMQProducer).sendEmailRegisteredMessage(email);
+
+        // Act
+        assertDoesNotThrow(() -> authDetailsCache.invalidateEmail(email));
+
+        // Assert
+        assertEquals(Optional.of(active), authDetailsCache.getByEmail(email, key -> load(active)));
+    }
+
+    @Test
+    void testEvictEmail_DoesNotBroadcast() {
+        // Arrange
+        authDetailsCache.getByEmail(email, key -> load(null));
+
+        // Act
+        authDetailsCache.evictEmail(email);
+
+        // Assert
+        assertEquals(Optional.of(active), authDetailsCache.getByEmail(email, key -> load(active)));
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testGetByUserId_UnknownUserIsNotCached() {
+        // Act
+        authDetailsCache.getByUserId(userId, key -> load(null));
+        Optional<AuthDetails> result = authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Assert
+        assertEquals(Optional.of(active), result);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testInvalidate_DropsEntriesByUserIdAndEmail() {
+        // Arrange
+        authDetailsCache.getByEmail(email, key -> load(active));
+
+        // Act
+        authDetailsCache.invalidate(userId);
+
+        // Assert
+        assertEquals(Optional.of(suspended), authDetailsCache.getByEmail(email, key -> load(suspended)));
+        assertEquals(Optional.of(suspended), authDetailsCache.getByUserId(userId, key -> load(suspended)));
+        assertEquals(1, meterRegistry.counter("identity.auth-details.cache.invalidations").count());
+    }
+
+    @Test
+    void testInvalidate_DropsEntryForEveryEmailSpelling() {
+        // Arrange
+        authDetailsCache.getByEmail("Foo@Email.com", key -> load(active));
+        authDetailsCache.getByEmail(" foo@email.com", key -> load(active));
+
+        // Act
+        authDetailsCache.invalidate(userId);
+
+        // Assert
+        assertEquals(Optional.of(suspended), authDetailsCache.getByEmail("foo@email.com", key -> load(suspended)));
+        assertEquals(Optional.of(suspended), authDetailsCache.getByEmail("FOO@email.com", key -> load(suspended)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testInvalidate_DuringLoadIsNotCached() {
+        // Act
+        authDetailsCache.getByUserId(userId, key -> {
+            authDetailsCache.invalidate(key);
+            return load(active);
+        });
+        Optional<AuthDetails> result = authDetailsCache.getByUserId(userId, key -> load(suspended));
+
+        // Assert
+        assertEquals(Optional.of(suspended), result);
+    }
+
+    @Test
+    void testGetStaleByUserId_InvalidatedEntryIsNotServed() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "ttlMillis", 0L);
+        authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Act
+        authDetailsCache.invalidate(userId);
+        Optional<AuthDetails> stale = authDetailsCache.getStaleByUserId(userId);
+
+        // Assert
+        assertTrue(stale.isEmpty());
+    }
+
+    @Test
+    void testGetStaleByUserId_ServesExpiredEntry() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "ttlMillis", 0L);
+        authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Act
+        Optional<AuthDetails> reloaded = authDetailsCache.getByUserId(userId, key -> load(suspended));
+        Optional<AuthDetails> stale = authDetailsCache.getStaleByUserId(userId);
+
+        // Assert
+        assertEquals(Optional.of(suspended), reloaded);
+        assertEquals(Optional.of(suspended), stale);
+        assertEquals(0, gets("user_id", "hit"));
+        assertEquals(1, meterRegistry.counter("identity.auth-details.cache.stale.served").count());
+    }
+
+    @Test
+    void testGetByUserId_ExpiredEntryIsEvicted() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "ttlMillis", 0L);
+        setPrivateField(authDetailsCache, "staleTtlMillis", 0L);
+        authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Act
+        Optional<AuthDetails> stale = authDetailsCache.getStaleByUserId(userId);
+
+        // Assert
+        assertTrue(stale.isEmpty());
+        assertEquals(0, meterRegistry.get("identity.auth-details.cache.size").gauge().value());
+    }
+
+    @Test
+    void testGetStaleByUserId_StaleCopiesAreBoundedApart() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "ttlMillis", 0L);
+        setPrivateField(authDetailsCache, "staleTtlMillis", 60_000L);
+        setPrivateField(authDetailsCache, "maxEntries", 1);
+        setPrivateField(authDetailsCache, "maxStaleEntries", 0);
+        authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Act
+        Optional<AuthDetails> stale = authDetailsCache.getStaleByUserId(userId);
+        Optional<AuthDetails> reloaded = authDetailsCache.getByUserId(userId, key -> load(suspended));
+
+        // Assert
+        assertTrue(stale.isEmpty());
+        assertEquals(Optional.of(suspended), reloaded);
+        assertEquals(0, meterRegistry.get("identity.auth-details.cache.stale.size").gauge().value());
+    }
+
+    @Test
+    void testGetByUserId_Disabled() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "enabled", false);
+
+        // Act
+        authDetailsCache.getByUserId(userId, key -> load(active));
+        authDetailsCache.getByUserId(userId, key -> load(active));
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(0, gets("user_id", "miss"));
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringMapTest {
+
+    private static final long TICK_MILLIS = 1000;
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private final ExpiringMap<String, String> expiringMap = new ExpiringMap<>(TICK_MILLIS, clock::get);
+
+    // ------------------------------------
+
+    @Test
+    void testGet_BeforeExpiry() {
+        // Arrange
+        expiringMap.put("key", "value", 5000);
+        clock.addAndGet(4999);
+
+        // Act & Assert
+        assertEquals("value", expiringMap.get("key"));
+    }
+
+    @Test
+    void testGet_AfterExpiryWithoutEviction() {
+        // Arrange
+        expiringMap.put("key", "value", 5000);
+        clock.addAndGet(5000);
+
+        // Act & Assert
+        assertNull(expiringMap.get("key"));
+        assertEquals(0, expiringMap.size());
+    }
+
+    @Test
+    void testPut_ReplacesEntryAndTtl() {
+        // Arrange
+        expiringMap.put("key", "first", 1000);
+        expiringMap.put("key", "second", 10_000);
+        clock.addAndGet(5000);
+
+        // Act
+        expiringMap.expireEntries();
+
+        // Assert
+        assertEquals("second", expiringMap.get("key"));
+    }
+
+    @Test
+    void testRemove_ConditionalOnValue() {
+        // Arrange
+        expiringMap.put("key", "value", 5000);
+
+        // Act & Assert
+        assertFalse(expiringMap.remove("key", "other"));
+        assertTrue(expiringMap.remove("key", "value"));
+        assertNull(expiringMap.get("key"));
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testExpireEntries_EvictsOnlyOverdueEntries() {
+        // Arrange
+        expiringMap.put("short", "value", 2000);
+        expiringMap.put("long", "value", 60_000);
+        clock.addAndGet(3000);
+
+        // Act
+        expiringMap.expireEntries();
+
+        // Assert
+        assertEquals(1, expiringMap.size());
+        assertEquals("value", expiringMap.get("long"));
+    }
+
+    @Test
+    void testExpireEntries_CascadesAcrossWheelLevels() {
+        // Arrange
+        long[] ttls = {900_000, 3_600_000, 7 * 24 * 3_600_000L, 400L * 24 * 3_600_000L};
+        for (int i = 0; i < ttls.length; i++)
+            expiringMap.put("key" + i, "value", ttls[i]);
+
+        for (int i = 0; i < ttls.length; i++) {
+            // Act
+            clock.set(clock.get() + (i == 0 ? ttls[0] : ttls[i] - ttls[i - 1]) - TICK_MILLIS);
+            expiringMap.expireEntries();
+
+            // Assert
+            assertEquals(ttls.length - i, expiringMap.size(), "entry evicted early: key" + i);
+
+            clock.addAndGet(TICK_MILLIS);
+            expiringMap.expireEntries();
+            assertEquals(ttls.length - i - 1, expiringMap.size(), "entry not evicted: key" + i);
+        }
+    }
+
+    @Test
+    void testExpireEntries_AfterLongIdle() {
+        // Arrange
+        expiringMap.put("key", "value", 1000);
+        clock.addAndGet(10 * 24 * 3_600_000L);
+
+        // Act
+        expiringMap.expireEntries();
+        expiringMap.put("other", "value", 1000);
+        clock.addAndGet(1000);
+        expiringMap.expireEntries();
+
+        // Assert
+        assertEquals(0, expiringMap.size());
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.exception.PasscodeAttemptsExceededException;
+import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PasscodeAttemptLimiterTest {
+
+    @Mock
+    private PasscodeRepository passcodeRepository;
+
+    @Mock
+    private EphemeralCredentialStore credentialStore;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasscodeAttemptLimiter passcodeAttemptLimiter;
+    private final UUID userId = UUID.randomUUID();
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        passcodeAttemptLimiter = new PasscodeAttemptLimiter(passcodeRepository, credentialStore, meterRegistry);
+        setPrivateField(passcodeAttemptLimiter, "maxAttempts", 3);
+        setPrivateField(passcodeAttemptLimiter, "lockoutMemoMillis", 60_000L);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private void failAttempt(UUID userId) {
+        passcodeAttemptLimiter.recordFailedAttempt(userId, passcodeAttemptLimiter.acquireAttempt(userId));
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testAcquireAttempt_InMemory_BelowLimit() {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        failAttempt(userId);
+        failAttempt(userId);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> passcodeAttemptLimiter.acquireAttempt(userId));
+        assertEquals(0, meterRegistry.counter("identity.passcode.lockouts").count());
+
+        verifyNoInteractions(passcodeRepository);
+    }
+
+    @Test
+    void testAcquireAttempt_InMemory_LimitReached() {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        for (int i = 0; i < 3; i++)
+            failAttempt(userId);
+
+        // Act & Assert
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeAttemptLimiter.checkNotLockedOut(userId));
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeAttemptLimiter.acquireAttempt(userId));
+        assertDoesNotThrow(() -> passcodeAttemptLimiter.acquireAttempt(UUID.randomUUID()));
+
+        assertEquals(1, meterRegistry.counter("identity.passcode.lockouts").count());
+        assertEquals(2, meterRegistry.counter("identity.passcode.attempts.rejected").count());
+    }
+
+    @Test
+    void testAcquireAttempt_InMemory_ConcurrentAttemptsShareLimit() throws Exception {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Boolean>> attempts = new ArrayList<>();
+        for (int i = 0; i < 32; i++)
+            attempts.add(() -> {
+                try {
+                    passcodeAttemptLimiter.acquireAttempt(userId);
+                    return true;
+                } catch (PasscodeAttemptsExceededException ex) {
+                    return false;
+                }
+            });
+
+        // Act
+        int granted = 0;
+        try {
+            for (Future<Boolean> attempt : executor.invokeAll(attempts))
+                if (attempt.get()) granted++;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(3, granted);
+        assertEquals(29, meterRegistry.counter("identity.passcode.attempts.rejected").count());
+    }
+
+    @Test
+    void testReset_InMemory_ClearsLockout() {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        for (int i = 0; i < 3; i++)
+            failAttempt(userId);
+
+        // Act
+        passcodeAttemptLimiter.reset(userId);
+
+        // Assert
+        assertDoesNotThrow(() -> passcodeAttemptLimiter.acquireAttempt(userId));
+    }
+
+    @Test
+    void testAcquireAttempt_Database_AttemptTaken() {
+        // Arrange
+        when(passcodeRepository.acquireAttempt(userId, 3)).thenReturn(Optional.of(2));
+
+        // Act
+        int attempt = passcodeAttemptLimiter.acquireAttempt(userId);
+
+        // Assert
+        assertEquals(2, attempt);
+        verify(passcodeRepository, times(1)).acquireAttempt(userId, 3);
+    }
+
+    @Test
+    void testAcquireAttempt_Database_NoAttemptsLeftIsRemembered() {
+        // Arrange
+        when(passcodeRepository.acquireAttempt(userId, 3)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeAttemptLimiter.acquireAttempt(userId));
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeAttemptLimiter.checkNotLockedOut(userId));
+
+        verify(passcodeRepository, times(1)).acquireAttempt(userId, 3);
+        assertEquals(2, meterRegistry.counter("identity.passcode.attempts.rejected").count());
+    }
+
+    @Test
+    void testRecordFailedAttempt_Database_LastAttemptLocksOut() {
+        // Act
+        passcodeAttemptLimiter.recordFailedAttempt(userId, 2);
+        assertDoesNotThrow(() -> passcodeAttemptLimiter.checkNotLockedOut(userId));
+        passcodeAttemptLimiter.recordFailedAttempt(userId, 3);
+
+        // Assert
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeAttemptLimiter.checkNotLockedOut(userId));
+        assertEquals(1, meterRegistry.counter("identity.passcode.lockouts").count());
+        verifyNoInteractions(passcodeRepository);
+    }
+
+    @Test
+    void testReset_Database_ClearsRememberedLockout() {
+        // Arrange
+        passcodeAttemptLimiter.recordFailedAttempt(userId, 3);
+
+        // Act
+        passcodeAttemptLimiter.reset(userId);
+
+        // Assert
+        assertDoesNotThrow(() -> passcodeAttemptLimiter.checkNotLockedOut(userId));
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Field;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PasswordHashCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RabbitMQProducer rabbitMQProducer = mock(RabbitMQProducer.class);
+    private final PasswordHashCache passwordHashCache = new PasswordHashCache(rabbitMQProducer, meterRegistry);
+    private final UUID userId = UUID.randomUUID();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateField(passwordHashCache, "enabled", true);
+        setPrivateField(passwordHashCache, "ttlMillis", 60_000L);
+        setPrivateField(passwordHashCache, "maxEntries", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private Optional<String> load(UUID userId) {
+        loads.incrementAndGet();
+        return Optional.of("hash" + loads.get());
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("identity.password.cache.gets", "result", result).count();
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testGet_RepeatLookupIsServedFromCache() {
+        // Act
+        Optional<String> first = passwordHashCache.get(userId, this::load);
+        Optional<String> second = passwordHashCache.get(userId, this::load);
+
+        // Assert
+        assertEquals(Optional.of("hash1"), first);
+        assertEquals(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    @Test
+    void testGet_MissingPasswordIsNotCached() {
+        // Act
+        passwordHashCache.get(userId, id -> Optional.empty());
+        Optional<String> passwordHash = passwordHashCache.get(userId, this::load);
+
+        // Assert
+        assertEquals(Optional.of("hash1"), passwordHash);
+        assertEquals(2, gets("miss"));
+    }
+
+    @Test
+    void testInvalidate_NextLookupReloads() {
+        // Arrange
+        passwordHashCache.get(userId, this::load);
+
+        // Act
+        passwordHashCache.invalidate(userId);
+        Optional<String> passwordHash = passwordHashCache.get(userId, this::load);
+
+        // Assert
+        assertEquals(Optional.of("hash2"), passwordHash);
+    }
+
+    @Test
+    void testInvalidate_DuringLoadIsNotCached() {
+        // Act
+        passwordHashCache.get(userId, id -> {
+            passwordHashCache.invalidate(id);
+            return Optional.of("stale");
+        });
+        Optional<String> passwordHash = passwordHashCache.get(userId, this::load);
+
+        // Assert
+        assertEquals(Optional.of("hash1"), passwordHash);
+    }
+
+    @Test
+    void testInvalidate_EvictsAgainAfterTransaction() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        passwordHashCache.invalidate(userId);
+        passwordHashCache.get(userId, id -> Optional.of("readBeforeCommit"));
+
+        // Act
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        // Assert
+        assertEquals(Optional.of("hash1"), passwordHashCache.get(userId, this::load));
+    }
+
+    @Test
+    void testInvalidate_BroadcastOnlyAfterTransaction() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        passwordHashCache.invalidate(userId);
+        verify(rabbitMQProducer, never()).sendPasswordChangedMessage(userId);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        // Assert
+        verify(rabbitMQProducer, times(1)).sendPasswordChangedMessage(userId);
+    }
+
+    @Test
+    void testInvalidate_BroadcastFailureIsNotThrown() {
+        // Arrange
+        doThrow(new AmqpConnectException(new RuntimeException("Connection refused")))
+                .when(rabbitMQProducer).sendPasswordChangedMessage(userId);
+        passwordHashCache.get(userId, this::load);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> passwordHashCache.invalidate(userId));
+        assertEquals(Optional.of("hash2"), passwordHashCache.get(userId, this::load));
+    }
+
+    @Test
+    void testEvict_DropsEntryWithoutBroadcast() {
+        // Arrange
+        passwordHashCache.get(userId, this::load);
+
+        // Act
+        passwordHashCache.evict(userId);
+
+        // Assert
+        assertEquals(Optional.of("hash2"), passwordHashCache.get(userId, this::load));
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testGet_Disabled() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(passwordHashCache, "enabled", false);
+
+        // Act
+        passwordHashCache.get(userId, this::load);
+        passwordHashCache.get(userId, this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(0, gets("miss"));
+    }
+
+    @Test
+    void testInvalidate_DisabledIsNotBroadcast() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(passwordHashCache, "enabled", false);
+
+        // Act
+        passwordHashCache.invalidate(userId);
+
+        // Assert
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+}
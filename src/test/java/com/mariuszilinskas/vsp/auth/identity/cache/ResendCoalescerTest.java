@@ -0,0 +1,80 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer.ResendType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResendCoalescerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResendCoalescer resendCoalescer = new ResendCoalescer(meterRegistry);
+    private final UUID userId = UUID.randomUUID();
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateField(resendCoalescer, "windowMillis", 60_000L);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private double suppressedCount(String type) {
+        return meterRegistry.get("identity.resend.suppressed").tag("type", type).counter().count();
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testTryAcquire_SuppressesRepeatedRequests() {
+        // Act & Assert
+        assertTrue(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId));
+        assertFalse(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId));
+        assertFalse(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId));
+        assertTrue(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, userId));
+
+        assertEquals(2, suppressedCount("passcode"));
+        assertEquals(0, suppressedCount("reset_password"));
+    }
+
+    @Test
+    void testTryAcquire_NormalisesEmail() {
+        // Act & Assert
+        assertTrue(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, "User@Email.com"));
+        assertFalse(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, " user@email.com"));
+    }
+
+    @Test
+    void testMarkSent_SuppressesFollowingRequest() {
+        // Arrange
+        resendCoalescer.markSent(ResendType.PASSCODE, userId);
+
+        // Act & Assert
+        assertFalse(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId));
+    }
+
+    @Test
+    void testRelease_AllowsRetry() {
+        // Arrange
+        resendCoalescer.tryAcquire(ResendType.PASSCODE, userId);
+
+        // Act
+        resendCoalescer.release(ResendType.PASSCODE, userId);
+
+        // Assert
+        assertTrue(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId));
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final Counter coalescedCalls = new SimpleMeterRegistry().counter("coalesced");
+    private final SingleFlight<String, String> singleFlight =
+            new SingleFlight<>(coalescedCalls, Duration.ofSeconds(5), UsersServiceUnavailableException::new);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch callStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseCall = new CountDownLatch(1);
+
+    // ------------------------------------
+
+    private String blockingCall(String result) {
+        calls.incrementAndGet();
+        callStarted.countDown();
+        try {
+            assertTrue(releaseCall.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+        if (result == null) throw new IllegalStateException("users service unavailable");
+        return result;
+    }
+
+    private CompletableFuture<String> startCall(String key, String result) {
+        return CompletableFuture.supplyAsync(() -> singleFlight.execute(key, () -> blockingCall(result)));
+    }
+
+    private void awaitCoalesced(int expected) {
+        while (coalescedCalls.count() < expected) Thread.onSpinWait();
+    }
+
+    // ------------------------------------
+
+    @Test
+    @Timeout(10)
+    void testExecute_ConcurrentCallersShareOneCall() throws Exception {
+        // Act
+        var first = startCall("key", "result");
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+        var second = startCall("key", "other");
+        var third = startCall("key", "other");
+        awaitCoalesced(2);
+        releaseCall.countDown();
+
+        // Assert
+        assertEquals("result", first.get());
+        assertEquals("result", second.get());
+        assertEquals("result", third.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @Timeout(10)
+    void testExecute_ConcurrentCallersShareTheException() throws Exception {
+        // Act
+        var first = startCall("key", null);
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+        var second = startCall("key", "other");
+        awaitCoalesced(1);
+        releaseCall.countDown();
+
+        // Assert
+        ExecutionException firstFailure = assertThrows(ExecutionException.class, first::get);
+        ExecutionException secondFailure = assertThrows(ExecutionException.class, second::get);
+        assertInstanceOf(IllegalStateException.class, firstFailure.getCause());
+        assertSame(firstFailure.getCause(), secondFailure.getCause());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    @Timeout(10)
+    void testExecute_WaiterGivesUpAfterMaxWait() throws Exception {
+        // Arrange
+        var boundedFlight = new SingleFlight<String, String>(
+                coalescedCalls, Duration.ofMillis(50), UsersServiceUnavailableException::new);
+        var first = CompletableFuture.supplyAsync(() -> boundedFlight.execute("key", () -> blockingCall("result")));
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(UsersServiceUnavailableException.class, () -> boundedFlight.execute("key", () -> "other"));
+
+        releaseCall.countDown();
+        assertEquals("result", first.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testExecute_SequentialCallsAreNotCoalesced() {
+        // Act
+        String first = singleFlight.execute("key", () -> "first" + calls.incrementAndGet());
+        String second = singleFlight.execute("key", () -> "second" + calls.incrementAndGet());
+
+        // Assert
+        assertEquals("first1", first);
+        assertEquals("second2", second);
+        assertEquals(0, coalescedCalls.count());
+    }
+
+    @Test
+    void testExecute_FailedCallIsNotKept() {
+        // Act
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("users service unavailable");
+        }));
+        String result = singleFlight.execute("key", () -> "result");
+
+        // Assert
+        assertEquals("result", result);
+    }
+
+}
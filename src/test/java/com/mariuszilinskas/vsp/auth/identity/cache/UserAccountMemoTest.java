@@ -0,0 +1,157 @@
+package com.mariuszilinskas.vsp.auth.identity.cache;
+
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import com.mariuszilinskas.vsp.auth.identity.exception.UserRetrievalException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserAccountMemoTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserAccountMemo userAccountMemo = new UserAccountMemo(meterRegistry);
+
+    private final UUID userId = UUID.randomUUID();
+    private final String email = "user@email.com";
+    private final UserAccount account = new UserAccount(userId, List.of(UserRole.USER), List.of(),
+            UserStatus.ACTIVE, "firstName", "lastName", email);
+
+    // ------------------------------------
+
+    private <K, V> Function<K, V> counting(AtomicInteger calls, V value) {
+        return key -> {
+            calls.incrementAndGet();
+            return value;
+        };
+    }
+
+    private double hits() {
+        return meterRegistry.counter("identity.user-account.memo.hits").count();
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testGetByEmail_OutsideMemo() {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.getByEmail(email, counting(calls, account));
+        userAccountMemo.getByEmail(email, counting(calls, account));
+
+        // Assert
+        assertEquals(2, calls.get());
+        assertEquals(0, hits());
+    }
+
+    @Test
+    void testGetByEmail_LoadedOncePerMemo() {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.run(() -> {
+            assertEquals(account, userAccountMemo.getByEmail(email, counting(calls, account)));
+            assertEquals(account, userAccountMemo.getByEmail(email, counting(calls, account)));
+        });
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals(1, hits());
+    }
+
+    @Test
+    void testGetByUserId_ServedFromAccountLoadedByEmail() {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.run(() -> {
+            userAccountMemo.getByEmail(email, counting(calls, account));
+            assertEquals(account, userAccountMemo.getByUserId(userId, counting(calls, account)));
+            assertEquals(account.profile(), userAccountMemo.getProfile(userId, counting(calls, account.profile())));
+        });
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals(2, hits());
+    }
+
+    @Test
+    void testGetProfile_LoadedOncePerMemo() {
+        // Arrange
+        var calls = new AtomicInteger();
+        var profile = new UserResponse("firstName", "lastName", email);
+
+        // Act
+        userAccountMemo.run(() -> {
+            userAccountMemo.getProfile(userId, counting(calls, profile));
+            userAccountMemo.getProfile(userId, counting(calls, profile));
+        });
+
+        // Assert
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testGetByUserId_FailureNotRemembered() {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.run(() -> {
+            assertThrows(UserRetrievalException.class, () -> userAccountMemo.getByUserId(userId, key -> {
+                throw new UserRetrievalException();
+            }));
+            assertEquals(account, userAccountMemo.getByUserId(userId, counting(calls, account)));
+        });
+
+        // Assert
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testDoFilter_MemoClosedAfterRequest() throws Exception {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), (req, res) -> {
+            userAccountMemo.getByUserId(userId, counting(calls, account));
+            userAccountMemo.getByUserId(userId, counting(calls, account));
+        });
+        userAccountMemo.getByUserId(userId, counting(calls, account));
+
+        // Assert
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testRun_NestedRunSharesMemo() {
+        // Arrange
+        var calls = new AtomicInteger();
+
+        // Act
+        userAccountMemo.run(() -> {
+            userAccountMemo.getByUserId(userId, counting(calls, account));
+            userAccountMemo.run(() -> userAccountMemo.getByUserId(userId, counting(calls, account)));
+        });
+
+        // Assert
+        assertEquals(1, calls.get());
+    }
+
+}
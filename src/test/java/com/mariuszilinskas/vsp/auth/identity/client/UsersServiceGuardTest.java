@@ -0,0 +1,217 @@
+package com.mariuszilinskas.vsp.auth.identity.client;
+
+import com.mariuszilinskas.vsp.auth.identity.config.MethodTimeoutCapability;
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import feign.Feign;
+import feign.FeignException;
+import feign.Request;
+import feign.RetryableException;
+import feign.Retryer;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the users client against a local stub server with injected latency and status codes, through the
+ * per-method timeouts and the {@link UsersServiceGuard}.
+ */
+public class UsersServiceGuardTest {
+
+    private static final long AUTH_DETAILS_READ_TIMEOUT_MILLIS = 200;
+    private static final long USER_READ_TIMEOUT_MILLIS = 2000;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID userId = UUID.randomUUID();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch requestReceived = new CountDownLatch(1);
+    private volatile long latencyMillis;
+    private volatile int status = 200;
+
+    private HttpServer server;
+    private UserFeignClient userFeignClient;
+    private UsersServiceGuard usersServiceGuard;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/user", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        userFeignClient = Feign.builder()
+                .contract(new SpringMvcContract())
+                .encoder(new JacksonEncoder())
+                .decoder(new JacksonDecoder())
+                .retryer(Retryer.NEVER_RETRY)
+                .options(new Request.Options(1, TimeUnit.SECONDS, 5, TimeUnit.SECONDS, true))
+                .addCapability(new MethodTimeoutCapability(Map.of(
+                        "getUserAuthDetailsByUserId", AUTH_DETAILS_READ_TIMEOUT_MILLIS,
+                        "getUser", USER_READ_TIMEOUT_MILLIS)))
+                .target(UserFeignClient.class, "http://localhost:" + server.getAddress().getPort());
+
+        usersServiceGuard = new UsersServiceGuard(
+                CircuitBreakerConfig.custom()
+                        .slidingWindowSize(4)
+                        .minimumNumberOfCalls(2)
+                        .failureRateThreshold(50)
+                        .waitDurationInOpenState(Duration.ofMinutes(1))
+                        .build(),
+                BulkheadConfig.custom()
+                        .maxConcurrentCalls(1)
+                        .maxWaitDuration(Duration.ZERO)
+                        .build(),
+                meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        requestReceived.countDown();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        String body = exchange.getRequestURI().getPath().startsWith("/user/auth-details")
+                ? "{\"userId\":\"" + userId + "\",\"roles\":[\"USER\"],\"authorities\":[],\"status\":\"ACTIVE\"}"
+                : "{\"firstName\":\"firstName\",\"lastName\":\"lastName\",\"email\":\"user@email.com\"}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private AuthDetails getAuthDetails() {
+        return usersServiceGuard.call(() -> userFeignClient.getUserAuthDetailsByUserId(userId));
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.counter("identity.users.calls.rejected", "reason", reason).count();
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testCall_Success() {
+        // Act
+        AuthDetails authDetails = getAuthDetails();
+
+        // Assert
+        assertEquals(userId, authDetails.userId());
+        assertEquals(CircuitBreaker.State.CLOSED, usersServiceGuard.getCircuitState());
+    }
+
+    @Test
+    void testCall_ReadTimeoutIsPerMethod() {
+        // Arrange
+        latencyMillis = 500;
+
+        // Act & Assert
+        assertThrows(RetryableException.class, this::getAuthDetails);
+        UserResponse user = usersServiceGuard.call(() -> userFeignClient.getUser(userId));
+
+        // Assert
+        assertEquals("firstName", user.firstName());
+    }
+
+    @Test
+    void testCall_TimeoutsOpenTheCircuit() {
+        // Arrange
+        latencyMillis = 500;
+        assertThrows(RetryableException.class, this::getAuthDetails);
+        assertThrows(RetryableException.class, this::getAuthDetails);
+
+        // Act & Assert
+        assertThrows(UsersServiceUnavailableException.class, this::getAuthDetails);
+
+        // Assert
+        assertEquals(2, requests.get());
+        assertEquals(CircuitBreaker.State.OPEN, usersServiceGuard.getCircuitState());
+        assertEquals(1, rejections("circuit_open"));
+        assertEquals(1, meterRegistry.counter("identity.users.circuit.transitions",
+                "from", "closed", "to", "open").count());
+    }
+
+    @Test
+    void testCall_ServerErrorsOpenTheCircuit() {
+        // Arrange
+        status = 503;
+
+        // Act
+        assertThrows(FeignException.ServiceUnavailable.class, this::getAuthDetails);
+        assertThrows(FeignException.ServiceUnavailable.class, this::getAuthDetails);
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, usersServiceGuard.getCircuitState());
+    }
+
+    @Test
+    void testCall_ClientErrorsDoNotOpenTheCircuit() {
+        // Arrange
+        status = 404;
+
+        // Act
+        for (int i = 0; i < 4; i++)
+            assertThrows(FeignException.NotFound.class, this::getAuthDetails);
+
+        // Assert
+        assertEquals(CircuitBreaker.State.CLOSED, usersServiceGuard.getCircuitState());
+    }
+
+    @Test
+    @Timeout(10)
+    void testCall_BulkheadShedsExcessConcurrentCalls() throws Exception {
+        // Arrange
+        latencyMillis = 1000;
+        var inFlight = CompletableFuture.supplyAsync(
+                () -> usersServiceGuard.call(() -> userFeignClient.getUser(userId)));
+        assertTrue(requestReceived.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(UsersServiceUnavailableException.class, this::getAuthDetails);
+
+        // Assert
+        assertEquals("firstName", inFlight.get().firstName());
+        assertEquals(1, requests.get());
+        assertEquals(1, rejections("bulkhead_full"));
+        assertEquals(CircuitBreaker.State.CLOSED, usersServiceGuard.getCircuitState());
+    }
+
+}
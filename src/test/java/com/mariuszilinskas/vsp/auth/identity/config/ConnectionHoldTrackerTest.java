@@ -0,0 +1,87 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConnectionHoldTrackerTest {
+
+    @Mock
+    private DataSource pool;
+
+    @Mock
+    private Connection connection;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConnectionHoldTracker connectionHoldTracker = new ConnectionHoldTracker(meterRegistry);
+    private ConnectionHoldTrackingDataSource dataSource;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new ConnectionHoldTrackingDataSource(pool, () -> connectionHoldTracker);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testDoFilter_RecordsConnectionHoldPerRequest() throws Exception {
+        // Arrange
+        var request = new MockHttpServletRequest("POST", "/api/v1/auth/login");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/auth/login");
+        when(pool.getConnection()).thenReturn(connection);
+
+        // Act
+        connectionHoldTracker.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+                assertSame(connection, ((ConnectionProxy) first).getTargetConnection());
+                assertNotEquals(first, second);
+            }
+        });
+
+        // Assert
+        verify(connection, times(2)).close();
+        var timer = meterRegistry.get("identity.request.connection.hold")
+                .tag("method", "POST")
+                .tag("uri", "/api/v1/auth/login")
+                .timer();
+        assertEquals(1, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void testDoFilter_NoConnectionTaken() throws Exception {
+        // Act
+        connectionHoldTracker.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), (req, res) -> {});
+
+        // Assert
+        assertNull(meterRegistry.find("identity.request.connection.hold").timer());
+    }
+
+    @Test
+    void testGetConnection_OutsideRequest() throws Exception {
+        // Arrange
+        when(pool.getConnection()).thenReturn(connection);
+
+        // Act & Assert
+        assertSame(connection, dataSource.getConnection());
+    }
+
+}
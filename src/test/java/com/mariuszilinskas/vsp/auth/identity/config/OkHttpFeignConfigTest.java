@@ -0,0 +1,122 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OkHttpFeignConfigTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OkHttpFeignConfig okHttpFeignConfig = new OkHttpFeignConfig();
+
+    private HttpServer server;
+    private ConnectionPool connectionPool;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws Exception {
+        setPrivateField(okHttpFeignConfig, "maxIdleConnections", 5);
+        setPrivateField(okHttpFeignConfig, "keepAliveMillis", 60000L);
+        setPrivateField(okHttpFeignConfig, "http2Enabled", true);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        connectionPool = okHttpFeignConfig.feignConnectionPool(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.evictAll();
+        server.stop(0);
+    }
+
+    private void setPrivateField(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private Response get(feign.Client client) throws IOException {
+        var request = Request.create(Request.HttpMethod.GET,
+                "http://localhost:" + server.getAddress().getPort() + "/user", Map.of(), null,
+                StandardCharsets.UTF_8, null);
+        return client.execute(request, new Request.Options(1, TimeUnit.SECONDS, 1, TimeUnit.SECONDS, true));
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testFeignOkHttpClient_ReusesPooledConnection() throws IOException {
+        // Arrange
+        var client = new feign.okhttp.OkHttpClient(okHttpFeignConfig.feignOkHttpClient(connectionPool));
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            try (Response response = get(client)) {
+                response.body().asInputStream().readAllBytes();
+                assertEquals(200, response.status());
+            }
+        }
+
+        // Assert
+        assertEquals(1, connectionPool.connectionCount());
+    }
+
+    @Test
+    void testFeignOkHttpClient_Http2Enabled() {
+        // Act
+        OkHttpClient okHttpClient = okHttpFeignConfig.feignOkHttpClient(connectionPool);
+
+        // Assert
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), okHttpClient.protocols());
+        assertSame(connectionPool, okHttpClient.connectionPool());
+    }
+
+    @Test
+    void testFeignOkHttpClient_Http2Disabled() throws Exception {
+        // Arrange
+        setPrivateField(okHttpFeignConfig, "http2Enabled", false);
+
+        // Act
+        OkHttpClient okHttpClient = okHttpFeignConfig.feignOkHttpClient(connectionPool);
+
+        // Assert
+        assertEquals(List.of(Protocol.HTTP_1_1), okHttpClient.protocols());
+    }
+
+    @Test
+    void testFeignConnectionPool_RegistersPoolMetrics() {
+        // Assert
+        assertEquals(5, meterRegistry.get("okhttp.pool.connection.limit").tag("client", "feign").gauge().value());
+        assertNotNull(meterRegistry.find("okhttp.pool.connection.count").tag("state", "idle").gauge());
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import com.mariuszilinskas.vsp.auth.identity.config.PoolRoutingDataSource.Pool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PoolRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primaryDataSource;
+
+    @Mock
+    private DataSource replicaDataSource;
+
+    @Mock
+    private DataSource backgroundDataSource;
+
+    @Mock
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PoolRoutingDataSource routingDataSource;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        routingDataSource = new PoolRoutingDataSource(Map.of(
+                Pool.PRIMARY, primaryDataSource,
+                Pool.REPLICA, replicaDataSource,
+                Pool.BACKGROUND, backgroundDataSource
+        ), replicaLagMonitor, meterRegistry);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testDetermineCurrentLookupKey_ReadWriteTransaction() {
+        // Act
+        Object pool = routingDataSource.determineCurrentLookupKey();
+
+        // Assert
+        assertEquals(Pool.PRIMARY, pool);
+        verifyNoInteractions(replicaLagMonitor);
+        assertEquals(1, meterRegistry.counter("identity.datasource.connections.routed", "pool", "primary").count());
+    }
+
+    @Test
+    void testDetermineCurrentLookupKey_ReadOnlyTransaction() {
+        // Arrange
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(true);
+
+        // Act
+        Object pool = routingDataSource.determineCurrentLookupKey();
+
+        // Assert
+        assertEquals(Pool.REPLICA, pool);
+        assertEquals(1, meterRegistry.counter("identity.datasource.connections.routed", "pool", "replica").count());
+    }
+
+    @Test
+    void testDetermineCurrentLookupKey_ReplicaLagging() {
+        // Arrange
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(replicaLagMonitor.isReplicaUsable()).thenReturn(false);
+
+        // Act
+        Object pool = routingDataSource.determineCurrentLookupKey();
+
+        // Assert
+        assertEquals(Pool.PRIMARY, pool);
+        assertEquals(1, meterRegistry.counter("identity.datasource.replica.fallbacks").count());
+    }
+
+    @Test
+    void testDetermineCurrentLookupKey_BackgroundWork() {
+        // Arrange
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Act
+        Object pool = Workload.BACKGROUND.call(routingDataSource::determineCurrentLookupKey);
+
+        // Assert
+        assertEquals(Pool.BACKGROUND, pool);
+        verifyNoInteractions(replicaLagMonitor);
+        assertEquals(1, meterRegistry.counter("identity.datasource.connections.routed", "pool", "background").count());
+        assertEquals(Workload.INTERACTIVE, Workload.current());
+    }
+
+    @Test
+    void testDetermineCurrentLookupKey_BackgroundWithoutBackgroundPool() {
+        // Arrange
+        var primaryOnly = new PoolRoutingDataSource(Map.of(Pool.PRIMARY, primaryDataSource), null, meterRegistry);
+        primaryOnly.afterPropertiesSet();
+
+        // Act
+        Object pool = Workload.BACKGROUND.call(primaryOnly::determineCurrentLookupKey);
+
+        // Assert
+        assertEquals(Pool.PRIMARY, pool);
+    }
+
+}
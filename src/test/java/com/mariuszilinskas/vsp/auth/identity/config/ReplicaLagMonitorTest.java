@@ -0,0 +1,74 @@
+package com.mariuszilinskas.vsp.auth.identity.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaLagMonitorTest {
+
+    @Mock
+    private JdbcTemplate replicaJdbcTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        replicaLagMonitor = new ReplicaLagMonitor(replicaJdbcTemplate, 2000, meterRegistry);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testCheckLag_WithinLimit() {
+        // Arrange
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_MILLIS_SQL, Long.class)).thenReturn(1500L);
+
+        // Act
+        replicaLagMonitor.checkLag();
+
+        // Assert
+        assertTrue(replicaLagMonitor.isReplicaUsable());
+        assertEquals(1.5, meterRegistry.get("identity.datasource.replica.lag").gauge().value());
+    }
+
+    @Test
+    void testCheckLag_OverLimit() {
+        // Arrange
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_MILLIS_SQL, Long.class)).thenReturn(1500L, 2500L);
+
+        // Act
+        replicaLagMonitor.checkLag();
+        replicaLagMonitor.checkLag();
+
+        // Assert
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+    }
+
+    @Test
+    void testCheckLag_ReplicaUnreachable() {
+        // Arrange
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_MILLIS_SQL, Long.class))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // Act
+        replicaLagMonitor.checkLag();
+
+        // Assert
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+        assertTrue(Double.isNaN(meterRegistry.get("identity.datasource.replica.lag").gauge().value()));
+    }
+
+}
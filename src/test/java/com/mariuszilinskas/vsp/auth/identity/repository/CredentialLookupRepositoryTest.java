@@ -0,0 +1,78 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository.RefreshTokenDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class CredentialLookupRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private CredentialLookupRepository credentialLookupRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID tokenId = UUID.randomUUID();
+    private final Instant expiryDate = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        credentialLookupRepository = new CredentialLookupRepository(JdbcClient.create(jdbcTemplate));
+        jdbcTemplate.update("INSERT INTO passwords (id, user_id, password_hash, incorrect_entries, last_updated) "
+                + "VALUES (?, ?, ?, 0, CURRENT_TIMESTAMP)", UUID.randomUUID(), userId, "encodedPassword");
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES (?, ?, ?)",
+                tokenId, userId, Timestamp.from(expiryDate));
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testFindPasswordHash_Found() {
+        // Act
+        Optional<String> passwordHash = credentialLookupRepository.findPasswordHash(userId);
+
+        // Assert
+        assertEquals(Optional.of("encodedPassword"), passwordHash);
+    }
+
+    @Test
+    void testFindPasswordHash_NotFound() {
+        // Act & Assert
+        assertTrue(credentialLookupRepository.findPasswordHash(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void testFindRefreshToken_Found() {
+        // Act
+        Optional<RefreshTokenDetails> refreshToken = credentialLookupRepository.findRefreshToken(tokenId);
+
+        // Assert
+        assertEquals(Optional.of(new RefreshTokenDetails(userId, expiryDate)), refreshToken);
+    }
+
+    @Test
+    void testFindRefreshToken_NotFound() {
+        // Act & Assert
+        assertTrue(credentialLookupRepository.findRefreshToken(UUID.randomUUID()).isEmpty());
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies the H2 Flyway migrations (PostgreSQL mode) and checks that they create the indexes the repository
+ * queries rely on. Whether the queries actually use them is checked against PostgreSQL in
+ * {@link CredentialSchemaPlanTest}; H2 plans say nothing about the production planner.
+ */
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class CredentialSchemaIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ------------------------------------
+
+    @Test
+    void testMigrationsApplied() {
+        // Act
+        Integer applied = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM flyway_schema_history", Integer.class);
+        Integer failed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM flyway_schema_history WHERE success = FALSE", Integer.class);
+
+        // Assert
+        assertTrue(applied > 0);
+        assertEquals(0, failed);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "passwords, uk_passwords_user_id",
+            "passcodes, uk_passcodes_user_id",
+            "passcodes, idx_passcodes_expiry_date",
+            "reset_tokens, uk_reset_tokens_token_hash",
+            "reset_tokens, uk_reset_tokens_user_id",
+            "reset_tokens, idx_reset_tokens_expiry_date",
+            "refresh_tokens, idx_refresh_tokens_user_id",
+            "refresh_tokens, idx_refresh_tokens_expiry_date",
+            "user_auth_projection, uk_user_auth_projection_email"
+    })
+    void testIndexExists(String table, String index) {
+        // Act
+        Integer found = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM information_schema.indexes
+                WHERE LOWER(table_name) = ? AND LOWER(index_name) = ?
+                """, Integer.class, table, index);
+
+        // Assert
+        assertEquals(1, found, () -> "Missing index " + index + " on " + table);
+    }
+
+}
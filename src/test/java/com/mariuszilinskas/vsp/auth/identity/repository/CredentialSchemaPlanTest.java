@@ -0,0 +1,86 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks on PostgreSQL that the statement behind every repository query is answered from an index rather than
+ * a sequential scan. Sequential scans are switched off for the test transaction, as the planner would rightly
+ * prefer them on the empty tables; it still falls back to one when no index applies.
+ */
+public class CredentialSchemaPlanTest extends PostgresRepositoryTest {
+
+    private static final String ID = "'00000000-0000-0000-0000-000000000000'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    }
+
+    // ------------------------------------
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // PasswordRepository
+            "SELECT * FROM passwords WHERE user_id = " + ID,
+            "DELETE FROM passwords WHERE user_id = " + ID,
+            // CredentialLookupRepository
+            "SELECT password_hash FROM passwords WHERE user_id = " + ID,
+            "SELECT user_id, expiry_date FROM refresh_tokens WHERE id = " + ID,
+            // PasscodeRepository
+            "SELECT * FROM passcodes WHERE user_id = " + ID,
+            "DELETE FROM passcodes WHERE user_id = " + ID,
+            "UPDATE passcodes SET attempts = attempts + 1 WHERE user_id = " + ID + " AND attempts < 5",
+            "SELECT attempts FROM passcodes WHERE user_id = " + ID,
+            "DELETE FROM passcodes WHERE expiry_date < CURRENT_TIMESTAMP AND id IN "
+                    + "(SELECT id FROM passcodes WHERE expiry_date < CURRENT_TIMESTAMP LIMIT 1000)",
+            "SELECT MIN(expiry_date) FROM passcodes",
+            // ResetTokenRepository
+            "SELECT * FROM reset_tokens WHERE token_hash = 'hash'",
+            "SELECT * FROM reset_tokens WHERE user_id = " + ID,
+            "DELETE FROM reset_tokens WHERE user_id = " + ID,
+            "DELETE FROM reset_tokens WHERE expiry_date < CURRENT_TIMESTAMP AND id IN "
+                    + "(SELECT id FROM reset_tokens WHERE expiry_date < CURRENT_TIMESTAMP LIMIT 1000)",
+            "SELECT MIN(expiry_date) FROM reset_tokens",
+            // RefreshTokenRepository
+            "SELECT * FROM refresh_tokens WHERE id = " + ID + " AND user_id = " + ID,
+            "UPDATE refresh_tokens SET id = " + ID + " WHERE id = " + ID + " AND user_id = " + ID
+                    + " AND expiry_date > CURRENT_TIMESTAMP",
+            "DELETE FROM refresh_tokens WHERE user_id = " + ID,
+            "DELETE FROM refresh_tokens WHERE expiry_date < CURRENT_TIMESTAMP AND id IN "
+                    + "(SELECT id FROM refresh_tokens WHERE expiry_date < CURRENT_TIMESTAMP LIMIT 1000)",
+            "SELECT MIN(expiry_date) FROM refresh_tokens",
+            // UserProjectionRepository
+            "SELECT * FROM user_auth_projection WHERE user_id = " + ID,
+            "SELECT * FROM user_auth_projection WHERE email = 'user@email.com'",
+            "DELETE FROM user_auth_projection WHERE email = 'user@email.com' AND user_id <> " + ID,
+            "UPDATE user_auth_projection SET synced_at = NULL WHERE user_id = " + ID,
+            "DELETE FROM user_auth_projection WHERE user_id = " + ID,
+            "SELECT user_id FROM passwords WHERE user_id > " + ID + " ORDER BY user_id LIMIT 500",
+            // UserAuthDataRepository
+            "WITH deleted_passcodes AS (DELETE FROM passcodes WHERE user_id = " + ID + " RETURNING 1), "
+                    + "deleted_passwords AS (DELETE FROM passwords WHERE user_id = " + ID + " RETURNING 1), "
+                    + "deleted_reset_tokens AS (DELETE FROM reset_tokens WHERE user_id = " + ID + " RETURNING 1), "
+                    + "deleted_refresh_tokens AS (DELETE FROM refresh_tokens WHERE user_id = " + ID + " RETURNING 1) "
+                    + "SELECT (SELECT count(*) FROM deleted_passcodes), (SELECT count(*) FROM deleted_passwords), "
+                    + "(SELECT count(*) FROM deleted_reset_tokens), (SELECT count(*) FROM deleted_refresh_tokens)"
+    })
+    void testRepositoryQueryUsesIndex(String statement) {
+        // Act
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + statement, String.class));
+
+        // Assert
+        assertFalse(plan.contains("Seq Scan"), () -> "Sequential scan in plan:\n" + plan);
+    }
+
+}
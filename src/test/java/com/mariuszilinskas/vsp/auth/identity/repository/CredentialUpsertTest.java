@@ -0,0 +1,94 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The credential upserts use {@code ON CONFLICT DO UPDATE}, which only PostgreSQL runs.
+ */
+public class CredentialUpsertTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordRepository passwordRepository;
+
+    @Autowired
+    private PasscodeRepository passcodeRepository;
+
+    @Autowired
+    private ResetTokenRepository resetTokenRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID firstId = UUID.randomUUID();
+    private final Instant expiryDate = Instant.now().plus(15, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.MICROS);
+
+    // ------------------------------------
+
+    private Map<String, Object> findRow(String table) {
+        return jdbcTemplate.queryForMap("SELECT * FROM " + table + " WHERE user_id = ?", userId);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testUpsertPassword_ReplacesHashAndResetsIncorrectEntries() {
+        // Arrange
+        passwordRepository.upsertPassword(firstId, userId, "firstHash", ZonedDateTime.now());
+        jdbcTemplate.update("UPDATE passwords SET incorrect_entries = 3 WHERE user_id = ?", userId);
+
+        // Act
+        int upserted = passwordRepository.upsertPassword(UUID.randomUUID(), userId, "secondHash", ZonedDateTime.now());
+
+        // Assert
+        Map<String, Object> row = findRow("passwords");
+        assertEquals(1, upserted);
+        assertEquals(firstId, row.get("id"));
+        assertEquals("secondHash", row.get("password_hash"));
+        assertEquals(0, row.get("incorrect_entries"));
+    }
+
+    @Test
+    void testUpsertPasscode_ReplacesPasscodeAndResetsAttempts() {
+        // Arrange
+        passcodeRepository.upsertPasscode(firstId, userId, "111111", Instant.now());
+        passcodeRepository.acquireAttempt(userId, 5);
+
+        // Act
+        int upserted = passcodeRepository.upsertPasscode(UUID.randomUUID(), userId, "222222", expiryDate);
+
+        // Assert
+        Map<String, Object> row = findRow("passcodes");
+        assertEquals(1, upserted);
+        assertEquals(firstId, row.get("id"));
+        assertEquals("222222", row.get("passcode"));
+        assertEquals(0, row.get("attempts"));
+        assertEquals(expiryDate, passcodeRepository.findByUserId(userId).orElseThrow().getExpiryDate());
+    }
+
+    @Test
+    void testUpsertResetToken_ReplacesToken() {
+        // Arrange
+        resetTokenRepository.upsertResetToken(firstId, userId, "firstHash", Instant.now());
+
+        // Act
+        int upserted = resetTokenRepository.upsertResetToken(UUID.randomUUID(), userId, "secondHash", expiryDate);
+
+        // Assert
+        assertEquals(1, upserted);
+        assertEquals(1, resetTokenRepository.count());
+        assertTrue(resetTokenRepository.findByTokenHash("firstHash").isEmpty());
+        assertEquals(firstId, resetTokenRepository.findByTokenHash("secondHash").orElseThrow().getId());
+    }
+
+}
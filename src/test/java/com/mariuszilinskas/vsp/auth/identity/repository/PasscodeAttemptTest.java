@@ -0,0 +1,64 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Passcode attempts are taken with {@code UPDATE ... RETURNING}, which only PostgreSQL runs.
+ */
+public class PasscodeAttemptTest extends PostgresRepositoryTest {
+
+    @Autowired
+    private PasscodeRepository passcodeRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final Instant expiryDate = Instant.now().plus(15, ChronoUnit.MINUTES);
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        passcodeRepository.upsertPasscode(UUID.randomUUID(), userId, "123456", expiryDate);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testAcquireAttempt_UntilLimit() {
+        // Act & Assert
+        assertEquals(Optional.of(1), passcodeRepository.acquireAttempt(userId, 2));
+        assertEquals(Optional.of(2), passcodeRepository.acquireAttempt(userId, 2));
+        assertEquals(Optional.empty(), passcodeRepository.acquireAttempt(userId, 2));
+    }
+
+    @Test
+    void testAcquireAttempt_NoPasscode() {
+        // Act
+        Optional<Integer> attempt = passcodeRepository.acquireAttempt(UUID.randomUUID(), 2);
+
+        // Assert
+        assertTrue(attempt.isEmpty());
+    }
+
+    @Test
+    void testAcquireAttempt_ReissuedPasscodeStartsAgain() {
+        // Arrange
+        passcodeRepository.acquireAttempt(userId, 2);
+        passcodeRepository.acquireAttempt(userId, 2);
+
+        // Act
+        passcodeRepository.upsertPasscode(UUID.randomUUID(), userId, "654321", expiryDate);
+
+        // Assert
+        assertEquals(Optional.of(1), passcodeRepository.acquireAttempt(userId, 2));
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class PasscodeRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasscodeRepository passcodeRepository;
+
+    private final UUID userId = UUID.randomUUID();
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO passcodes (id, user_id, passcode, expiry_date) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), userId, "123456", Timestamp.from(Instant.now().plus(15, ChronoUnit.MINUTES)));
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testDeleteExpiredChunk_OnlyExpiredRowsUpToLimit() {
+        // Arrange
+        Timestamp expired = Timestamp.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        for (int i = 0; i < 3; i++)
+            jdbcTemplate.update("INSERT INTO passcodes (id, user_id, passcode, expiry_date) VALUES (?, ?, ?, ?)",
+                    UUID.randomUUID(), UUID.randomUUID(), "123456", expired);
+
+        // Act
+        int firstChunk = passcodeRepository.deleteExpiredChunk(Instant.now(), 2);
+        int secondChunk = passcodeRepository.deleteExpiredChunk(Instant.now(), 2);
+
+        // Assert
+        assertEquals(2, firstChunk);
+        assertEquals(1, secondChunk);
+        assertEquals(1, passcodeRepository.count());
+        assertTrue(passcodeRepository.findByUserId(userId).isPresent());
+    }
+
+}
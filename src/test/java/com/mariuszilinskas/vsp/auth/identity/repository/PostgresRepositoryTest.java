@@ -0,0 +1,33 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base for repository tests of statements only PostgreSQL runs (data-modifying CTEs, {@code ON CONFLICT DO UPDATE},
+ * {@code UPDATE ... RETURNING}, query plans), which the H2 database of the 'ci' profile cannot. The Flyway migrations
+ * are applied to one PostgreSQL container shared by every subclass; the tests are skipped when Docker is not available.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect")
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Tag("postgres")
+public abstract class PostgresRepositoryTest {
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    static {
+        // Started once for all subclasses, so the Spring context they share keeps a live database
+        if (DockerClientFactory.instance().isDockerAvailable())
+            postgres.start();
+    }
+
+}
@@ -0,0 +1,188 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenGroupCommitterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RefreshTokenGroupCommitter groupCommitter;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        groupCommitter = new RefreshTokenGroupCommitter(jdbcTemplate, transactionManager, meterRegistry);
+        setPrivateField(groupCommitter, "enabled", true);
+        setPrivateField(groupCommitter, "windowMillis", 1000L);
+        setPrivateField(groupCommitter, "maxBatchSize", 3);
+        setPrivateField(groupCommitter, "timeoutMillis", 5000L);
+        groupCommitter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitter.stop();
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private List<Future<?>> insertConcurrently(ExecutorService executor, int count) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(() -> groupCommitter.insert(UUID.randomUUID(), UUID.randomUUID(), Instant.now())));
+        }
+        return futures;
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testInsert_ConcurrentInsertsShareOneStatement() throws Exception {
+        // Arrange
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // Act
+        try {
+            for (Future<?> future : insertConcurrently(executor, 3)) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        verify(jdbcTemplate, times(1)).update(sqlCaptor.capture(), any(Object[].class));
+        assertTrue(sqlCaptor.getValue().endsWith("VALUES (?, ?, ?), (?, ?, ?), (?, ?, ?)"));
+        assertEquals(1, meterRegistry.get("identity.refresh.token.batch.size").summary().count());
+        assertEquals(3.0, meterRegistry.get("identity.refresh.token.batch.size").summary().totalAmount());
+        assertEquals(3, meterRegistry.get("identity.refresh.token.batch.wait").timer().count());
+    }
+
+    @Test
+    void testInsert_FailedRowsFailEveryCaller() throws Exception {
+        // Arrange
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenThrow(new DuplicateKeyException("duplicate"));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // Act
+        List<Future<?>> futures;
+        try {
+            futures = insertConcurrently(executor, 2);
+
+            // Assert
+            for (Future<?> future : futures) {
+                ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(DuplicateKeyException.class, ex.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testInsert_BadRowFailsOnlyItsCaller() throws Exception {
+        // Arrange
+        UUID badTokenId = UUID.randomUUID();
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] args = (Object[]) invocation.getRawArguments()[1];
+            if (Arrays.asList(args).contains(badTokenId)) throw new DuplicateKeyException("duplicate");
+            return args.length / 3;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // Act
+        try {
+            Future<?> bad = executor.submit(() -> groupCommitter.insert(badTokenId, UUID.randomUUID(), Instant.now()));
+            List<Future<?>> good = insertConcurrently(executor, 2);
+
+            // Assert
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DuplicateKeyException.class, ex.getCause());
+            for (Future<?> future : good) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert: the batch statement, then each row on its own
+        verify(jdbcTemplate, times(4)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testInsert_TimedOutInsertIsDeletedOnceCommitted() throws Exception {
+        // Arrange
+        setPrivateField(groupCommitter, "timeoutMillis", 50L);
+        setPrivateField(groupCommitter, "windowMillis", 0L);
+        UUID tokenId = UUID.randomUUID();
+        var releaseCommit = new CountDownLatch(1);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0, String.class).startsWith("INSERT"))
+                assertTrue(releaseCommit.await(5, TimeUnit.SECONDS));
+            return 1;
+        });
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> groupCommitter.insert(tokenId, UUID.randomUUID(), Instant.now()));
+        releaseCommit.countDown();
+
+        // Assert
+        verify(jdbcTemplate, timeout(5000).times(1)).update(startsWith("DELETE"), eq(tokenId));
+    }
+
+    @Test
+    void testInsert_TimedOutQueuedInsertIsNeverWritten() throws Exception {
+        // Arrange
+        groupCommitter.stop();
+        setPrivateField(groupCommitter, "timeoutMillis", 50L);
+        setPrivateField(groupCommitter, "windowMillis", 0L);
+
+        // Act
+        assertThrows(IllegalStateException.class,
+                () -> groupCommitter.insert(UUID.randomUUID(), UUID.randomUUID(), Instant.now()));
+        setPrivateField(groupCommitter, "timeoutMillis", 5000L);
+        groupCommitter.start();
+        groupCommitter.insert(UUID.randomUUID(), UUID.randomUUID(), Instant.now());
+
+        // Assert: only the second insert was written
+        ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(anyString(), argsCaptor.capture());
+        assertEquals(3, argsCaptor.getValue().length);
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class RefreshTokenRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID tokenId = UUID.randomUUID();
+    private final UUID newTokenId = UUID.randomUUID();
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private final Instant newExpiryDate = now.plus(7, ChronoUnit.DAYS);
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        insertToken(tokenId, now.plus(1, ChronoUnit.DAYS));
+    }
+
+    private void insertToken(UUID id, Instant expiryDate) {
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES (?, ?, ?)",
+                id, userId, Timestamp.from(expiryDate));
+    }
+
+    private List<UUID> tokenIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM refresh_tokens WHERE user_id = ?", UUID.class, userId);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testRotateToken_LiveToken() {
+        // Act
+        int rotated = refreshTokenRepository.rotateToken(tokenId, newTokenId, userId, newExpiryDate, now);
+
+        // Assert
+        assertEquals(1, rotated);
+        assertEquals(List.of(newTokenId), tokenIds());
+        assertEquals(Timestamp.from(newExpiryDate), jdbcTemplate.queryForObject(
+                "SELECT expiry_date FROM refresh_tokens WHERE id = ?", Timestamp.class, newTokenId));
+    }
+
+    @Test
+    void testRotateToken_ExpiredToken() {
+        // Act
+        int rotated = refreshTokenRepository.rotateToken(tokenId, newTokenId, userId, newExpiryDate,
+                now.plus(2, ChronoUnit.DAYS));
+
+        // Assert
+        assertEquals(0, rotated);
+        assertEquals(List.of(tokenId), tokenIds());
+    }
+
+    @Test
+    void testRotateToken_OtherUsersToken() {
+        // Act
+        int rotated = refreshTokenRepository.rotateToken(tokenId, newTokenId, UUID.randomUUID(), newExpiryDate, now);
+
+        // Assert
+        assertEquals(0, rotated);
+        assertEquals(List.of(tokenId), tokenIds());
+    }
+
+    @Test
+    void testRotateToken_AlreadyRotated() {
+        // Arrange
+        refreshTokenRepository.rotateToken(tokenId, newTokenId, userId, newExpiryDate, now);
+
+        // Act
+        int rotated = refreshTokenRepository.rotateToken(tokenId, UUID.randomUUID(), userId, newExpiryDate, now);
+
+        // Assert
+        assertEquals(0, rotated);
+        assertEquals(List.of(newTokenId), tokenIds());
+    }
+
+}
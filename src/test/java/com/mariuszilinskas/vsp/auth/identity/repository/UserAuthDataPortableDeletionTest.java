@@ -0,0 +1,92 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository.DeletedAuthData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the portable per-table deletion, which databases other than PostgreSQL use; the single-statement deletion
+ * is covered by {@link UserAuthDataRepositoryTest}.
+ */
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class UserAuthDataPortableDeletionTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserAuthDataRepository userAuthDataRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID otherUserId = UUID.randomUUID();
+    private final Timestamp expiryDate = Timestamp.from(Instant.now().plus(1, ChronoUnit.DAYS));
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        userAuthDataRepository = new UserAuthDataRepository(
+                JdbcClient.create(jdbcTemplate), jdbcTemplate.getDataSource());
+        insertAuthData(userId, "user@email.com");
+        insertAuthData(otherUserId, "other@email.com");
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES (?, ?, ?)",
+                UUID.randomUUID(), userId, expiryDate);
+    }
+
+    private void insertAuthData(UUID userId, String email) {
+        jdbcTemplate.update("INSERT INTO passcodes (id, user_id, passcode, expiry_date) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), userId, "123456", expiryDate);
+        jdbcTemplate.update("INSERT INTO passwords (id, user_id, password_hash, last_updated) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), userId, "hash", expiryDate);
+        jdbcTemplate.update("INSERT INTO reset_tokens (id, user_id, token_hash, expiry_date) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), userId, "hash-" + userId, expiryDate);
+        jdbcTemplate.update("INSERT INTO refresh_tokens (id, user_id, expiry_date) VALUES (?, ?, ?)",
+                UUID.randomUUID(), userId, expiryDate);
+        jdbcTemplate.update("INSERT INTO user_auth_projection (user_id, email, first_name) VALUES (?, ?, ?)",
+                userId, email, "firstName");
+    }
+
+    private int countRows(String table, UUID userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE user_id = ?", Integer.class, userId);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testDeleteUserAuthData_DeletesOnlyUsersRows() {
+        // Act
+        DeletedAuthData deleted = userAuthDataRepository.deleteUserAuthData(userId);
+
+        // Assert
+        assertEquals(new DeletedAuthData(1, 1, 1, 2), deleted);
+        for (String table : List.of("passcodes", "passwords", "reset_tokens", "refresh_tokens", "user_auth_projection")) {
+            assertEquals(0, countRows(table, userId), table);
+            assertEquals(1, countRows(table, otherUserId), table);
+        }
+    }
+
+    @Test
+    void testDeleteUserAuthData_NoData() {
+        // Act
+        DeletedAuthData deleted = userAuthDataRepository.deleteUserAuthData(UUID.randomUUID());
+
+        // Assert
+        assertEquals(new DeletedAuthData(0, 0, 0, 0), deleted);
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.mariuszilinskas.vsp.auth.identity.repository;
+
+import com.mariuszilinskas.vsp.auth.identity.enums.UserAuthority;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository.UserProjection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("ci")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class UserProjectionRepositoryTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserProjectionRepository userProjectionRepository;
+
+    private final UUID userId = UUID.randomUUID();
+    private final String email = "user@email.com";
+    private final Instant syncedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() {
+        userProjectionRepository = new UserProjectionRepository(JdbcClient.create(jdbcTemplate));
+    }
+
+    private UserProjection projection(UUID userId, String email, UserStatus status, Instant syncedAt) {
+        return new UserProjection(userId, email, "firstName", "lastName", status,
+                List.of(UserRole.USER, UserRole.ADMIN), List.of(UserAuthority.MANAGE_SETTINGS), syncedAt);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testSeed_NotSynced() {
+        // Act
+        userProjectionRepository.seed(userId, email, "firstName");
+
+        // Assert
+        UserProjection seeded = userProjectionRepository.findByEmail(email).orElseThrow();
+        assertEquals(userId, seeded.userId());
+        assertEquals("firstName", seeded.firstName());
+        assertFalse(seeded.isSynced());
+    }
+
+    @Test
+    void testSeed_KeepsSyncedData() {
+        // Arrange
+        userProjectionRepository.save(projection(userId, email, UserStatus.ACTIVE, syncedAt));
+
+        // Act
+        userProjectionRepository.seed(userId, email, "firstName");
+
+        // Assert
+        UserProjection projection = userProjectionRepository.findByUserId(userId).orElseThrow();
+        assertEquals(UserStatus.ACTIVE, projection.status());
+        assertTrue(projection.isSynced());
+    }
+
+    @Test
+    void testSave_RoundTrip() {
+        // Arrange
+        UserProjection projection = projection(userId, email, UserStatus.ACTIVE, syncedAt);
+
+        // Act
+        assertTrue(userProjectionRepository.save(projection));
+
+        // Assert
+        assertEquals(Optional.of(projection), userProjectionRepository.findByUserId(userId));
+        assertEquals(Optional.of(projection), userProjectionRepository.findByEmail(email));
+    }
+
+    @Test
+    void testSave_LaterSyncWins() {
+        // Arrange
+        userProjectionRepository.save(projection(userId, email, UserStatus.SUSPENDED, syncedAt));
+
+        // Act
+        boolean saved = userProjectionRepository.save(
+                projection(userId, email, UserStatus.ACTIVE, syncedAt.minusSeconds(1)));
+
+        // Assert
+        assertFalse(saved);
+        assertEquals(UserStatus.SUSPENDED, userProjectionRepository.findByUserId(userId).orElseThrow().status());
+    }
+
+    @Test
+    void testSave_EmailMovesToAnotherUser() {
+        // Arrange
+        UUID otherUserId = UUID.randomUUID();
+        userProjectionRepository.save(projection(otherUserId, email, UserStatus.ACTIVE, syncedAt));
+
+        // Act
+        userProjectionRepository.save(projection(userId, email, UserStatus.ACTIVE, syncedAt));
+
+        // Assert
+        assertEquals(userId, userProjectionRepository.findByEmail(email).orElseThrow().userId());
+        assertTrue(userProjectionRepository.findByUserId(otherUserId).isEmpty());
+    }
+
+    @Test
+    void testMarkUnsynced() {
+        // Arrange
+        userProjectionRepository.save(projection(userId, email, UserStatus.ACTIVE, syncedAt));
+
+        // Act
+        userProjectionRepository.markUnsynced(userId);
+
+        // Assert
+        assertFalse(userProjectionRepository.findByUserId(userId).orElseThrow().isSynced());
+    }
+
+    @Test
+    void testDelete() {
+        // Arrange
+        userProjectionRepository.save(projection(userId, email, UserStatus.ACTIVE, syncedAt));
+
+        // Act
+        userProjectionRepository.delete(userId);
+
+        // Assert
+        assertTrue(userProjectionRepository.findByUserId(userId).isEmpty());
+    }
+
+    @Test
+    void testFindCredentialUserIds_Paged() {
+        // Arrange
+        for (int i = 0; i < 3; i++) {
+            jdbcTemplate.update("INSERT INTO passwords (id, user_id, password_hash, incorrect_entries, last_updated) "
+                    + "VALUES (?, ?, ?, 0, CURRENT_TIMESTAMP)", UUID.randomUUID(), UUID.randomUUID(), "hash");
+        }
+
+        // Act
+        List<UUID> firstPage = userProjectionRepository.findCredentialUserIds(null, 2);
+        List<UUID> secondPage = userProjectionRepository.findCredentialUserIds(firstPage.get(1), 2);
+
+        // Assert
+        assertEquals(2, firstPage.size());
+        assertEquals(1, secondPage.size());
+        assertFalse(firstPage.contains(secondPage.get(0)));
+    }
+
+}
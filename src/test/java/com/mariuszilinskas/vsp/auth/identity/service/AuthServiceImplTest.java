@@ -38,6 +38,9 @@ public class AuthServiceImplTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private TokenGenerationService tokenGenerationService;
+
     @Mock
     private HttpServletRequest mockRequest;
 
@@ -49,6 +52,7 @@ public class AuthServiceImplTest {
 
     private final UUID userId = UUID.randomUUID();
     private final UUID tokenId = UUID.randomUUID();
+    private final UUID newTokenId = UUID.randomUUID();
     private final String refreshToken = "test_refresh_token";
     private AuthDetails authDetails;
 
@@ -73,8 +77,9 @@ public class AuthServiceImplTest {
 
         when(userService.getUserAuthDetailsWithEmail(email)).thenReturn(authDetails);
         doNothing().when(passwordService).verifyPassword(passwordRequest);
-        doNothing().when(refreshTokenService).createNewRefreshToken(any(UUID.class), eq(userId));
-        doNothing().when(jwtService).setAuthCookies(eq(mockResponse), eq(authDetails), any(UUID.class));
+        when(tokenGenerationService.generateTokenId()).thenReturn(newTokenId);
+        doNothing().when(refreshTokenService).createNewRefreshToken(newTokenId, userId);
+        doNothing().when(jwtService).setAuthCookies(mockResponse, authDetails, newTokenId);
 
         // Act
         authService.authenticateUser(loginRequest, mockResponse);
@@ -82,8 +87,8 @@ public class AuthServiceImplTest {
         // Assert
         verify(userService, times(1)).getUserAuthDetailsWithEmail(email);
         verify(passwordService, times(1)).verifyPassword(passwordRequest);
-        verify(refreshTokenService, times(1)).createNewRefreshToken(any(UUID.class), eq(userId));
-        verify(jwtService, times(1)).setAuthCookies(eq(mockResponse), eq(authDetails), any(UUID.class));
+        verify(refreshTokenService, times(1)).createNewRefreshToken(newTokenId, userId);
+        verify(jwtService, times(1)).setAuthCookies(mockResponse, authDetails, newTokenId);
     }
 
     @Test
@@ -158,26 +163,26 @@ public class AuthServiceImplTest {
     void testRefreshAuthTokens_Success() {
         // Arrange
         when(jwtService.extractRefreshToken(mockRequest)).thenReturn(refreshToken);
-        doNothing().when(jwtService).validateRefreshToken(refreshToken);
         when(jwtService.extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME)).thenReturn(userId);
-        when(userService.getUserAuthDetailsWithId(userId)).thenReturn(authDetails);
         when(jwtService.extractRefreshTokenId(refreshToken)).thenReturn(tokenId);
-        doNothing().when(refreshTokenService).createNewRefreshToken(any(UUID.class), eq(userId));
-        doNothing().when(jwtService).setAuthCookies(eq(mockResponse), eq(authDetails), any(UUID.class));
-        doNothing().when(refreshTokenService).deleteRefreshToken(tokenId);
+        when(userService.getUserAuthDetailsWithId(userId)).thenReturn(authDetails);
+        when(tokenGenerationService.generateTokenId()).thenReturn(newTokenId);
+        doNothing().when(refreshTokenService).rotateRefreshToken(tokenId, newTokenId, userId);
+        doNothing().when(jwtService).setAuthCookies(mockResponse, authDetails, newTokenId);
 
         // Act
         authService.refreshTokens(mockRequest, mockResponse);
 
         // Assert
         verify(jwtService, times(1)).extractRefreshToken(mockRequest);
-        verify(jwtService, times(1)).validateRefreshToken(refreshToken);
         verify(jwtService, times(1)).extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME);
-        verify(userService, times(1)).getUserAuthDetailsWithId(userId);
         verify(jwtService, times(1)).extractRefreshTokenId(refreshToken);
-        verify(refreshTokenService, times(1)).createNewRefreshToken(any(UUID.class), eq(userId));
-        verify(jwtService, times(1)).setAuthCookies(eq(mockResponse), eq(authDetails), any(UUID.class));
-        verify(refreshTokenService, times(1)).deleteRefreshToken(tokenId);
+        verify(userService, times(1)).getUserAuthDetailsWithId(userId);
+        verify(refreshTokenService, times(1)).rotateRefreshToken(tokenId, newTokenId, userId);
+        verify(jwtService, times(1)).setAuthCookies(mockResponse, authDetails, newTokenId);
+
+        verify(refreshTokenService, never()).createNewRefreshToken(any(UUID.class), any(UUID.class));
+        verify(refreshTokenService, never()).deleteRefreshToken(any(UUID.class));
     }
 
     @Test
@@ -193,20 +198,19 @@ public class AuthServiceImplTest {
         // Assert
         verify(jwtService, times(1)).extractRefreshToken(mockRequest);
 
-        verify(jwtService, never()).validateRefreshToken(anyString());
         verify(jwtService, never()).extractUserIdFromToken(anyString(), anyString());
         verify(userService, never()).getUserAuthDetailsWithId(any(UUID.class));
         verify(jwtService, never()).extractRefreshTokenId(anyString());
-        verify(refreshTokenService, never()).createNewRefreshToken(any(UUID.class), any(UUID.class));
+        verify(refreshTokenService, never()).rotateRefreshToken(any(UUID.class), any(UUID.class), any(UUID.class));
         verify(jwtService, never()).setAuthCookies(any(HttpServletResponse.class), any(AuthDetails.class), any(UUID.class));
-        verify(refreshTokenService, never()).deleteRefreshToken(any(UUID.class));
     }
 
     @Test
-    void testRefreshAuthTokens_RefreshTokenNotFound() {
+    void testRefreshAuthTokens_InvalidRefreshToken() {
         // Arrange
         when(jwtService.extractRefreshToken(mockRequest)).thenReturn(refreshToken);
-        doThrow(new JwtTokenValidationException()).when(jwtService).validateRefreshToken(refreshToken);
+        doThrow(new JwtTokenValidationException()).when(jwtService)
+                .extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME);
 
         // Act & Assert
         assertThrows(JwtTokenValidationException.class, () -> {
@@ -215,14 +219,32 @@ public class AuthServiceImplTest {
 
         // Assert
         verify(jwtService, times(1)).extractRefreshToken(mockRequest);
-        verify(jwtService, times(1)).validateRefreshToken(refreshToken);
+        verify(jwtService, times(1)).extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME);
 
-        verify(jwtService, never()).extractUserIdFromToken(anyString(), anyString());
         verify(userService, never()).getUserAuthDetailsWithId(any(UUID.class));
-        verify(jwtService, never()).extractRefreshTokenId(anyString());
-        verify(refreshTokenService, never()).createNewRefreshToken(any(UUID.class), any(UUID.class));
+        verify(refreshTokenService, never()).rotateRefreshToken(any(UUID.class), any(UUID.class), any(UUID.class));
+        verify(jwtService, never()).setAuthCookies(any(HttpServletResponse.class), any(AuthDetails.class), any(UUID.class));
+    }
+
+    @Test
+    void testRefreshAuthTokens_RefreshTokenNotFound() {
+        // Arrange
+        when(jwtService.extractRefreshToken(mockRequest)).thenReturn(refreshToken);
+        when(jwtService.extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME)).thenReturn(userId);
+        when(jwtService.extractRefreshTokenId(refreshToken)).thenReturn(tokenId);
+        when(userService.getUserAuthDetailsWithId(userId)).thenReturn(authDetails);
+        when(tokenGenerationService.generateTokenId()).thenReturn(newTokenId);
+        doThrow(new JwtTokenValidationException()).when(refreshTokenService)
+                .rotateRefreshToken(tokenId, newTokenId, userId);
+
+        // Act & Assert
+        assertThrows(JwtTokenValidationException.class, () -> {
+            authService.refreshTokens(mockRequest, mockResponse);
+        });
+
+        // Assert
+        verify(refreshTokenService, times(1)).rotateRefreshToken(tokenId, newTokenId, userId);
         verify(jwtService, never()).setAuthCookies(any(HttpServletResponse.class), any(AuthDetails.class), any(UUID.class));
-        verify(refreshTokenService, never()).deleteRefreshToken(any(UUID.class));
     }
 
     @Test
@@ -231,8 +253,8 @@ public class AuthServiceImplTest {
         authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.SUSPENDED);
 
         when(jwtService.extractRefreshToken(mockRequest)).thenReturn(refreshToken);
-        doNothing().when(jwtService).validateRefreshToken(refreshToken);
         when(jwtService.extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME)).thenReturn(userId);
+        when(jwtService.extractRefreshTokenId(refreshToken)).thenReturn(tokenId);
         when(userService.getUserAuthDetailsWithId(userId)).thenReturn(authDetails);
 
         // Act & Assert
@@ -242,14 +264,11 @@ public class AuthServiceImplTest {
 
         // Assert
         verify(jwtService, times(1)).extractRefreshToken(mockRequest);
-        verify(jwtService, times(1)).validateRefreshToken(refreshToken);
         verify(jwtService, times(1)).extractUserIdFromToken(refreshToken, IdentityUtils.REFRESH_TOKEN_NAME);
         verify(userService, times(1)).getUserAuthDetailsWithId(userId);
 
-        verify(jwtService, never()).extractRefreshTokenId(anyString());
-        verify(refreshTokenService, never()).createNewRefreshToken(any(UUID.class), any(UUID.class));
+        verify(refreshTokenService, never()).rotateRefreshToken(any(UUID.class), any(UUID.class), any(UUID.class));
         verify(jwtService, never()).setAuthCookies(any(HttpServletResponse.class), any(AuthDetails.class), any(UUID.class));
-        verify(refreshTokenService, never()).deleteRefreshToken(any(UUID.class));
     }
 
     // ------------------------------------
@@ -0,0 +1,179 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import com.mariuszilinskas.vsp.auth.identity.config.Workload;
+import com.mariuszilinskas.vsp.auth.identity.repository.AdvisoryLockRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.ResetTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CredentialReaperServiceImplTest {
+
+    @Mock
+    private PasscodeService passcodeService;
+
+    @Mock
+    private ResetTokenService resetTokenService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private RefreshTokenPartitionService refreshTokenPartitionService;
+
+    @Mock
+    private PasscodeRepository passcodeRepository;
+
+    @Mock
+    private ResetTokenRepository resetTokenRepository;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private AdvisoryLockRepository advisoryLockRepository;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CredentialReaperServiceImpl credentialReaperService;
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        credentialReaperService = new CredentialReaperServiceImpl(
+                passcodeService, resetTokenService, refreshTokenService, refreshTokenPartitionService,
+                passcodeRepository, resetTokenRepository, refreshTokenRepository,
+                advisoryLockRepository, meterRegistry);
+        setPrivateField(credentialReaperService, "enabled", true);
+        setPrivateField(credentialReaperService, "chunkSize", 2);
+        setPrivateField(credentialReaperService, "maxChunks", 10);
+        setPrivateField(credentialReaperService, "pauseMillis", 0L);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private void holdLocks() {
+        when(advisoryLockRepository.runWithLock(anyString(), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return true;
+        });
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testReapExpiredCredentials_DeletesInChunks() {
+        // Arrange
+        holdLocks();
+        when(passcodeService.deleteExpiredPasscodes(2)).thenReturn(2, 2, 1);
+        when(refreshTokenService.deleteExpiredRefreshTokens(2)).thenReturn(2, 0);
+        when(passcodeRepository.findOldestExpiryDate()).thenReturn(Optional.of(Instant.now().minusSeconds(60)));
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        verify(passcodeService, times(3)).deleteExpiredPasscodes(2);
+        verify(resetTokenService, times(1)).deleteExpiredResetTokens(2);
+        verify(refreshTokenService, times(2)).deleteExpiredRefreshTokens(2);
+        verify(refreshTokenPartitionService, times(1)).dropExpiredPartitions();
+
+        assertEquals(5, meterRegistry.counter("identity.reaper.rows.deleted", "table", "passcodes").count());
+        assertEquals(2, meterRegistry.counter("identity.reaper.rows.deleted", "table", "refresh_tokens").count());
+        assertTrue(meterRegistry.get("identity.reaper.lag").tag("table", "passcodes").gauge().value() >= 60);
+        assertEquals(1, meterRegistry.get("identity.reaper.sweep.duration").tag("table", "reset_tokens").timer().count());
+    }
+
+    @Test
+    void testReapExpiredCredentials_StopsAtMaxChunks() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(credentialReaperService, "maxChunks", 3);
+        holdLocks();
+        when(passcodeService.deleteExpiredPasscodes(2)).thenReturn(2);
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        verify(passcodeService, times(3)).deleteExpiredPasscodes(2);
+        assertEquals(6, meterRegistry.counter("identity.reaper.rows.deleted", "table", "passcodes").count());
+    }
+
+    @Test
+    void testReapExpiredCredentials_LockHeldElsewhere() {
+        // Arrange
+        when(advisoryLockRepository.runWithLock(anyString(), any(Runnable.class))).thenReturn(false);
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        verify(advisoryLockRepository, times(3)).runWithLock(anyString(), any(Runnable.class));
+        verifyNoInteractions(passcodeService, resetTokenService, refreshTokenService, refreshTokenPartitionService);
+    }
+
+    @Test
+    void testReapExpiredCredentials_FailedSweepDoesNotStopOthers() {
+        // Arrange
+        holdLocks();
+        when(passcodeService.deleteExpiredPasscodes(2)).thenThrow(new RuntimeException("connection lost"));
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        verify(resetTokenService, times(1)).deleteExpiredResetTokens(2);
+        verify(refreshTokenService, times(1)).deleteExpiredRefreshTokens(2);
+    }
+
+    @Test
+    void testReapExpiredCredentials_RunsAsBackgroundWork() {
+        // Arrange
+        List<Workload> workloads = new ArrayList<>();
+        when(advisoryLockRepository.runWithLock(anyString(), any(Runnable.class))).thenAnswer(invocation -> {
+            workloads.add(Workload.current());
+            return false;
+        });
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        assertEquals(List.of(Workload.BACKGROUND, Workload.BACKGROUND, Workload.BACKGROUND), workloads);
+        assertEquals(Workload.INTERACTIVE, Workload.current());
+    }
+
+    @Test
+    void testReapExpiredCredentials_Disabled() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(credentialReaperService, "enabled", false);
+
+        // Act
+        credentialReaperService.reapExpiredCredentials();
+
+        // Assert
+        verifyNoInteractions(advisoryLockRepository);
+    }
+
+}
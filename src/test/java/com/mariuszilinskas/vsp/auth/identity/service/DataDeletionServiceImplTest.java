@@ -1,53 +1,100 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasscodeAttemptLimiter;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserAuthDataRepository.DeletedAuthData;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
 
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class DataDeletionServiceImplTest {
 
     @Mock
-    private PasscodeService passcodeService;
+    private UserAuthDataRepository userAuthDataRepository;
 
     @Mock
-    private PasswordService passwordService;
+    private EphemeralCredentialStore credentialStore;
 
     @Mock
-    private ResetTokenService resetTokenService;
+    private PasscodeAttemptLimiter passcodeAttemptLimiter;
 
     @Mock
-    private RefreshTokenService refreshTokenService;
+    private PasswordHashCache passwordHashCache;
 
-    @InjectMocks
+    @Mock
+    private AuthDetailsCache authDetailsCache;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
     private DataDeletionServiceImpl userAuthDataService;
 
     private final UUID userId = UUID.randomUUID();
 
     // ------------------------------------
 
+    @BeforeEach
+    void setUp() {
+        userAuthDataService = new DataDeletionServiceImpl(userAuthDataRepository, credentialStore,
+                passcodeAttemptLimiter, passwordHashCache, authDetailsCache, meterRegistry);
+    }
+
+    // ------------------------------------
+
     @Test
     void testDeleteAllUserAuthData_Success() {
         // Arrange
-        doNothing().when(passcodeService).deleteUserPasscodes(userId);
-        doNothing().when(passwordService).deleteUserPasswords(userId);
-        doNothing().when(resetTokenService).deleteUserResetTokens(userId);
-        doNothing().when(refreshTokenService).deleteUserRefreshTokens(userId);
+        var deleted = new DeletedAuthData(1, 1, 0, 3);
+        when(userAuthDataRepository.deleteUserAuthData(userId)).thenReturn(deleted);
 
         // Act
         userAuthDataService.deleteUserAuthData(userId);
 
         // Assert
-        verify(passcodeService, times(1)).deleteUserPasscodes(userId);
-        verify(passwordService, times(1)).deleteUserPasswords(userId);
-        verify(resetTokenService, times(1)).deleteUserResetTokens(userId);
-        verify(refreshTokenService, times(1)).deleteUserRefreshTokens(userId);
+        verify(userAuthDataRepository, times(1)).deleteUserAuthData(userId);
+        verify(credentialStore, times(1)).removePasscode(userId);
+        verify(credentialStore, times(1)).removeUserResetTokens(userId);
+        verify(passcodeAttemptLimiter, times(1)).reset(userId);
+        verify(passwordHashCache, times(1)).invalidate(userId);
+        verify(authDetailsCache, times(1)).invalidate(userId);
+
+        assertEquals(1, deletedRows("passcodes"));
+        assertEquals(1, deletedRows("passwords"));
+        assertEquals(0, deletedRows("reset_tokens"));
+        assertEquals(3, deletedRows("refresh_tokens"));
+    }
+
+    @Test
+    void testDeleteAllUserAuthData_FailedDeleteKeepsInMemoryCredentials() {
+        // Arrange
+        when(userAuthDataRepository.deleteUserAuthData(userId))
+                .thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> userAuthDataService.deleteUserAuthData(userId));
+
+        // Assert
+        verifyNoInteractions(credentialStore);
+        verifyNoInteractions(passcodeAttemptLimiter);
+        verifyNoInteractions(passwordHashCache);
+        verifyNoInteractions(authDetailsCache);
+    }
+
+    private double deletedRows(String table) {
+        return meterRegistry.counter("identity.user.data.deleted.rows", "table", table).count();
     }
 
 }
@@ -4,7 +4,6 @@ import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
 import com.mariuszilinskas.vsp.auth.identity.exception.JwtTokenValidationException;
-import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
 import com.mariuszilinskas.vsp.auth.identity.util.TestUtils;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import jakarta.servlet.http.Cookie;
@@ -19,7 +18,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockHttpServletResponse;
 
 import java.lang.reflect.Field;
-import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -30,9 +28,6 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 public class JwtServiceImplTest {
 
-    @Mock
-    private RefreshTokenService refreshTokenService;
-
     @Mock
     private HttpServletRequest mockRequest;
 
@@ -52,7 +47,6 @@ public class JwtServiceImplTest {
     private static final String invalidToken = TestUtils.invalidToken;
 
     private AuthDetails authDetails;
-    private final RefreshToken refreshToken = new RefreshToken();
 
     // ------------------------------------
 
@@ -64,10 +58,6 @@ public class JwtServiceImplTest {
 
         authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
 
-        refreshToken.setId(tokenId);
-        refreshToken.setUserId(userId);
-        refreshToken.setExpiryDate(Instant.now().plusSeconds(10));
-
         mockRequest = mock(HttpServletRequest.class);
         mockResponse = new MockHttpServletResponse();
     }
@@ -245,59 +235,6 @@ public class JwtServiceImplTest {
 
     // ------------------------------------
 
-    @Test
-    void testValidateRefreshToken_ValidToken() {
-        // Arrange
-        when(refreshTokenService.getRefreshToken(tokenId)).thenReturn(refreshToken);
-
-        // Act & Assert
-        assertDoesNotThrow(() -> jwtService.validateRefreshToken(validRefreshToken));
-
-        verify(refreshTokenService, times(1)).getRefreshToken(tokenId);
-    }
-
-    @Test
-    void testValidateRefreshToken_InvalidToken() {
-        // Act & Assert
-        assertThrows(JwtTokenValidationException.class, () -> jwtService.validateRefreshToken(invalidToken));
-    }
-
-    @Test
-    void testValidateRefreshToken_ExpiredToken() {
-        // Act & Assert
-        assertThrows(JwtTokenValidationException.class, () -> jwtService.validateRefreshToken(expiredRefreshToken));
-    }
-
-    @Test
-    void testValidateRefreshToken_TokenNotInDatabase() {
-        // Arrange
-        when(refreshTokenService.getRefreshToken(tokenId)).thenReturn(null);
-        doNothing().when(refreshTokenService).deleteUserRefreshTokens(userId);
-
-        // Act & Assert
-        assertThrows(JwtTokenValidationException.class, () -> jwtService.validateRefreshToken(validRefreshToken));
-
-        verify(refreshTokenService, times(1)).getRefreshToken(tokenId);
-        verify(refreshTokenService, times(1)).deleteUserRefreshTokens(userId);
-    }
-
-    @Test
-    void testValidateRefreshToken_ExpiredTokenInDatabase() {
-        // Arrange
-        refreshToken.setExpiryDate(Instant.now().minusMillis(3600));
-        when(refreshTokenService.getRefreshToken(tokenId)).thenReturn(refreshToken);
-        doNothing().when(refreshTokenService).deleteRefreshToken(tokenId);
-
-        // Act & Assert
-        assertThrows(JwtTokenValidationException.class, () -> jwtService.validateRefreshToken(validRefreshToken));
-
-        verify(refreshTokenService, times(1)).getRefreshToken(tokenId);
-        verify(refreshTokenService, times(1)).deleteRefreshToken(tokenId);
-        verify(refreshTokenService, never()).deleteUserRefreshTokens(userId);
-    }
-
-    // ------------------------------------
-
     @Test
     void testExtractUserIdFromToken_ValidAccessToken() {
         // Act
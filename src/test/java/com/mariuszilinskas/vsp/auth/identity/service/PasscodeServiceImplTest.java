@@ -1,27 +1,32 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasscodeAttemptLimiter;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer.ResendType;
 import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
 import com.mariuszilinskas.vsp.auth.identity.dto.VerificationEmailRequest;
 import com.mariuszilinskas.vsp.auth.identity.dto.VerifyPasscodeRequest;
 import com.mariuszilinskas.vsp.auth.identity.dto.WelcomeEmailRequest;
+import com.mariuszilinskas.vsp.auth.identity.exception.PasscodeAttemptsExceededException;
 import com.mariuszilinskas.vsp.auth.identity.exception.PasscodeExpiredException;
 import com.mariuszilinskas.vsp.auth.identity.exception.PasscodeValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.UserRetrievalException;
 import com.mariuszilinskas.vsp.auth.identity.model.Passcode;
 import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasscodeRepository;
-import com.mariuszilinskas.vsp.auth.identity.util.TestUtils;
-import feign.FeignException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Field;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -38,11 +43,20 @@ public class PasscodeServiceImplTest {
     private PasscodeRepository passcodeRepository;
 
     @Mock
-    private UserFeignClient userFeignClient;
+    private UserService userService;
 
     @Mock
     private RabbitMQProducer rabbitMQProducer;
 
+    @Mock
+    private EphemeralCredentialStore credentialStore;
+
+    @Mock
+    private PasscodeAttemptLimiter passcodeAttemptLimiter;
+
+    @Mock
+    private ResendCoalescer resendCoalescer;
+
     @InjectMocks
     private PasscodeServiceImpl passcodeService;
 
@@ -50,7 +64,6 @@ public class PasscodeServiceImplTest {
     String firstName = "firstName";
     private final String email = "user@email.com";
     private final Passcode passcode = new Passcode(userId);
-    private final FeignException feignException = TestUtils.createFeignException();
 
     // ------------------------------------
 
@@ -70,12 +83,12 @@ public class PasscodeServiceImplTest {
         var userResponse = new UserResponse(firstName, "lastName", email);
 
         when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.of(passcode));
-        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+        when(userService.getUser(userId)).thenReturn(userResponse);
         doNothing().when(rabbitMQProducer).sendVerifyAccountMessage(userId);
 
         doAnswer(invocation -> {
             when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.empty());
-            return null;
+            return 1;
         }).when(passcodeRepository).deleteByUserId(userId);
 
         doNothing().when(rabbitMQProducer).sendWelcomeEmailMessage(emailRequest);
@@ -85,12 +98,84 @@ public class PasscodeServiceImplTest {
 
         // Assert
         verify(passcodeRepository, times(1)).findByUserId(userId);
-        verify(userFeignClient, times(1)).getUser(userId);
+
+        // Messages are only published once the Passcode delete has committed
+        InOrder inOrder = inOrder(userService, passcodeRepository, rabbitMQProducer);
+        inOrder.verify(userService, times(1)).getUser(userId);
+        inOrder.verify(passcodeRepository, times(1)).deleteByUserId(userId);
+        inOrder.verify(rabbitMQProducer, times(1)).sendVerifyAccountMessage(userId);
+        inOrder.verify(rabbitMQProducer, times(1)).sendWelcomeEmailMessage(emailRequest);
+
+        assertFalse(passcodeRepository.findByUserId(userId).isPresent());
+    }
+
+    @Test
+    void testVerifyPasscode_MemoryOnly() {
+        // Arrange
+        var passcodeRequest = new VerifyPasscodeRequest(passcode.getPasscode());
+        var emailRequest = new WelcomeEmailRequest("welcome", firstName, email);
+        var userResponse = new UserResponse(firstName, "lastName", email);
+
+        when(credentialStore.findPasscode(userId)).thenReturn(Optional.of(passcode));
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        when(userService.getUser(userId)).thenReturn(userResponse);
+
+        // Act
+        passcodeService.verifyPasscode(userId, passcodeRequest);
+
+        // Assert
+        verify(credentialStore, times(1)).findPasscode(userId);
+        verify(credentialStore, times(1)).removePasscode(userId);
         verify(rabbitMQProducer, times(1)).sendVerifyAccountMessage(userId);
-        verify(passcodeRepository, times(1)).deleteByUserId(userId);
         verify(rabbitMQProducer, times(1)).sendWelcomeEmailMessage(emailRequest);
 
-        assertFalse(passcodeRepository.findByUserId(userId).isPresent());
+        verifyNoInteractions(passcodeRepository);
+    }
+
+    @Test
+    void testVerifyPasscode_ResentOnAnotherInstance() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange: two instances, each with its own store, sharing the database
+        Map<UUID, Passcode> database = new HashMap<>();
+        doAnswer(invocation -> {
+            Passcode stored = new Passcode(invocation.getArgument(1));
+            stored.setPasscode(invocation.getArgument(2));
+            stored.setExpiryDate(invocation.getArgument(3));
+            database.put(stored.getUserId(), stored);
+            return 1;
+        }).when(passcodeRepository).upsertPasscode(any(UUID.class), eq(userId), anyString(), any(Instant.class));
+        when(passcodeRepository.findByUserId(userId))
+                .thenAnswer(invocation -> Optional.ofNullable(database.get(userId)));
+        when(tokenGenerationService.generatePasscode()).thenReturn("111111", "222222");
+        when(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId)).thenReturn(true);
+        when(userService.getUser(userId)).thenReturn(new UserResponse(firstName, "lastName", email));
+
+        var instanceA = new PasscodeServiceImpl(userService, passcodeRepository, tokenGenerationService,
+                rabbitMQProducer, createDbBackedStore(), passcodeAttemptLimiter, resendCoalescer);
+        var instanceB = new PasscodeServiceImpl(userService, passcodeRepository, tokenGenerationService,
+                rabbitMQProducer, createDbBackedStore(), passcodeAttemptLimiter, resendCoalescer);
+
+        // Act
+        instanceA.createPasscode(userId, firstName, email);
+        instanceB.resetPasscode(userId);
+
+        // Assert: the superseded Passcode is rejected by the instance that issued it
+        assertThrows(PasscodeValidationException.class,
+                () -> instanceA.verifyPasscode(userId, new VerifyPasscodeRequest("111111")));
+        assertDoesNotThrow(() -> instanceA.verifyPasscode(userId, new VerifyPasscodeRequest("222222")));
+    }
+
+    private EphemeralCredentialStore createDbBackedStore() throws NoSuchFieldException, IllegalAccessException {
+        var store = new EphemeralCredentialStore();
+        setPrivateField(store, "enabled", true);
+        setPrivateField(store, "dbFallback", true);
+        return store;
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
     }
 
     @Test
@@ -106,8 +191,9 @@ public class PasscodeServiceImplTest {
 
         // Assert
         verify(passcodeRepository, times(1)).findByUserId(userId);
+        verify(passcodeAttemptLimiter, never()).acquireAttempt(any(UUID.class));
 
-        verify(userFeignClient, never()).getUser(any(UUID.class));
+        verify(userService, never()).getUser(any(UUID.class));
         verify(rabbitMQProducer, never()).sendVerifyAccountMessage(any(UUID.class));
         verify(passcodeRepository, never()).deleteByUserId(any(UUID.class));
         verify(rabbitMQProducer, never()).sendWelcomeEmailMessage(any(WelcomeEmailRequest.class));
@@ -124,28 +210,69 @@ public class PasscodeServiceImplTest {
         assertThrows(PasscodeValidationException.class, () -> passcodeService.verifyPasscode(userId, request));
 
         // Assert
+        verify(passcodeAttemptLimiter, times(1)).checkNotLockedOut(userId);
         verify(passcodeRepository, times(1)).findByUserId(userId);
+        verify(passcodeAttemptLimiter, times(1)).acquireAttempt(userId);
+        verify(passcodeAttemptLimiter, times(1)).recordFailedAttempt(userId, 0);
 
-        verify(userFeignClient, never()).getUser(any(UUID.class));
+        verify(userService, never()).getUser(any(UUID.class));
         verify(rabbitMQProducer, never()).sendVerifyAccountMessage(any(UUID.class));
         verify(passcodeRepository, never()).deleteByUserId(any(UUID.class));
         verify(rabbitMQProducer, never()).sendWelcomeEmailMessage(any(WelcomeEmailRequest.class));
     }
 
     @Test
-    void testVerifyPasscode_FeignException() {
+    void testVerifyPasscode_AttemptsExceeded() {
         // Arrange
         VerifyPasscodeRequest request = new VerifyPasscodeRequest(passcode.getPasscode());
 
         when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.of(passcode));
-        doThrow(feignException).when(userFeignClient).getUser(userId);
+        doThrow(new PasscodeAttemptsExceededException()).when(passcodeAttemptLimiter).acquireAttempt(userId);
+
+        // Act & Assert
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeService.verifyPasscode(userId, request));
+
+        // Assert
+        verify(passcodeAttemptLimiter, times(1)).acquireAttempt(userId);
+        verify(passcodeAttemptLimiter, never()).recordFailedAttempt(any(UUID.class), anyInt());
+
+        verify(passcodeRepository, never()).deleteByUserId(any(UUID.class));
+        verifyNoInteractions(userService);
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testVerifyPasscode_KnownLockoutSkipsDatabase() {
+        // Arrange
+        VerifyPasscodeRequest request = new VerifyPasscodeRequest(passcode.getPasscode());
+
+        doThrow(new PasscodeAttemptsExceededException()).when(passcodeAttemptLimiter).checkNotLockedOut(userId);
+
+        // Act & Assert
+        assertThrows(PasscodeAttemptsExceededException.class, () -> passcodeService.verifyPasscode(userId, request));
+
+        // Assert
+        verify(passcodeAttemptLimiter, never()).acquireAttempt(any(UUID.class));
+        verifyNoInteractions(passcodeRepository);
+        verifyNoInteractions(credentialStore);
+        verifyNoInteractions(userService);
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testVerifyPasscode_UserRetrievalException() {
+        // Arrange
+        VerifyPasscodeRequest request = new VerifyPasscodeRequest(passcode.getPasscode());
+
+        when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.of(passcode));
+        doThrow(UserRetrievalException.class).when(userService).getUser(userId);
 
         // Act & Assert
         assertThrows(UserRetrievalException.class, () -> passcodeService.verifyPasscode(userId, request));
 
         // Assert
         verify(passcodeRepository, times(1)).findByUserId(userId);
-        verify(userFeignClient, times(1)).getUser(userId);
+        verify(userService, times(1)).getUser(userId);
 
         verify(rabbitMQProducer, never()).sendVerifyAccountMessage(any(UUID.class));
         verify(passcodeRepository, never()).deleteByUserId(any(UUID.class));
@@ -159,26 +286,21 @@ public class PasscodeServiceImplTest {
         // Arrange
         String newPasscode = "abc123";
         passcode.setPasscode(newPasscode);
-        ArgumentCaptor<Passcode> passcodeCaptor = ArgumentCaptor.forClass(Passcode.class);
         var emailRequest = new VerificationEmailRequest("verify", firstName, email, newPasscode);
 
-        when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.of(passcode));
         when(tokenGenerationService.generatePasscode()).thenReturn(newPasscode);
-        when(passcodeRepository.save(passcodeCaptor.capture())).thenReturn(passcode);
         doNothing().when(rabbitMQProducer).sendVerificationEmailMessage(emailRequest);
 
         // Act
         passcodeService.createPasscode(userId, firstName, email);
 
         // Assert
-        verify(passcodeRepository, times(1)).findByUserId(userId);
         verify(tokenGenerationService, times(1)).generatePasscode();
-        verify(passcodeRepository, times(1)).save(passcodeCaptor.capture());
+        verify(passcodeRepository, times(1))
+                .upsertPasscode(any(UUID.class), eq(userId), eq(newPasscode), any(Instant.class));
+        verify(passcodeRepository, never()).findByUserId(any(UUID.class));
         verify(rabbitMQProducer, times(1)).sendVerificationEmailMessage(emailRequest);
-
-        Passcode savedPasscode = passcodeCaptor.getValue();
-        assertEquals(userId, savedPasscode.getUserId());
-        assertEquals(newPasscode, savedPasscode.getPasscode());
+        verify(resendCoalescer, times(1)).markSent(ResendType.PASSCODE, userId);
     }
 
     // ------------------------------------
@@ -188,45 +310,54 @@ public class PasscodeServiceImplTest {
         // Arrange
         String newPasscode = "abc123";
         passcode.setPasscode(newPasscode);
-        ArgumentCaptor<Passcode> passcodeCaptor = ArgumentCaptor.forClass(Passcode.class);
         var userResponse = new UserResponse(firstName, "lastName", email);
         var emailRequest = new VerificationEmailRequest("verify", firstName, email, newPasscode);
 
-        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
-        when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.of(passcode));
+        when(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId)).thenReturn(true);
+        when(userService.getUser(userId)).thenReturn(userResponse);
         when(tokenGenerationService.generatePasscode()).thenReturn(newPasscode);
-        when(passcodeRepository.save(passcodeCaptor.capture())).thenReturn(passcode);
         doNothing().when(rabbitMQProducer).sendVerificationEmailMessage(emailRequest);
 
         // Act
         passcodeService.resetPasscode(userId);
 
         // Assert
-        verify(userFeignClient, times(1)).getUser(userId);
-        verify(passcodeRepository, times(1)).findByUserId(userId);
+        verify(userService, times(1)).getUser(userId);
         verify(tokenGenerationService, times(1)).generatePasscode();
-        verify(passcodeRepository, times(1)).save(passcodeCaptor.capture());
+        verify(passcodeRepository, times(1))
+                .upsertPasscode(any(UUID.class), eq(userId), eq(newPasscode), any(Instant.class));
         verify(rabbitMQProducer, times(1)).sendVerificationEmailMessage(emailRequest);
+    }
+
+    @Test
+    void testResetPasscode_RepeatedRequestSuppressed() {
+        // Arrange
+        when(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId)).thenReturn(false);
+
+        // Act
+        passcodeService.resetPasscode(userId);
 
-        Passcode savedPasscode = passcodeCaptor.getValue();
-        assertEquals(userId, savedPasscode.getUserId());
-        assertEquals(newPasscode, savedPasscode.getPasscode());
+        // Assert
+        verifyNoInteractions(userService);
+        verifyNoInteractions(passcodeRepository);
+        verifyNoInteractions(rabbitMQProducer);
     }
 
     @Test
-    void testResetPasscode_FeignException() {
+    void testResetPasscode_UserRetrievalException() {
         // Arrange
-        doThrow(feignException).when(userFeignClient).getUser(userId);
+        when(resendCoalescer.tryAcquire(ResendType.PASSCODE, userId)).thenReturn(true);
+        doThrow(UserRetrievalException.class).when(userService).getUser(userId);
 
         // Act & Assert
         assertThrows(UserRetrievalException.class, () -> passcodeService.resetPasscode(userId));
 
         // Assert
-        verify(userFeignClient, times(1)).getUser(userId);
+        verify(userService, times(1)).getUser(userId);
+        verify(resendCoalescer, times(1)).release(ResendType.PASSCODE, userId);
 
-        verify(passcodeRepository, never()).findByUserId(any(UUID.class));
         verify(tokenGenerationService, never()).generatePasscode();
-        verify(passcodeRepository, never()).save(any(Passcode.class));
+        verifyNoInteractions(passcodeRepository);
         verify(rabbitMQProducer, never()).sendVerificationEmailMessage(any(VerificationEmailRequest.class));
     }
 
@@ -235,7 +366,7 @@ public class PasscodeServiceImplTest {
     @Test
     void testDeleteUserPasscodes_Success() {
         // Arrange
-        doNothing().when(passcodeRepository).deleteByUserId(userId);
+        when(passcodeRepository.deleteByUserId(userId)).thenReturn(1);
         when(passcodeRepository.findByUserId(userId)).thenReturn(Optional.empty());
 
         // Act
@@ -266,11 +397,15 @@ public class PasscodeServiceImplTest {
 
     @Test
     void testDeleteExpiredPasscodes_Success() {
+        // Arrange
+        when(passcodeRepository.deleteExpiredChunk(any(Instant.class), eq(100))).thenReturn(100);
+
         // Act
-        passcodeService.deleteExpiredPasscodes();
+        int deleted = passcodeService.deleteExpiredPasscodes(100);
 
         // Assert
-        verify(passcodeRepository, times(1)).deleteAllByExpiryDateBefore(any(Instant.class));
+        assertEquals(100, deleted);
+        verify(passcodeRepository, times(1)).deleteExpiredChunk(any(Instant.class), eq(100));
     }
 
 }
@@ -1,28 +1,28 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
-import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.cache.PasswordHashCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer;
+import com.mariuszilinskas.vsp.auth.identity.cache.ResendCoalescer.ResendType;
 import com.mariuszilinskas.vsp.auth.identity.dto.*;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
 import com.mariuszilinskas.vsp.auth.identity.exception.*;
 import com.mariuszilinskas.vsp.auth.identity.model.Password;
-import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
 import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.PasswordRepository;
-import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
-import com.mariuszilinskas.vsp.auth.identity.util.TestUtils;
-import feign.FeignException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
-import java.time.Instant;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -46,11 +46,18 @@ public class PasswordServiceImplTest {
     private PasswordRepository passwordRepository;
 
     @Mock
-    private UserFeignClient userFeignClient;
+    private CredentialLookupRepository credentialLookupRepository;
 
     @Mock
     private RabbitMQProducer rabbitMQProducer;
 
+    @Mock
+    private ResendCoalescer resendCoalescer;
+
+    @Spy
+    private PasswordHashCache passwordHashCache =
+            new PasswordHashCache(mock(RabbitMQProducer.class), new SimpleMeterRegistry());
+
     @InjectMocks
     private PasswordServiceImpl passwordService;
 
@@ -58,16 +65,12 @@ public class PasswordServiceImplTest {
     private final String email = "user@email.com";
     private final String token = RandomStringUtils.randomAlphanumeric(20).toLowerCase();
     private final Password password = new Password(userId);
-    private final ResetToken resetToken = new ResetToken(userId);
-    private final FeignException feignException = TestUtils.createFeignException();
 
     // ------------------------------------
 
     @BeforeEach
     void setUp() {
         password.setPasswordHash("encodedPassword");
-        resetToken.setToken(token);
-        resetToken.setExpiryDate(Instant.now().plusMillis(IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS));
     }
 
     // ------------------------------------
@@ -76,23 +79,19 @@ public class PasswordServiceImplTest {
     void testCreateNewPassword_Success() {
         // Arrange
         String newPassword = "Password1";
-        ArgumentCaptor<Password> captor = ArgumentCaptor.forClass(Password.class);
         CredentialsRequest request = new CredentialsRequest(userId, "firstName", email, newPassword);
 
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.empty());
         when(passwordEncoder.encode(newPassword)).thenReturn(password.getPasswordHash());
-        when(passwordRepository.save(captor.capture())).thenReturn(password);
 
         // Act
         passwordService.createNewPassword(request);
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
         verify(passwordEncoder, times(1)).encode(newPassword);
-        verify(passwordRepository, times(1)).save(captor.capture());
-
-        Password savedPassword = captor.getValue();
-        assertEquals(password.getPasswordHash(), savedPassword.getPasswordHash());
+        verify(passwordRepository, times(1)).upsertPassword(
+                any(UUID.class), eq(userId), eq(password.getPasswordHash()), any(ZonedDateTime.class));
+        verify(passwordRepository, never()).findByUserId(any(UUID.class));
+        verify(passwordHashCache, times(1)).invalidate(userId);
     }
 
     // ------------------------------------
@@ -102,14 +101,14 @@ public class PasswordServiceImplTest {
         // Arrange
         var request = new VerifyPasswordRequest(userId, "Password1!");
 
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.of(password));
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.of(password.getPasswordHash()));
         when(passwordEncoder.matches(request.password(), password.getPasswordHash())).thenReturn(true);
 
         // Act
         passwordService.verifyPassword(request);
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, times(1)).matches(request.password(), password.getPasswordHash());
     }
 
@@ -118,14 +117,14 @@ public class PasswordServiceImplTest {
         // Arrange
         var request = new VerifyPasswordRequest(userId, "IncorrectPassword1!");
 
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.of(password));
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.of(password.getPasswordHash()));
         when(passwordEncoder.matches(request.password(), password.getPasswordHash())).thenReturn(false);
 
         // Act & Assert
         assertThrows(CredentialsValidationException.class, () -> passwordService.verifyPassword(request));
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, times(1)).matches(request.password(), password.getPasswordHash());
     }
 
@@ -133,13 +132,13 @@ public class PasswordServiceImplTest {
     void testVerifyPassword_PasswordNotFound() {
         // Arrange
         var request = new VerifyPasswordRequest(userId, "Password1!");
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> passwordService.verifyPassword(request));
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, never()).matches(request.password(), password.getPasswordHash());
     }
 
@@ -149,39 +148,57 @@ public class PasswordServiceImplTest {
     void testForgotPassword_Success() {
         // Arrange
         ForgotPasswordRequest forgotPasswordRequest = new ForgotPasswordRequest(email);
-        AuthDetails authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
-        var userResponse = new UserResponse("firstName", "lastName", email);
-        var emailRequest = new ResetPasswordEmailRequest("reset", "firstName", email, resetToken.getToken());
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE,
+                "firstName", "lastName", email);
+        var emailRequest = new ResetPasswordEmailRequest("reset", "firstName", email, token);
 
-        when(userService.getUserAuthDetailsWithEmail(email)).thenReturn(authDetails);
-        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
-        when(resetTokenService.createResetToken(userId)).thenReturn(resetToken.getToken());
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        when(userService.getUserAccountWithEmail(email)).thenReturn(account);
+        when(resetTokenService.createResetToken(userId)).thenReturn(token);
         doNothing().when(rabbitMQProducer).sendResetPasswordEmailMessage(emailRequest);
 
         // Act
         passwordService.forgotPassword(forgotPasswordRequest);
 
         // Assert
-        verify(userService, times(1)).getUserAuthDetailsWithEmail(email);
-        verify(userFeignClient, times(1)).getUser(userId);
+        verify(userService, times(1)).getUserAccountWithEmail(email);
+        verify(userService, never()).getUserAuthDetailsWithEmail(email);
+        verify(userService, never()).getUser(any(UUID.class));
         verify(resetTokenService, times(1)).createResetToken(userId);
         verify(rabbitMQProducer, times(1)).sendResetPasswordEmailMessage(emailRequest);
     }
 
+    @Test
+    void testForgotPassword_RepeatedRequestSuppressed() {
+        // Arrange
+        ForgotPasswordRequest request = new ForgotPasswordRequest(email);
+
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(false);
+
+        // Act
+        passwordService.forgotPassword(request);
+
+        // Assert
+        verifyNoInteractions(userService);
+        verifyNoInteractions(resetTokenService);
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
     @Test
     void testForgotPassword_FailsToFindUser() {
         // Arrange
         ForgotPasswordRequest request = new ForgotPasswordRequest(email);
 
-        doThrow(EmailVerificationException.class).when(userService).getUserAuthDetailsWithEmail(email);
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        doThrow(EmailVerificationException.class).when(userService).getUserAccountWithEmail(email);
 
         // Act & Assert
         assertThrows(EmailVerificationException.class, () -> passwordService.forgotPassword(request));
 
         // Assert
-        verify(userService, times(1)).getUserAuthDetailsWithEmail(email);
+        verify(resendCoalescer, never()).release(any(ResendType.class), anyString());
+        verify(userService, times(1)).getUserAccountWithEmail(email);
 
-        verify(userFeignClient, never()).getUser(any(UUID.class));
         verify(resetTokenService, never()).createResetToken(any(UUID.class));
         verify(rabbitMQProducer, never()).sendResetPasswordEmailMessage(any(ResetPasswordEmailRequest.class));
     }
@@ -190,36 +207,71 @@ public class PasswordServiceImplTest {
     void testForgotPassword_SuspendedUser() {
         // Arrange
         ForgotPasswordRequest request = new ForgotPasswordRequest(email);
-        AuthDetails authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.SUSPENDED);
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.SUSPENDED,
+                "firstName", "lastName", email);
 
-        when(userService.getUserAuthDetailsWithEmail(email)).thenReturn(authDetails);
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        when(userService.getUserAccountWithEmail(email)).thenReturn(account);
 
         // Act & Assert
         assertThrows(UserStatusAccessException.class, () -> passwordService.forgotPassword(request));
 
         // Assert
-        verify(userService, times(1)).getUserAuthDetailsWithEmail(email);
+        verify(resendCoalescer, never()).release(any(ResendType.class), anyString());
+        verify(userService, times(1)).getUserAccountWithEmail(email);
 
-        verify(userFeignClient, never()).getUser(userId);
         verify(resetTokenService, never()).createResetToken(any(UUID.class));
         verify(rabbitMQProducer, never()).sendResetPasswordEmailMessage(any(ResetPasswordEmailRequest.class));
     }
 
     @Test
-    void testForgotPassword_FeignException() {
+    void testForgotPassword_UnknownUser() {
+        // Arrange
+        ForgotPasswordRequest request = new ForgotPasswordRequest(email);
+
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        doThrow(CredentialsValidationException.class).when(userService).getUserAccountWithEmail(email);
+
+        // Act & Assert
+        assertThrows(CredentialsValidationException.class, () -> passwordService.forgotPassword(request));
+
+        // Assert
+        verify(resendCoalescer, never()).release(any(ResendType.class), anyString());
+        verifyNoInteractions(resetTokenService);
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testForgotPassword_UsersServiceUnavailable() {
         // Arrange
         ForgotPasswordRequest request = new ForgotPasswordRequest(email);
-        AuthDetails authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
 
-        when(userService.getUserAuthDetailsWithEmail(email)).thenReturn(authDetails);
-        doThrow(feignException).when(userFeignClient).getUser(userId);
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        doThrow(UsersServiceUnavailableException.class).when(userService).getUserAccountWithEmail(email);
+
+        // Act & Assert
+        assertThrows(UsersServiceUnavailableException.class, () -> passwordService.forgotPassword(request));
+
+        // Assert
+        verify(resendCoalescer, times(1)).release(ResendType.RESET_PASSWORD, email);
+        verifyNoInteractions(resetTokenService);
+        verifyNoInteractions(rabbitMQProducer);
+    }
+
+    @Test
+    void testForgotPassword_UserRetrievalException() {
+        // Arrange
+        ForgotPasswordRequest request = new ForgotPasswordRequest(email);
+
+        when(resendCoalescer.tryAcquire(ResendType.RESET_PASSWORD, email)).thenReturn(true);
+        doThrow(UserRetrievalException.class).when(userService).getUserAccountWithEmail(email);
 
         // Act & Assert
         assertThrows(UserRetrievalException.class, () -> passwordService.forgotPassword(request));
 
         // Assert
-        verify(userService, times(1)).getUserAuthDetailsWithEmail(email);
-        verify(userFeignClient, times(1)).getUser(any(UUID.class));
+        verify(resendCoalescer, times(1)).release(ResendType.RESET_PASSWORD, email);
+        verify(userService, times(1)).getUserAccountWithEmail(email);
 
         verify(resetTokenService, never()).createResetToken(any(UUID.class));
         verify(rabbitMQProducer, never()).sendResetPasswordEmailMessage(any(ResetPasswordEmailRequest.class));
@@ -234,76 +286,55 @@ public class PasswordServiceImplTest {
         String newPasswordHash = "HashedPassword";
         password.setPasswordHash(newPasswordHash);
 
-        ArgumentCaptor<Password> captor = ArgumentCaptor.forClass(Password.class);
-        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, resetToken.getToken());
+        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, token);
 
-        when(resetTokenService.findResetToken(request.resetToken())).thenReturn(resetToken);
+        when(resetTokenService.consumeResetToken(token)).thenReturn(userId);
         when(passwordEncoder.encode(newPassword)).thenReturn(newPasswordHash);
-        when(passwordRepository.save(captor.capture())).thenReturn(password);
 
         // Act
         passwordService.resetPassword(request);
 
         // Assert
-        verify(resetTokenService, times(1)).findResetToken(resetToken.getToken());
+        verify(resetTokenService, times(1)).consumeResetToken(token);
         verify(passwordEncoder, times(1)).encode(newPassword);
-        verify(passwordRepository, times(1)).save(captor.capture());
-
-        Password savedPassword = captor.getValue();
-        assertEquals(newPasswordHash, savedPassword.getPasswordHash());
+        verify(passwordRepository, times(1))
+                .upsertPassword(any(UUID.class), eq(userId), eq(newPasswordHash), any(ZonedDateTime.class));
     }
 
     @Test
     void testResetPassword_ExpiredResetToken() {
         // Arrange
         String newPassword = "Password1";
-        resetToken.setExpiryDate(Instant.now().minusSeconds(2));
-        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, resetToken.getToken());
+        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, token);
 
-        when(resetTokenService.findResetToken(request.resetToken())).thenReturn(resetToken);
+        doThrow(new ResetTokenValidationException()).when(resetTokenService).consumeResetToken(token);
 
         // Act & Assert
         assertThrows(ResetTokenValidationException.class, () -> passwordService.resetPassword(request));
 
         // Assert
-        verify(resetTokenService, times(1)).findResetToken(resetToken.getToken());
+        verify(resetTokenService, times(1)).consumeResetToken(token);
         verify(passwordEncoder, never()).encode(anyString());
-        verify(passwordRepository, never()).save(any(Password.class));
-    }
-
-    @Test
-    void testResetPassword_IncorrectResetToken() {
-        // Arrange
-        String newPassword = "Password1";
-        String incorrectToken = "incorrect_reset_token";
-        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, incorrectToken);
-
-        when(resetTokenService.findResetToken(request.resetToken())).thenReturn(resetToken);
-
-        // Act & Assert
-        assertThrows(ResetTokenValidationException.class, () -> passwordService.resetPassword(request));
-
-        // Assert
-        verify(resetTokenService, times(1)).findResetToken(incorrectToken);
-        verify(passwordEncoder, never()).encode(anyString());
-        verify(passwordRepository, never()).save(any(Password.class));
+        verify(passwordRepository, never())
+                .upsertPassword(any(UUID.class), any(UUID.class), anyString(), any(ZonedDateTime.class));
     }
 
     @Test
     void testResetPassword_ResetTokenNotFound() {
         // Arrange
         String newPassword = "Password1";
-        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, resetToken.getToken());
+        ResetPasswordRequest request = new ResetPasswordRequest(newPassword, token);
 
-        doThrow(ResourceNotFoundException.class).when(resetTokenService).findResetToken(request.resetToken());
+        doThrow(ResourceNotFoundException.class).when(resetTokenService).consumeResetToken(token);
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> passwordService.resetPassword(request));
 
         // Assert
-        verify(resetTokenService, times(1)).findResetToken(resetToken.getToken());
+        verify(resetTokenService, times(1)).consumeResetToken(token);
         verify(passwordEncoder, never()).encode(anyString());
-        verify(passwordRepository, never()).save(any(Password.class));
+        verify(passwordRepository, never())
+                .upsertPassword(any(UUID.class), any(UUID.class), anyString(), any(ZonedDateTime.class));
     }
 
     // ------------------------------------
@@ -316,25 +347,21 @@ public class PasswordServiceImplTest {
         String newPasswordHash = "HashedPassword";
         password.setPasswordHash(newPasswordHash);
 
-        ArgumentCaptor<Password> captor = ArgumentCaptor.forClass(Password.class);
         var request = new UpdatePasswordRequest(currentPassword, newPassword);
 
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.of(password));
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.of(password.getPasswordHash()));
         when(passwordEncoder.matches(request.currentPassword(), password.getPasswordHash())).thenReturn(true);
         when(passwordEncoder.encode(newPassword)).thenReturn(newPasswordHash);
-        when(passwordRepository.save(captor.capture())).thenReturn(password);
 
         // Act
         passwordService.updatePassword(userId, request);
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, times(1)).matches(request.currentPassword(), password.getPasswordHash());
         verify(passwordEncoder, times(1)).encode(newPassword);
-        verify(passwordRepository, times(1)).save(captor.capture());
-
-        Password savedPassword = captor.getValue();
-        assertEquals(newPasswordHash, savedPassword.getPasswordHash());
+        verify(passwordRepository, times(1))
+                .upsertPassword(any(UUID.class), eq(userId), eq(newPasswordHash), any(ZonedDateTime.class));
     }
 
     @Test
@@ -345,33 +372,35 @@ public class PasswordServiceImplTest {
 
         var request = new UpdatePasswordRequest("IncorrectPassword1", "Password1!");
 
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.of(password));
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.of(password.getPasswordHash()));
         when(passwordEncoder.matches(request.currentPassword(), password.getPasswordHash())).thenReturn(false);
 
         // Act & Assert
         assertThrows(CredentialsValidationException.class, () -> passwordService.updatePassword(userId, request));
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, times(1)).matches(request.currentPassword(), password.getPasswordHash());
         verify(passwordEncoder, never()).encode(anyString());
-        verify(passwordRepository, never()).save(any(Password.class));
+        verify(passwordRepository, never())
+                .upsertPassword(any(UUID.class), any(UUID.class), anyString(), any(ZonedDateTime.class));
     }
 
     @Test
     void testUpdatePassword_PasswordNotFound() {
         // Arrange
         var request = new UpdatePasswordRequest("CurrentPassword1", "NewPassword1!");
-        when(passwordRepository.findByUserId(userId)).thenReturn(Optional.empty());
+        when(credentialLookupRepository.findPasswordHash(userId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> passwordService.updatePassword(userId, request));
 
         // Assert
-        verify(passwordRepository, times(1)).findByUserId(userId);
+        verify(credentialLookupRepository, times(1)).findPasswordHash(userId);
         verify(passwordEncoder, never()).matches(anyString(), anyString());
         verify(passwordEncoder, never()).encode(anyString());
-        verify(passwordRepository, never()).save(any(Password.class));
+        verify(passwordRepository, never())
+                .upsertPassword(any(UUID.class), any(UUID.class), anyString(), any(ZonedDateTime.class));
     }
 
     // ------------------------------------
@@ -379,7 +408,7 @@ public class PasswordServiceImplTest {
     @Test
     void testDeleteUserPasswords_Success() {
         // Arrange
-        doNothing().when(passwordRepository).deleteByUserId(userId);
+        when(passwordRepository.deleteByUserId(userId)).thenReturn(1);
         when(passwordRepository.findByUserId(userId)).thenReturn(Optional.empty());
 
         // Act
@@ -387,6 +416,7 @@ public class PasswordServiceImplTest {
 
         // Assert
         verify(passwordRepository, times(1)).deleteByUserId(userId);
+        verify(passwordHashCache, times(1)).invalidate(userId);
         assertFalse(passwordRepository.findByUserId(userId).isPresent());
     }
 
@@ -394,7 +424,7 @@ public class PasswordServiceImplTest {
     void testDeleteUserPasswords_NonExistingPassword() {
         // Arrange
         UUID nonExistentUserId = UUID.randomUUID();
-        doNothing().when(passwordRepository).deleteByUserId(nonExistentUserId);
+        when(passwordRepository.deleteByUserId(nonExistentUserId)).thenReturn(0);
         when(passwordRepository.findByUserId(nonExistentUserId)).thenReturn(Optional.empty());
 
         // Act
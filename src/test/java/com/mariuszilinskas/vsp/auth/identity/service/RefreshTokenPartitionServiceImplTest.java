@@ -0,0 +1,123 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenPartitionServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private RefreshTokenPartitionServiceImpl refreshTokenPartitionService;
+
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        setPrivateField(refreshTokenPartitionService, "enabled", true);
+        setPrivateField(refreshTokenPartitionService, "daysAhead", 2);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private String partitionName(LocalDate day) {
+        return "refresh_tokens_p" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testCreateFuturePartitions_CreatesMissingPartitions() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(partitionName(today)));
+
+        // Act
+        refreshTokenPartitionService.createFuturePartitions();
+
+        // Assert
+        verify(jdbcTemplate, never()).execute(contains(partitionName(today) + " PARTITION OF"));
+        verify(jdbcTemplate, times(1)).execute(contains(partitionName(today.plusDays(1)) + " PARTITION OF"));
+        verify(jdbcTemplate, times(1)).execute(contains(partitionName(today.plusDays(2)) + " PARTITION OF"));
+    }
+
+    @Test
+    void testCreateFuturePartitions_Disabled() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(refreshTokenPartitionService, "enabled", false);
+
+        // Act
+        refreshTokenPartitionService.createFuturePartitions();
+
+        // Assert
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testDropExpiredPartitions_DropsOnlyPastPartitions() {
+        // Arrange
+        String expiredPartition = partitionName(today.minusDays(1));
+        List<String> partitions = List.of(expiredPartition, partitionName(today), partitionName(today.plusDays(1)));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(partitions);
+
+        // Act
+        int dropped = refreshTokenPartitionService.dropExpiredPartitions();
+
+        // Assert
+        assertEquals(1, dropped);
+        verify(jdbcTemplate, times(1)).execute("ALTER TABLE refresh_tokens DETACH PARTITION " + expiredPartition);
+        verify(jdbcTemplate, times(1)).execute("DROP TABLE " + expiredPartition);
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    @Test
+    void testDropExpiredPartitions_IgnoresUnknownTables() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("refresh_tokens_legacy"));
+
+        // Act
+        int dropped = refreshTokenPartitionService.dropExpiredPartitions();
+
+        // Assert
+        assertEquals(0, dropped);
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testDropExpiredPartitions_Disabled() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(refreshTokenPartitionService, "enabled", false);
+
+        // Act
+        int dropped = refreshTokenPartitionService.dropExpiredPartitions();
+
+        // Assert
+        assertEquals(0, dropped);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+}
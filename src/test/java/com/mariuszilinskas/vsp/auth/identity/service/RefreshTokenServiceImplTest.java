@@ -1,7 +1,11 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.exception.JwtTokenValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.ResourceNotFoundException;
 import com.mariuszilinskas.vsp.auth.identity.model.RefreshToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository.RefreshTokenDetails;
+import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenGroupCommitter;
 import com.mariuszilinskas.vsp.auth.identity.repository.RefreshTokenRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +29,12 @@ public class RefreshTokenServiceImplTest {
     @Mock
     private RefreshTokenRepository refreshTokenRepository;
 
+    @Mock
+    private RefreshTokenGroupCommitter refreshTokenGroupCommitter;
+
+    @Mock
+    private CredentialLookupRepository credentialLookupRepository;
+
     @InjectMocks
     private RefreshTokenServiceImpl refreshTokenService;
 
@@ -44,22 +54,83 @@ public class RefreshTokenServiceImplTest {
     @Test
     void testCreateNewRefreshToken_Success() {
         // Arrange
-        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        ArgumentCaptor<Instant> expiryCaptor = ArgumentCaptor.forClass(Instant.class);
+
+        // Act
+        refreshTokenService.createNewRefreshToken(tokenId, userId);
+
+        // Assert
+        verify(refreshTokenRepository, times(1)).insertToken(eq(tokenId), eq(userId), expiryCaptor.capture());
+        verify(refreshTokenRepository, never()).findByIdAndUserId(any(UUID.class), any(UUID.class));
+
+        assertEquals(refreshToken.getExpiryDate().toEpochMilli(), expiryCaptor.getValue().toEpochMilli(), 1000);
+    }
 
-        when(refreshTokenRepository.findByIdAndUserId(tokenId, userId)).thenReturn(Optional.empty());
-        when(refreshTokenRepository.save(captor.capture())).thenReturn(refreshToken);
+    @Test
+    void testCreateNewRefreshToken_GroupCommit() {
+        // Arrange
+        when(refreshTokenGroupCommitter.isEnabled()).thenReturn(true);
 
         // Act
         refreshTokenService.createNewRefreshToken(tokenId, userId);
 
         // Assert
-        verify(refreshTokenRepository, times(1)).findByIdAndUserId(tokenId, userId);
-        verify(refreshTokenRepository, times(1)).save(captor.capture());
+        verify(refreshTokenGroupCommitter, times(1)).insert(eq(tokenId), eq(userId), any(Instant.class));
+        verify(refreshTokenRepository, never()).insertToken(any(UUID.class), any(UUID.class), any(Instant.class));
+    }
 
-        RefreshToken savedToken = captor.getValue();
-        assertEquals(tokenId, savedToken.getId());
-        assertEquals(userId, savedToken.getUserId());
-        assertEquals(refreshToken.getExpiryDate().toEpochMilli(), savedToken.getExpiryDate().toEpochMilli(), 1000);
+    // ------------------------------------
+
+    @Test
+    void testRotateRefreshToken_Success() {
+        // Arrange
+        UUID newTokenId = UUID.randomUUID();
+        when(refreshTokenRepository.rotateToken(eq(tokenId), eq(newTokenId), eq(userId), any(Instant.class), any(Instant.class)))
+                .thenReturn(1);
+
+        // Act
+        refreshTokenService.rotateRefreshToken(tokenId, newTokenId, userId);
+
+        // Assert
+        verify(refreshTokenRepository, times(1))
+                .rotateToken(eq(tokenId), eq(newTokenId), eq(userId), any(Instant.class), any(Instant.class));
+        verify(refreshTokenRepository, never()).existsById(any(UUID.class));
+        verify(refreshTokenRepository, never()).deleteById(any(UUID.class));
+        verify(refreshTokenRepository, never()).deleteByUserId(any(UUID.class));
+    }
+
+    @Test
+    void testRotateRefreshToken_ExpiredToken() {
+        // Arrange
+        UUID newTokenId = UUID.randomUUID();
+        when(refreshTokenRepository.rotateToken(eq(tokenId), eq(newTokenId), eq(userId), any(Instant.class), any(Instant.class)))
+                .thenReturn(0);
+        when(refreshTokenRepository.existsById(tokenId)).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(JwtTokenValidationException.class,
+                () -> refreshTokenService.rotateRefreshToken(tokenId, newTokenId, userId));
+
+        // Assert
+        verify(refreshTokenRepository, times(1)).deleteById(tokenId);
+        verify(refreshTokenRepository, never()).deleteByUserId(any(UUID.class));
+    }
+
+    @Test
+    void testRotateRefreshToken_ReusedToken() {
+        // Arrange
+        UUID newTokenId = UUID.randomUUID();
+        when(refreshTokenRepository.rotateToken(eq(tokenId), eq(newTokenId), eq(userId), any(Instant.class), any(Instant.class)))
+                .thenReturn(0);
+        when(refreshTokenRepository.existsById(tokenId)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(JwtTokenValidationException.class,
+                () -> refreshTokenService.rotateRefreshToken(tokenId, newTokenId, userId));
+
+        // Assert
+        verify(refreshTokenRepository, times(1)).deleteByUserId(userId);
+        verify(refreshTokenRepository, never()).deleteById(any(UUID.class));
     }
 
     // ------------------------------------
@@ -67,28 +138,30 @@ public class RefreshTokenServiceImplTest {
     @Test
     void testGetRefreshToken_Success() {
         // Arrange
-        when(refreshTokenRepository.findById(tokenId)).thenReturn(Optional.of(refreshToken));
+        var details = new RefreshTokenDetails(userId, refreshToken.getExpiryDate());
+        when(credentialLookupRepository.findRefreshToken(tokenId)).thenReturn(Optional.of(details));
 
         // Act
-        RefreshToken response = refreshTokenService.getRefreshToken(tokenId);
+        RefreshTokenDetails response = refreshTokenService.getRefreshToken(tokenId);
 
         // Assert
         assertNotNull(response);
-        assertEquals(refreshToken.getId(), response.getId());
-        assertEquals(refreshToken.getUserId(), response.getUserId());
+        assertEquals(refreshToken.getUserId(), response.userId());
+        assertEquals(refreshToken.getExpiryDate(), response.expiryDate());
 
-        verify(refreshTokenRepository, times(1)).findById(tokenId);
+        verify(credentialLookupRepository, times(1)).findRefreshToken(tokenId);
+        verifyNoInteractions(refreshTokenRepository);
     }
 
     @Test
     void testGetRefreshToken_NotFound() {
         // Arrange
-        when(refreshTokenRepository.findById(tokenId)).thenReturn(Optional.empty());
+        when(credentialLookupRepository.findRefreshToken(tokenId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> refreshTokenService.getRefreshToken(tokenId));
 
-        verify(refreshTokenRepository, times(1)).findById(tokenId);
+        verify(credentialLookupRepository, times(1)).findRefreshToken(tokenId);
     }
 
     // ------------------------------------
@@ -113,7 +186,7 @@ public class RefreshTokenServiceImplTest {
     @Test
     void testDeleteUserRefreshTokens_success() {
         // Arrange
-        doNothing().when(refreshTokenRepository).deleteByUserId(userId);
+        when(refreshTokenRepository.deleteByUserId(userId)).thenReturn(1);
 
         // Act
         refreshTokenService.deleteUserRefreshTokens(userId);
@@ -126,11 +199,15 @@ public class RefreshTokenServiceImplTest {
 
     @Test
     void testDeleteExpiredRefreshTokens_Success() {
+        // Arrange
+        when(refreshTokenRepository.deleteExpiredChunk(any(Instant.class), eq(100))).thenReturn(100);
+
         // Act
-        refreshTokenService.deleteExpiredRefreshTokens();
+        int deleted = refreshTokenService.deleteExpiredRefreshTokens(100);
 
         // Assert
-        verify(refreshTokenRepository, times(1)).deleteAllByExpiryDateBefore(any(Instant.class));
+        assertEquals(100, deleted);
+        verify(refreshTokenRepository, times(1)).deleteExpiredChunk(any(Instant.class), eq(100));
     }
 
 }
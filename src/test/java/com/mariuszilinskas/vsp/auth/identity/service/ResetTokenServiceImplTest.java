@@ -1,7 +1,13 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.ConsumedTokenSet;
+import com.mariuszilinskas.vsp.auth.identity.cache.EphemeralCredentialStore;
+import com.mariuszilinskas.vsp.auth.identity.enums.ResetTokenMode;
+import com.mariuszilinskas.vsp.auth.identity.exception.ResetTokenValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.ResourceNotFoundException;
+import com.mariuszilinskas.vsp.auth.identity.model.Password;
 import com.mariuszilinskas.vsp.auth.identity.model.ResetToken;
+import com.mariuszilinskas.vsp.auth.identity.repository.CredentialLookupRepository;
 import com.mariuszilinskas.vsp.auth.identity.repository.ResetTokenRepository;
 import com.mariuszilinskas.vsp.auth.identity.util.IdentityUtils;
 import org.apache.commons.lang.RandomStringUtils;
@@ -11,9 +17,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,67 +42,87 @@ public class ResetTokenServiceImplTest {
     @Mock
     private ResetTokenRepository resetTokenRepository;
 
+    @Mock
+    private EphemeralCredentialStore credentialStore;
+
+    @Mock
+    private CredentialLookupRepository credentialLookupRepository;
+
+    @Spy
+    private ConsumedTokenSet consumedTokenSet = new ConsumedTokenSet();
+
     @InjectMocks
     private ResetTokenServiceImpl resetTokenService;
 
     private final UUID userId = UUID.randomUUID();
     private final ResetToken resetToken = new ResetToken(userId);
     private final String token = RandomStringUtils.randomAlphanumeric(20);
+    private final String tokenHash = IdentityUtils.hashToken(token);
+    private final Password password = new Password(userId);
 
     // ------------------------------------
 
     @BeforeEach
     void setUp() {
-        resetToken.setToken(token);
+        resetToken.setTokenHash(tokenHash);
         resetToken.setExpiryDate(Instant.now().plusMillis(IdentityUtils.FIFTEEN_MINUTES_IN_MILLIS));
+        password.setPasswordHash("encodedPassword");
+    }
+
+    private void useSignedMode() throws NoSuchFieldException, IllegalAccessException {
+        String secret = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+        setPrivateField(resetTokenService, "mode", ResetTokenMode.SIGNED);
+        setPrivateField(resetTokenService, "resetTokenSecret", secret);
+        resetTokenService.validateConfiguration();
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
     }
 
     // ------------------------------------
 
     @Test
-    void testCreateResetToken_NewToken() {
+    void testCreateResetToken_Success() {
         // Arrange
-        ArgumentCaptor<ResetToken> captor = ArgumentCaptor.forClass(ResetToken.class);
+        ArgumentCaptor<Instant> expiryCaptor = ArgumentCaptor.forClass(Instant.class);
 
-        when(resetTokenRepository.findByUserId(userId)).thenReturn(Optional.empty());
-        when(tokenGenerationService.generateResetToken()).thenReturn(resetToken.getToken());
-        when(resetTokenRepository.save(captor.capture())).thenReturn(resetToken);
+        when(tokenGenerationService.generateResetToken()).thenReturn(token);
 
         // Act
-        resetTokenService.createResetToken(userId);
+        String createdToken = resetTokenService.createResetToken(userId);
 
         // Assert
-        verify(resetTokenRepository, times(1)).findByUserId(userId);
-        verify(resetTokenRepository, times(1)).save(captor.capture());
+        verify(resetTokenRepository, times(1))
+                .upsertResetToken(any(UUID.class), eq(userId), eq(tokenHash), expiryCaptor.capture());
+        verify(resetTokenRepository, never()).findByUserId(any(UUID.class));
+        verify(credentialStore, times(1)).storeResetToken(any(ResetToken.class));
 
-        ResetToken savedToken = captor.getValue();
-        assertEquals(userId, savedToken.getUserId());
-        assertEquals(resetToken.getToken(), savedToken.getToken());
-        assertEquals(resetToken.getExpiryDate().toEpochMilli(), savedToken.getExpiryDate().toEpochMilli(), 1000);
+        assertEquals(token, createdToken);
+        assertEquals(resetToken.getExpiryDate().toEpochMilli(), expiryCaptor.getValue().toEpochMilli(), 1000);
     }
 
     @Test
-    void testCreateResetToken_ExistingToken() {
+    void testCreateResetToken_MemoryOnly() {
         // Arrange
-        UUID existingUserId = UUID.randomUUID();
-        resetToken.setUserId(existingUserId);
         ArgumentCaptor<ResetToken> captor = ArgumentCaptor.forClass(ResetToken.class);
 
-        when(resetTokenRepository.findByUserId(existingUserId)).thenReturn(Optional.of(resetToken));
-        when(tokenGenerationService.generateResetToken()).thenReturn(resetToken.getToken());
-        when(resetTokenRepository.save(captor.capture())).thenReturn(resetToken);
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        when(tokenGenerationService.generateResetToken()).thenReturn(token);
 
         // Act
-        resetTokenService.createResetToken(existingUserId);
+        String createdToken = resetTokenService.createResetToken(userId);
 
         // Assert
-        verify(resetTokenRepository, times(1)).findByUserId(existingUserId);
-        verify(resetTokenRepository, times(1)).save(captor.capture());
+        verify(credentialStore, times(1)).storeResetToken(captor.capture());
+        verifyNoInteractions(resetTokenRepository);
 
-        ResetToken savedToken = captor.getValue();
-        assertEquals(existingUserId, savedToken.getUserId());
-        assertEquals(resetToken.getToken(), savedToken.getToken());
-        assertEquals(resetToken.getExpiryDate().toEpochMilli(), savedToken.getExpiryDate().toEpochMilli(), 1000);
+        assertEquals(token, createdToken);
+        assertEquals(userId, captor.getValue().getUserId());
+        assertEquals(tokenHash, captor.getValue().getTokenHash());
     }
 
     // ------------------------------------
@@ -98,29 +130,207 @@ public class ResetTokenServiceImplTest {
     @Test
     void testFindResetToken_Success() {
         // Arrange
-        when(resetTokenRepository.findByToken(resetToken.getToken())).thenReturn(Optional.of(resetToken));
+        when(resetTokenRepository.findByTokenHash(tokenHash)).thenReturn(Optional.of(resetToken));
 
         // Act
-        ResetToken foundToken = resetTokenService.findResetToken(resetToken.getToken());
+        ResetToken foundToken = resetTokenService.findResetToken(token);
 
         // Assert
-        verify(resetTokenRepository, times(1)).findByToken(resetToken.getToken());
+        verify(resetTokenRepository, times(1)).findByTokenHash(tokenHash);
 
-        assertEquals(resetToken.getToken(), foundToken.getToken());
+        assertEquals(tokenHash, foundToken.getTokenHash());
         assertEquals(resetToken.getUserId(), foundToken.getUserId());
         assertEquals(resetToken.getExpiryDate(), foundToken.getExpiryDate());
     }
 
+    @Test
+    void testFindResetToken_InMemory() {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+        when(credentialStore.findResetToken(tokenHash)).thenReturn(Optional.of(resetToken));
+
+        // Act
+        ResetToken foundToken = resetTokenService.findResetToken(token);
+
+        // Assert
+        verify(credentialStore, times(1)).findResetToken(tokenHash);
+        verifyNoInteractions(resetTokenRepository);
+
+        assertEquals(resetToken, foundToken);
+    }
+
     @Test
     void testFindResetToken_NotFound() {
         // Arrange
-        when(resetTokenRepository.findByToken(resetToken.getToken())).thenReturn(Optional.empty());
+        when(resetTokenRepository.findByTokenHash(tokenHash)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> resetTokenService.findResetToken(token));
+
+        // Assert
+        verify(resetTokenRepository, times(1)).findByTokenHash(tokenHash);
+        verify(credentialStore, times(1)).rememberMissingResetToken(tokenHash);
+    }
+
+    @Test
+    void testFindResetToken_KnownMissing() {
+        // Arrange
+        when(credentialStore.isMissingResetToken(tokenHash)).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> resetTokenService.findResetToken(token));
+
+        // Assert
+        verifyNoInteractions(resetTokenRepository);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testConsumeResetToken_Stored() {
+        // Arrange
+        when(resetTokenRepository.findByTokenHash(tokenHash)).thenReturn(Optional.of(resetToken));
+
+        // Act
+        UUID consumedUserId = resetTokenService.consumeResetToken(token);
+
+        // Assert
+        assertEquals(userId, consumedUserId);
+        verify(credentialStore, times(1)).removeUserResetTokens(userId);
+        verify(resetTokenRepository, times(1)).deleteByUserId(userId);
+    }
+
+    @Test
+    void testConsumeResetToken_StoredExpired() {
+        // Arrange
+        resetToken.setExpiryDate(Instant.now().minusSeconds(2));
+        when(resetTokenRepository.findByTokenHash(tokenHash)).thenReturn(Optional.of(resetToken));
+
+        // Act & Assert
+        assertThrows(ResetTokenValidationException.class, () -> resetTokenService.consumeResetToken(token));
+
+        // Assert
+        verify(resetTokenRepository, never()).deleteByUserId(any(UUID.class));
+    }
+
+    @Test
+    void testConsumeResetToken_ConsumedOnAnotherInstance() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange: two instances, each with its own store, sharing the database
+        Map<String, ResetToken> database = new HashMap<>();
+        doAnswer(invocation -> {
+            ResetToken stored = new ResetToken(invocation.getArgument(1));
+            stored.setTokenHash(invocation.getArgument(2));
+            stored.setExpiryDate(invocation.getArgument(3));
+            database.put(stored.getTokenHash(), stored);
+            return 1;
+        }).when(resetTokenRepository).upsertResetToken(any(UUID.class), eq(userId), anyString(), any(Instant.class));
+        when(resetTokenRepository.findByTokenHash(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(database.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> {
+            database.values().removeIf(stored -> stored.getUserId().equals(invocation.getArgument(0)));
+            return 1;
+        }).when(resetTokenRepository).deleteByUserId(userId);
+        when(tokenGenerationService.generateResetToken()).thenReturn(token);
+
+        var instanceA = new ResetTokenServiceImpl(resetTokenRepository, credentialLookupRepository,
+                tokenGenerationService, createDbBackedStore(), new ConsumedTokenSet());
+        var instanceB = new ResetTokenServiceImpl(resetTokenRepository, credentialLookupRepository,
+                tokenGenerationService, createDbBackedStore(), new ConsumedTokenSet());
+
+        // Act
+        String issued = instanceA.createResetToken(userId);
+        assertEquals(userId, instanceB.consumeResetToken(issued));
+
+        // Assert
+        assertThrows(ResourceNotFoundException.class, () -> instanceA.consumeResetToken(issued));
+        assertThrows(ResourceNotFoundException.class, () -> instanceA.consumeResetToken(issued));
+        verify(resetTokenRepository, times(2)).findByTokenHash(tokenHash); // the second miss is remembered
+    }
+
+    private EphemeralCredentialStore createDbBackedStore() throws NoSuchFieldException, IllegalAccessException {
+        var store = new EphemeralCredentialStore();
+        setPrivateField(store, "enabled", true);
+        setPrivateField(store, "dbFallback", true);
+        setPrivateField(store, "maxMissingResetTokens", 100);
+        return store;
+    }
+
+    @Test
+    void testValidateConfiguration_SignedWithoutSecret() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(resetTokenService, "mode", ResetTokenMode.SIGNED);
+        setPrivateField(resetTokenService, "resetTokenSecret", "");
 
         // Act & Assert
-        assertThrows(ResourceNotFoundException.class, () -> resetTokenService.findResetToken(resetToken.getToken()));
+        assertThrows(IllegalStateException.class, () -> resetTokenService.validateConfiguration());
+    }
+
+    @Test
+    void testValidateConfiguration_SignedWithShortSecret() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        String secret = Base64.getEncoder().encodeToString("too-short".getBytes(StandardCharsets.UTF_8));
+        setPrivateField(resetTokenService, "mode", ResetTokenMode.SIGNED);
+        setPrivateField(resetTokenService, "resetTokenSecret", secret);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> resetTokenService.validateConfiguration());
+    }
+
+    @Test
+    void testConsumeResetToken_Signed() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        useSignedMode();
+        when(credentialLookupRepository.findPasswordHash(userId)).thenAnswer(invocation -> Optional.of(password.getPasswordHash()));
+        String signedToken = resetTokenService.createResetToken(userId);
+
+        // Act
+        UUID consumedUserId = resetTokenService.consumeResetToken(signedToken);
 
         // Assert
-        verify(resetTokenRepository, times(1)).findByToken(resetToken.getToken());
+        assertEquals(userId, consumedUserId);
+        verifyNoInteractions(resetTokenRepository);
+        verifyNoInteractions(tokenGenerationService);
+    }
+
+    @Test
+    void testConsumeResetToken_SignedReused() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        useSignedMode();
+        when(credentialLookupRepository.findPasswordHash(userId)).thenAnswer(invocation -> Optional.of(password.getPasswordHash()));
+        String signedToken = resetTokenService.createResetToken(userId);
+        resetTokenService.consumeResetToken(signedToken);
+
+        // Act & Assert
+        assertThrows(ResetTokenValidationException.class, () -> resetTokenService.consumeResetToken(signedToken));
+    }
+
+    @Test
+    void testConsumeResetToken_SignedAfterPasswordChange() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        useSignedMode();
+        when(credentialLookupRepository.findPasswordHash(userId)).thenAnswer(invocation -> Optional.of(password.getPasswordHash()));
+        String signedToken = resetTokenService.createResetToken(userId);
+        password.setPasswordHash("newEncodedPassword");
+
+        // Act & Assert
+        assertThrows(ResetTokenValidationException.class, () -> resetTokenService.consumeResetToken(signedToken));
+
+        // Assert
+        verify(consumedTokenSet, never()).markConsumed(anyString(), any(Instant.class));
+    }
+
+    @Test
+    void testConsumeResetToken_SignedTampered() throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        useSignedMode();
+        when(credentialLookupRepository.findPasswordHash(userId)).thenAnswer(invocation -> Optional.of(password.getPasswordHash()));
+        byte[] bytes = Base64.getUrlDecoder().decode(resetTokenService.createResetToken(userId));
+        bytes[5] ^= 1;
+        String tamperedToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        // Act & Assert
+        assertThrows(ResetTokenValidationException.class, () -> resetTokenService.consumeResetToken(tamperedToken));
+        assertThrows(ResetTokenValidationException.class, () -> resetTokenService.consumeResetToken("not-a-token"));
     }
 
     // ------------------------------------
@@ -128,7 +338,7 @@ public class ResetTokenServiceImplTest {
     @Test
     void testDeleteResetToken_Success() {
         // Arrange
-        doNothing().when(resetTokenRepository).deleteByUserId(userId);
+        when(resetTokenRepository.deleteByUserId(userId)).thenReturn(1);
 
         // Act
         resetTokenService.deleteUserResetTokens(userId);
@@ -144,7 +354,7 @@ public class ResetTokenServiceImplTest {
     void testDeleteResetToken_NonExistingToken() {
         // Arrange
         UUID nonExistentUserId = UUID.randomUUID();
-        doNothing().when(resetTokenRepository).deleteByUserId(nonExistentUserId);
+        when(resetTokenRepository.deleteByUserId(nonExistentUserId)).thenReturn(0);
 
         // Act
         resetTokenService.deleteUserResetTokens(nonExistentUserId);
@@ -157,11 +367,28 @@ public class ResetTokenServiceImplTest {
 
     @Test
     void testDeleteExpiredResetTokens_Success() {
+        // Arrange
+        when(resetTokenRepository.deleteExpiredChunk(any(Instant.class), eq(100))).thenReturn(7);
+
+        // Act
+        int deleted = resetTokenService.deleteExpiredResetTokens(100);
+
+        // Assert
+        assertEquals(7, deleted);
+        verify(resetTokenRepository, times(1)).deleteExpiredChunk(any(Instant.class), eq(100));
+    }
+
+    @Test
+    void testDeleteExpiredResetTokens_MemoryOnly() {
+        // Arrange
+        when(credentialStore.isMemoryOnly()).thenReturn(true);
+
         // Act
-        resetTokenService.deleteExpiredResetTokens();
+        int deleted = resetTokenService.deleteExpiredResetTokens(100);
 
         // Assert
-        verify(resetTokenRepository, times(1)).deleteAllByExpiryDateBefore(any(Instant.class));
+        assertEquals(0, deleted);
+        verifyNoInteractions(resetTokenRepository);
     }
 
 }
@@ -2,6 +2,13 @@ package com.mariuszilinskas.vsp.auth.identity.service;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TokenGenerationServiceTest {
@@ -80,4 +87,48 @@ public class TokenGenerationServiceTest {
         assertNotEquals(resetToken1, resetToken2);
     }
 
+    // ------------------------------------
+
+    @Test
+    void testGenerateTokenId_ReturnsTimeOrderedUuid() {
+        long before = System.currentTimeMillis();
+        UUID tokenId = tokenGenerationService.generateTokenId();
+        long timestamp = tokenId.getMostSignificantBits() >>> 16;
+
+        assertEquals(7, tokenId.version());
+        assertEquals(2, tokenId.variant());
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis());
+    }
+
+    @Test
+    void testGenerateTokenId_SortsByCreationTime() throws InterruptedException {
+        UUID first = tokenGenerationService.generateTokenId();
+        Thread.sleep(2);
+        UUID second = tokenGenerationService.generateTokenId();
+        assertTrue(Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits()) < 0);
+    }
+
+    @Test
+    void testGenerateTokenId_ReturnsUniqueValuesAcrossThreads() {
+        Set<UUID> tokenIds = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 8).parallel()
+                .forEach(i -> tokenIds.addAll(tokenGenerationService.generateTokenIds(10_000)));
+        assertEquals(80_000, tokenIds.size());
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testGeneratePasscodes_ReturnsRequestedCount() {
+        List<String> passcodes = tokenGenerationService.generatePasscodes(100);
+        assertEquals(100, passcodes.size());
+        assertTrue(passcodes.stream().allMatch(passcode -> passcode.length() == 6));
+    }
+
+    @Test
+    void testGenerateResetTokens_ReturnsUniqueValues() {
+        List<String> resetTokens = tokenGenerationService.generateResetTokens(1000);
+        assertEquals(1000, new HashSet<>(resetTokens).size());
+    }
+
 }
@@ -0,0 +1,290 @@
+package com.mariuszilinskas.vsp.auth.identity.service;
+
+import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
+import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.CredentialsRequest;
+import com.mariuszilinskas.vsp.auth.identity.dto.ProjectionResyncResponse;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
+import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository;
+import com.mariuszilinskas.vsp.auth.identity.repository.UserProjectionRepository.UserProjection;
+import com.mariuszilinskas.vsp.auth.identity.util.TestUtils;
+import feign.FeignException;
+import feign.Request;
+import feign.RequestTemplate;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserProjectionServiceImplTest {
+
+    @Mock
+    private UserProjectionRepository userProjectionRepository;
+
+    @Mock
+    private UserFeignClient userFeignClient;
+
+    private final UsersServiceGuard usersServiceGuard = new UsersServiceGuard(
+            CircuitBreakerConfig.ofDefaults(), BulkheadConfig.ofDefaults(), new SimpleMeterRegistry());
+
+    private UserProjectionServiceImpl userProjectionService;
+
+    private final UUID userId = UUID.randomUUID();
+    private final String email = "user@email.com";
+    private final AuthDetails authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
+    private final UserResponse userResponse = new UserResponse("firstName", "lastName", email);
+    private final UserProjection synced = new UserProjection(userId, email, "firstName", "lastName",
+            UserStatus.ACTIVE, List.of(UserRole.USER), List.of(), Instant.now());
+
+    // ------------------------------------
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userProjectionService = new UserProjectionServiceImpl(userProjectionRepository, userFeignClient,
+                usersServiceGuard, new SimpleMeterRegistry());
+        setPrivateField(userProjectionService, "enabled", true);
+        setPrivateField(userProjectionService, "maxResyncPageSize", 1000);
+    }
+
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = targetObject.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private FeignException serverError() {
+        var request = Request.create(Request.HttpMethod.GET, "", Collections.emptyMap(), null, new RequestTemplate());
+        return new FeignException.InternalServerError("Internal Server Error", request, null, Collections.emptyMap());
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testFindAuthDetailsByEmail_Synced() {
+        // Arrange
+        when(userProjectionRepository.findByEmail(email)).thenReturn(Optional.of(synced));
+
+        // Act
+        Optional<AuthDetails> result = userProjectionService.findAuthDetailsByEmail(email);
+
+        // Assert
+        assertEquals(Optional.of(authDetails), result);
+    }
+
+    @Test
+    void testFindAuthDetailsByEmail_OnlySeeded() {
+        // Arrange
+        var seeded = new UserProjection(userId, email, "firstName", null, null, List.of(), List.of(), null);
+        when(userProjectionRepository.findByEmail(email)).thenReturn(Optional.of(seeded));
+
+        // Act & Assert
+        assertTrue(userProjectionService.findAuthDetailsByEmail(email).isEmpty());
+    }
+
+    @Test
+    void testFindAuthDetailsByUserId_Disabled() throws Exception {
+        // Arrange
+        setPrivateField(userProjectionService, "enabled", false);
+
+        // Act & Assert
+        assertTrue(userProjectionService.findAuthDetailsByUserId(userId).isEmpty());
+        verifyNoInteractions(userProjectionRepository);
+    }
+
+    @Test
+    void testFindUser_Synced() {
+        // Arrange
+        when(userProjectionRepository.findByUserId(userId)).thenReturn(Optional.of(synced));
+
+        // Act
+        Optional<UserResponse> result = userProjectionService.findUser(userId);
+
+        // Assert
+        assertEquals(Optional.of(userResponse), result);
+    }
+
+    @Test
+    void testFindUserAccountByEmail_Synced() {
+        // Arrange
+        when(userProjectionRepository.findByEmail(email)).thenReturn(Optional.of(synced));
+
+        // Act
+        Optional<UserAccount> result = userProjectionService.findUserAccountByEmail(email);
+
+        // Assert
+        assertEquals(Optional.of(UserAccount.of(authDetails, userResponse)), result);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testSeed() {
+        // Arrange
+        var request = new CredentialsRequest(userId, "firstName", email, "Password1!");
+
+        // Act
+        userProjectionService.seed(request);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).seed(userId, email, "firstName");
+    }
+
+    @Test
+    void testSync_Success() {
+        // Arrange
+        ArgumentCaptor<UserProjection> captor = ArgumentCaptor.forClass(UserProjection.class);
+        when(userFeignClient.getUserAuthDetailsByUserId(userId)).thenReturn(authDetails);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+
+        // Act
+        userProjectionService.sync(userId);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).save(captor.capture());
+        UserProjection saved = captor.getValue();
+        assertEquals(email, saved.email());
+        assertEquals("lastName", saved.lastName());
+        assertEquals(UserStatus.ACTIVE, saved.status());
+        assertTrue(saved.isSynced());
+    }
+
+    @Test
+    void testSync_CombinedFetch() throws Exception {
+        // Arrange
+        setPrivateField(userProjectionService, "combinedFetchEnabled", true);
+        ArgumentCaptor<UserProjection> captor = ArgumentCaptor.forClass(UserProjection.class);
+        when(userFeignClient.getUserAccountByUserId(userId)).thenReturn(UserAccount.of(authDetails, userResponse));
+
+        // Act
+        userProjectionService.sync(userId);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).save(captor.capture());
+        assertEquals("lastName", captor.getValue().lastName());
+        verify(userFeignClient, never()).getUserAuthDetailsByUserId(any());
+        verify(userFeignClient, never()).getUser(any());
+    }
+
+    @Test
+    void testSync_UserNotFound() {
+        // Arrange
+        doThrow(TestUtils.createFeignException()).when(userFeignClient).getUserAuthDetailsByUserId(userId);
+
+        // Act
+        userProjectionService.sync(userId);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).delete(userId);
+        verify(userProjectionRepository, never()).save(any());
+    }
+
+    @Test
+    void testSync_FeignException() {
+        // Arrange
+        doThrow(serverError()).when(userFeignClient).getUserAuthDetailsByUserId(userId);
+
+        // Act
+        userProjectionService.sync(userId);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).markUnsynced(userId);
+        verify(userProjectionRepository, never()).save(any());
+    }
+
+    @Test
+    void testSync_DataAccessException() {
+        // Arrange
+        when(userFeignClient.getUserAuthDetailsByUserId(userId)).thenReturn(authDetails);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+        doThrow(new DuplicateKeyException("uk_user_auth_projection_email"))
+                .when(userProjectionRepository).save(any(UserProjection.class));
+
+        // Act
+        assertDoesNotThrow(() -> userProjectionService.sync(userId));
+
+        // Assert
+        verify(userProjectionRepository, times(1)).markUnsynced(userId);
+    }
+
+    @Test
+    void testSync_DatabaseUnavailable() {
+        // Arrange
+        when(userFeignClient.getUserAuthDetailsByUserId(userId)).thenReturn(authDetails);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+        doThrow(new DataAccessResourceFailureException("Database unavailable"))
+                .when(userProjectionRepository).save(any(UserProjection.class));
+        doThrow(new DataAccessResourceFailureException("Database unavailable"))
+                .when(userProjectionRepository).markUnsynced(userId);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> userProjectionService.sync(userId));
+    }
+
+    @Test
+    void testSync_Disabled() throws Exception {
+        // Arrange
+        setPrivateField(userProjectionService, "enabled", false);
+
+        // Act
+        userProjectionService.sync(userId);
+
+        // Assert
+        verify(userProjectionRepository, times(1)).markUnsynced(userId);
+        verifyNoInteractions(userFeignClient);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testResync_FullPage() {
+        // Arrange
+        UUID otherUserId = UUID.randomUUID();
+        when(userProjectionRepository.findCredentialUserIds(null, 2)).thenReturn(List.of(userId, otherUserId));
+        when(userFeignClient.getUserAuthDetailsByUserId(any())).thenReturn(authDetails);
+        when(userFeignClient.getUser(any())).thenReturn(userResponse);
+
+        // Act
+        ProjectionResyncResponse response = userProjectionService.resync(null, 2);
+
+        // Assert
+        assertEquals(new ProjectionResyncResponse(2, otherUserId), response);
+        verify(userProjectionRepository, times(2)).save(any());
+    }
+
+    @Test
+    void testResync_LastPage() {
+        // Arrange
+        when(userProjectionRepository.findCredentialUserIds(userId, 2)).thenReturn(List.of());
+
+        // Act
+        ProjectionResyncResponse response = userProjectionService.resync(userId, 2);
+
+        // Assert
+        assertEquals(new ProjectionResyncResponse(0, null), response);
+    }
+
+}
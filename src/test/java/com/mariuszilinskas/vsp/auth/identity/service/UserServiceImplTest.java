@@ -1,21 +1,43 @@
 package com.mariuszilinskas.vsp.auth.identity.service;
 
+import com.mariuszilinskas.vsp.auth.identity.cache.AuthDetailsCache;
+import com.mariuszilinskas.vsp.auth.identity.cache.UserAccountMemo;
 import com.mariuszilinskas.vsp.auth.identity.client.UserFeignClient;
+import com.mariuszilinskas.vsp.auth.identity.client.UsersServiceGuard;
 import com.mariuszilinskas.vsp.auth.identity.dto.AuthDetails;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserAccount;
+import com.mariuszilinskas.vsp.auth.identity.dto.UserResponse;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserRole;
 import com.mariuszilinskas.vsp.auth.identity.enums.UserStatus;
+import com.mariuszilinskas.vsp.auth.identity.exception.CredentialsValidationException;
 import com.mariuszilinskas.vsp.auth.identity.exception.FeignClientException;
+import com.mariuszilinskas.vsp.auth.identity.exception.UserRetrievalException;
+import com.mariuszilinskas.vsp.auth.identity.exception.UsersServiceUnavailableException;
+import com.mariuszilinskas.vsp.auth.identity.producer.RabbitMQProducer;
 import com.mariuszilinskas.vsp.auth.identity.util.TestUtils;
 import feign.FeignException;
+import feign.Request;
+import feign.RequestTemplate;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -26,7 +48,18 @@ public class UserServiceImplTest {
     @Mock
     private UserFeignClient userFeignClient;
 
-    @InjectMocks
+    @Spy
+    private UsersServiceGuard usersServiceGuard = new UsersServiceGuard(
+            CircuitBreakerConfig.ofDefaults(), BulkheadConfig.ofDefaults(), new SimpleMeterRegistry());
+
+    @Spy
+    private AuthDetailsCache authDetailsCache = new AuthDetailsCache(mock(RabbitMQProducer.class), new SimpleMeterRegistry());
+
+    @Mock
+    private UserProjectionService userProjectionService;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserAccountMemo userAccountMemo = new UserAccountMemo(meterRegistry);
     private UserServiceImpl userDetailsService;
 
     private final UUID userId = UUID.randomUUID();
@@ -38,9 +71,24 @@ public class UserServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        userDetailsService = new UserServiceImpl(userFeignClient, usersServiceGuard, authDetailsCache,
+                userProjectionService, userAccountMemo, meterRegistry, 1000, 1000, 3000);
         authDetails = new AuthDetails(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE);
     }
 
+    private void setPrivateField(Object targetObject, String fieldName, Object value)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field field = AuthDetailsCache.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(targetObject, value);
+    }
+
+    private void enableCombinedFetch() throws NoSuchFieldException, IllegalAccessException {
+        Field field = UserServiceImpl.class.getDeclaredField("combinedFetchEnabled");
+        field.setAccessible(true);
+        field.set(userDetailsService, true);
+    }
+
     // ------------------------------------
 
     @Test
@@ -49,12 +97,38 @@ public class UserServiceImplTest {
         when(userFeignClient.getUserAuthDetailsByEmail(email)).thenReturn(authDetails);
 
         // Act
-        userDetailsService.getUserAuthDetailsWithEmail(email);
+        AuthDetails result = userDetailsService.getUserAuthDetailsWithEmail(email);
 
         // Assert
+        assertEquals(authDetails, result);
         verify(userFeignClient, times(1)).getUserAuthDetailsByEmail(email);
     }
 
+    @Test
+    void testGetUserAuthDetailsWithEmail_ServedFromProjection() {
+        // Arrange
+        when(userProjectionService.findAuthDetailsByEmail(email)).thenReturn(Optional.of(authDetails));
+
+        // Act
+        AuthDetails result = userDetailsService.getUserAuthDetailsWithEmail(email);
+
+        // Assert
+        assertEquals(authDetails, result);
+        verifyNoInteractions(userFeignClient);
+    }
+
+    @Test
+    void testGetUserAuthDetailsWithEmail_UnknownEmail() {
+        // Arrange
+        doThrow(feignException).when(userFeignClient).getUserAuthDetailsByEmail(email);
+
+        // Act & Assert
+        assertThrows(CredentialsValidationException.class, () -> userDetailsService.getUserAuthDetailsWithEmail(email));
+
+        // Assert
+        verify(authDetailsCache, times(1)).getByEmail(eq(email), any());
+    }
+
     // TODO: FIX
 //    @Test
 //    void testGetUserAuthDetailsWithEmail_FeignException() {
@@ -82,6 +156,51 @@ public class UserServiceImplTest {
         verify(userFeignClient, times(1)).getUserAuthDetailsByUserId(userId);
     }
 
+    @Test
+    void testGetUserAuthDetailsWithId_ServedFromProjection() {
+        // Arrange
+        when(userProjectionService.findAuthDetailsByUserId(userId)).thenReturn(Optional.of(authDetails));
+
+        // Act
+        AuthDetails result = userDetailsService.getUserAuthDetailsWithId(userId);
+
+        // Assert
+        assertEquals(authDetails, result);
+        verifyNoInteractions(userFeignClient);
+    }
+
+    @Test
+    void testGetUserAuthDetailsWithId_UsersServiceUnavailableServesLastKnown()
+            throws NoSuchFieldException, IllegalAccessException {
+        // Arrange
+        setPrivateField(authDetailsCache, "enabled", true);
+        setPrivateField(authDetailsCache, "ttlMillis", 0L);
+        setPrivateField(authDetailsCache, "staleTtlMillis", 60_000L);
+        setPrivateField(authDetailsCache, "maxEntries", 10);
+        when(userFeignClient.getUserAuthDetailsByUserId(userId)).thenReturn(authDetails);
+        userDetailsService.getUserAuthDetailsWithId(userId);
+        doThrow(new UsersServiceUnavailableException()).when(usersServiceGuard).call(any());
+
+        // Act
+        AuthDetails result = userDetailsService.getUserAuthDetailsWithId(userId);
+
+        // Assert
+        assertEquals(authDetails, result);
+        verify(userFeignClient, times(1)).getUserAuthDetailsByUserId(userId);
+    }
+
+    @Test
+    void testGetUserAuthDetailsWithId_UsersServiceUnavailableNothingCached() {
+        // Arrange
+        doThrow(new UsersServiceUnavailableException()).when(usersServiceGuard).call(any());
+
+        // Act & Assert
+        assertThrows(UsersServiceUnavailableException.class, () -> userDetailsService.getUserAuthDetailsWithId(userId));
+
+        // Assert
+        verifyNoInteractions(userFeignClient);
+    }
+
     // TODO: FIX
 //    @Test
 //    void testGetUserAuthDetailsWithId_FeignException() {
@@ -97,4 +216,208 @@ public class UserServiceImplTest {
 
     // ------------------------------------
 
+    @Test
+    void testGetUser_Success() {
+        // Arrange
+        var userResponse = new UserResponse("firstName", "lastName", email);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+
+        // Act
+        UserResponse result = userDetailsService.getUser(userId);
+
+        // Assert
+        assertEquals(userResponse, result);
+        verify(userFeignClient, times(1)).getUser(userId);
+    }
+
+    @Test
+    void testGetUser_ServedFromProjection() {
+        // Arrange
+        var userResponse = new UserResponse("firstName", "lastName", email);
+        when(userProjectionService.findUser(userId)).thenReturn(Optional.of(userResponse));
+
+        // Act
+        UserResponse result = userDetailsService.getUser(userId);
+
+        // Assert
+        assertEquals(userResponse, result);
+        verifyNoInteractions(userFeignClient);
+    }
+
+    @Test
+    void testGetUser_FeignException() {
+        // Arrange
+        doThrow(feignException).when(userFeignClient).getUser(userId);
+
+        // Act & Assert
+        assertThrows(UserRetrievalException.class, () -> userDetailsService.getUser(userId));
+
+        // Assert
+        verify(userFeignClient, times(1)).getUser(userId);
+    }
+
+    @Test
+    @Timeout(10)
+    void testGetUser_ConcurrentCallsAreCoalesced() throws Exception {
+        // Arrange
+        var userResponse = new UserResponse("firstName", "lastName", email);
+        var callStarted = new CountDownLatch(1);
+        var releaseCall = new CountDownLatch(1);
+        when(userFeignClient.getUser(userId)).thenAnswer(invocation -> {
+            callStarted.countDown();
+            assertTrue(releaseCall.await(5, TimeUnit.SECONDS));
+            return userResponse;
+        });
+
+        // Act
+        var first = CompletableFuture.supplyAsync(() -> userDetailsService.getUser(userId));
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+        var second = CompletableFuture.supplyAsync(() -> userDetailsService.getUser(userId));
+        while (coalescedCalls("user") < 1) Thread.onSpinWait();
+        releaseCall.countDown();
+
+        // Assert
+        assertEquals(userResponse, first.get(5, TimeUnit.SECONDS));
+        assertEquals(userResponse, second.get(5, TimeUnit.SECONDS));
+        verify(userFeignClient, times(1)).getUser(userId);
+    }
+
+    // ------------------------------------
+
+    @Test
+    void testGetUserAccountWithEmail_ComposedFromSeparateCalls() {
+        // Arrange
+        var userResponse = new UserResponse("firstName", "lastName", email);
+        when(userFeignClient.getUserAuthDetailsByEmail(email)).thenReturn(authDetails);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+
+        // Act
+        UserAccount result = userDetailsService.getUserAccountWithEmail(email);
+
+        // Assert
+        assertEquals(UserAccount.of(authDetails, userResponse), result);
+        verify(userFeignClient, never()).getUserAccountByEmail(anyString());
+    }
+
+    @Test
+    void testGetUserAccountWithEmail_CombinedFetch() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE,
+                "firstName", "lastName", email);
+        when(userFeignClient.getUserAccountByEmail(email)).thenReturn(account);
+
+        // Act
+        UserAccount result = userDetailsService.getUserAccountWithEmail(email);
+
+        // Assert
+        assertEquals(account, result);
+        verify(userFeignClient, times(1)).getUserAccountByEmail(email);
+        verify(userFeignClient, never()).getUserAuthDetailsByEmail(anyString());
+        verify(userFeignClient, never()).getUser(any(UUID.class));
+    }
+
+    @Test
+    void testGetUserAccountWithEmail_CombinedFetchUnknownEmail() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        doThrow(feignException).when(userFeignClient).getUserAccountByEmail(email);
+
+        // Act & Assert
+        assertThrows(CredentialsValidationException.class, () -> userDetailsService.getUserAccountWithEmail(email));
+    }
+
+    @Test
+    void testGetUserAccountWithEmail_CombinedFetchServerError() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        var request = Request.create(Request.HttpMethod.GET, "", Collections.emptyMap(), null, new RequestTemplate());
+        doThrow(new FeignException.InternalServerError("Internal Server Error", request, null, Collections.emptyMap()))
+                .when(userFeignClient).getUserAccountByEmail(email);
+
+        // Act & Assert
+        assertThrows(UserRetrievalException.class, () -> userDetailsService.getUserAccountWithEmail(email));
+    }
+
+    @Test
+    void testGetUserAccountWithEmail_ServedFromProjection() {
+        // Arrange
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE,
+                "firstName", "lastName", email);
+        when(userProjectionService.findUserAccountByEmail(email)).thenReturn(Optional.of(account));
+
+        // Act
+        UserAccount result = userDetailsService.getUserAccountWithEmail(email);
+
+        // Assert
+        assertEquals(account, result);
+        verifyNoInteractions(userFeignClient);
+    }
+
+    @Test
+    void testGetUserAccountWithId_CombinedFetchFeignException() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        doThrow(feignException).when(userFeignClient).getUserAccountByUserId(userId);
+
+        // Act & Assert
+        assertThrows(UserRetrievalException.class, () -> userDetailsService.getUserAccountWithId(userId));
+    }
+
+    @Test
+    void testGetUser_CombinedFetch() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE,
+                "firstName", "lastName", email);
+        when(userFeignClient.getUserAccountByUserId(userId)).thenReturn(account);
+
+        // Act
+        UserResponse result = userDetailsService.getUser(userId);
+
+        // Assert
+        assertEquals(account.profile(), result);
+        verify(userFeignClient, never()).getUser(any(UUID.class));
+    }
+
+    @Test
+    void testGetUser_FetchedOncePerRequest() {
+        // Arrange
+        var userResponse = new UserResponse("firstName", "lastName", email);
+        when(userFeignClient.getUser(userId)).thenReturn(userResponse);
+
+        // Act
+        userAccountMemo.run(() -> {
+            assertEquals(userResponse, userDetailsService.getUser(userId));
+            assertEquals(userResponse, userDetailsService.getUser(userId));
+        });
+
+        // Assert
+        verify(userFeignClient, times(1)).getUser(userId);
+    }
+
+    @Test
+    void testGetUser_AccountFetchedEarlierInRequest() throws Exception {
+        // Arrange
+        enableCombinedFetch();
+        var account = new UserAccount(userId, List.of(UserRole.USER), List.of(), UserStatus.ACTIVE,
+                "firstName", "lastName", email);
+        when(userFeignClient.getUserAccountByEmail(email)).thenReturn(account);
+
+        // Act
+        userAccountMemo.run(() -> {
+            userDetailsService.getUserAccountWithEmail(email);
+            assertEquals(account.profile(), userDetailsService.getUser(userId));
+        });
+
+        // Assert
+        verify(userFeignClient, times(1)).getUserAccountByEmail(email);
+        verify(userFeignClient, never()).getUserAccountByUserId(any(UUID.class));
+        verify(userFeignClient, never()).getUser(any(UUID.class));
+    }
+
+    private double coalescedCalls(String call) {
+        return meterRegistry.counter("identity.users.calls.coalesced", "call", call).count();
+    }
+
 }